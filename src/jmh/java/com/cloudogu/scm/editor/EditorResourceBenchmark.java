@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sonia.scm.api.v2.resources.ChangesetDto;
+import sonia.scm.api.v2.resources.ChangesetToChangesetDtoMapper;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.web.RestDispatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import static com.cloudogu.scm.editor.InProcessGitRepository.NAME;
+import static com.cloudogu.scm.editor.InProcessGitRepository.NAMESPACE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptySet;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures multipart uploads through the {@link EditorResource}, including the parsing of the form data, against a
+ * git repository of configurable size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EditorResourceBenchmark {
+
+  private static final String BOUNDARY = "benchmark-boundary";
+
+  /**
+   * The number of files in the repository.
+   */
+  @Param({"1000"})
+  int files;
+
+  /**
+   * The depth of the directories the files are distributed in.
+   */
+  @Param({"3"})
+  int depth;
+
+  /**
+   * The size of the existing and the uploaded files in bytes.
+   */
+  @Param({"1024", "1048576"})
+  int fileSize;
+
+  /**
+   * The number of files uploaded with one request.
+   */
+  @Param({"1", "10"})
+  int uploadedFiles;
+
+  private InProcessGitRepository repository;
+  private RestDispatcher dispatcher;
+  private byte[] multipartBody;
+  private byte[] streamingMultipartBody;
+
+  @Setup(Level.Trial)
+  public void createRepository() throws IOException {
+    repository = new InProcessGitRepository(files, depth, fileSize);
+    EditorMetrics metrics = new EditorMetrics(new SimpleMeterRegistry());
+    EditorService editorService = new EditorService(repository.getServiceFactory(), new ChangeGuardCheck(emptySet(), metrics, new ChangeGuardEvaluator(), new ChangeGuardCache()), metrics, new CommitCoalescer()) {
+      @Override
+      void checkWritePermission(RepositoryService repositoryService) {
+        // there is no subject in the benchmark
+      }
+    };
+    ChangesetToChangesetDtoMapper changesetMapper = mock(ChangesetToChangesetDtoMapper.class, withSettings().stubOnly());
+    when(changesetMapper.map(any(), any())).thenReturn(new ChangesetDto());
+    RepositoryManager repositoryManager = mock(RepositoryManager.class, withSettings().stubOnly());
+
+    dispatcher = new RestDispatcher();
+    FileCapabilitiesCheck capabilitiesCheck = mock(FileCapabilitiesCheck.class, withSettings().stubOnly());
+    dispatcher.addSingletonResource(new EditorResource(editorService, changesetMapper, repositoryManager, capabilitiesCheck, ScmPathInfoStore::new, new EditorJobManager(), new UploadSessionManager(), mock(EditableFileLoader.class, withSettings().stubOnly()), new ArchiveExpander(), mock(DirectoryArchiver.class, withSettings().stubOnly())));
+
+    multipartBody = createMultipartBody(false);
+    streamingMultipartBody = createMultipartBody(true);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    repository.close();
+  }
+
+  @Benchmark
+  public MockHttpResponse upload() throws URISyntaxException {
+    return post("/create/benchmark", multipartBody);
+  }
+
+  @Benchmark
+  public MockHttpResponse uploadStreaming() throws URISyntaxException {
+    return post("/stream/create/benchmark", streamingMultipartBody);
+  }
+
+  private MockHttpResponse post(String path, byte[] body) throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest
+      .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/" + NAMESPACE + "/" + NAME + path)
+      .contentType("multipart/form-data; boundary=" + BOUNDARY)
+      .content(body);
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+    if (response.getStatus() != 201) {
+      throw new IllegalStateException("upload failed with status " + response.getStatus() + ": " + response.getContentAsString());
+    }
+    return response;
+  }
+
+  private byte[] createMultipartBody(boolean commitFirst) throws IOException {
+    StringBuilder names = new StringBuilder();
+    for (int i = 0; i < uploadedFiles; ++i) {
+      names.append(i == 0 ? "" : ",").append("\"file").append(i).append("\":\"file").append(i).append(".txt\"");
+    }
+    String commit = "{\"commitMessage\":\"upload\",\"names\":{" + names + "}}";
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if (commitFirst) {
+      writeCommitPart(body, commit);
+    }
+    for (int i = 0; i < uploadedFiles; ++i) {
+      write(body, "--" + BOUNDARY + "\r\n");
+      write(body, "Content-Disposition: form-data; name=\"file" + i + "\"; filename=\"file" + i + "\"\r\n");
+      write(body, "Content-Type: application/octet-stream\r\n\r\n");
+      body.write(repository.content(i));
+      write(body, "\r\n");
+    }
+    if (!commitFirst) {
+      writeCommitPart(body, commit);
+    }
+    write(body, "--" + BOUNDARY + "--\r\n");
+    return body.toByteArray();
+  }
+
+  private void writeCommitPart(ByteArrayOutputStream body, String commit) throws IOException {
+    write(body, "--" + BOUNDARY + "\r\n");
+    write(body, "Content-Disposition: form-data; name=\"commit\"\r\n\r\n");
+    write(body, commit + "\r\n");
+  }
+
+  private void write(ByteArrayOutputStream body, String text) throws IOException {
+    body.write(text.getBytes(UTF_8));
+  }
+}
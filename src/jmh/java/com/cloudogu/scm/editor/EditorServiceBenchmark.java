@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.api.RepositoryService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.cloudogu.scm.editor.InProcessGitRepository.NAME;
+import static com.cloudogu.scm.editor.InProcessGitRepository.NAMESPACE;
+import static java.util.Collections.emptySet;
+
+/**
+ * Measures the write operations of the {@link EditorService} against a git repository of configurable size. Run
+ * with <code>gradle jmh</code>; see the README for how to change the parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EditorServiceBenchmark {
+
+  private static final String DIRECTORY_FOR_NEW_FILES = "benchmark";
+  private static final String MOVED_PATH = "moved/file.txt";
+
+  /**
+   * The number of files in the repository.
+   */
+  @Param({"1000", "10000"})
+  int files;
+
+  /**
+   * The depth of the directories the files are distributed in.
+   */
+  @Param({"3"})
+  int depth;
+
+  /**
+   * The size of the existing and the uploaded files in bytes.
+   */
+  @Param({"1024"})
+  int fileSize;
+
+  InProcessGitRepository repository;
+  EditorService editorService;
+
+  private int counter;
+  private String movablePath;
+  private boolean moved;
+
+  @Setup(Level.Trial)
+  public void createRepository() throws IOException {
+    repository = new InProcessGitRepository(files, depth, fileSize);
+    EditorMetrics metrics = new EditorMetrics(new SimpleMeterRegistry());
+    editorService = new EditorService(repository.getServiceFactory(), new ChangeGuardCheck(emptySet(), metrics, new ChangeGuardEvaluator(), new ChangeGuardCache()), metrics, new CommitCoalescer()) {
+      @Override
+      void checkWritePermission(RepositoryService repositoryService) {
+        // there is no subject in the benchmark
+      }
+    };
+    movablePath = repository.getPaths().get(0);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteRepository() throws IOException {
+    repository.close();
+  }
+
+  @Benchmark
+  public Changeset create() throws IOException {
+    int seed = ++counter;
+    try (EditorService.FileUploader fileUploader = editorService.prepare(NAMESPACE, NAME, null, DIRECTORY_FOR_NEW_FILES, "create", null)) {
+      return fileUploader
+        .create("file" + seed + ".txt", new ByteArrayInputStream(repository.content(seed)))
+        .done();
+    }
+  }
+
+  @Benchmark
+  public Changeset modify() throws IOException {
+    int seed = ++counter;
+    String path = repository.getPaths().get(seed % repository.getPaths().size());
+    int lastSlash = path.lastIndexOf('/');
+    try (EditorService.FileUploader fileUploader = editorService.prepare(NAMESPACE, NAME, null, path.substring(0, lastSlash), "modify", null)) {
+      return fileUploader
+        .modify(path.substring(lastSlash + 1), new ByteArrayInputStream(repository.content(seed)))
+        .done();
+    }
+  }
+
+  @Benchmark
+  public Changeset delete(FileToDelete fileToDelete) throws IOException {
+    return editorService.delete(NAMESPACE, NAME, null, fileToDelete.path, "delete", null);
+  }
+
+  @Benchmark
+  public Changeset move() throws IOException {
+    Changeset changeset;
+    if (moved) {
+      changeset = editorService.move(NAMESPACE, NAME, null, MOVED_PATH, "/" + movablePath, "move back");
+    } else {
+      changeset = editorService.move(NAMESPACE, NAME, null, movablePath, "/" + MOVED_PATH, "move");
+    }
+    moved = !moved;
+    return changeset;
+  }
+
+  /**
+   * Creates a new file before each invocation of {@link #delete(FileToDelete)}, so that the repository keeps its size.
+   */
+  @State(Scope.Thread)
+  public static class FileToDelete {
+
+    String path;
+    private int counter;
+
+    @Setup(Level.Invocation)
+    public void createFile(EditorServiceBenchmark benchmark) throws IOException {
+      path = "to-delete/file" + ++counter + ".txt";
+      benchmark.repository.writeFile(path, benchmark.repository.content(counter));
+    }
+  }
+}
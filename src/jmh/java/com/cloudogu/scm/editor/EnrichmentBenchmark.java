@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sonia.scm.api.v2.resources.HalAppender;
+import sonia.scm.api.v2.resources.HalEnricherContext;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.Command;
+import sonia.scm.repository.api.FileLock;
+import sonia.scm.repository.api.FileLockCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import jakarta.inject.Provider;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures the time to enrich a complete directory listing with the links of the {@link BrowserResultLinkEnricher}
+ * and the {@link FileLinkEnricher}, like it is done for a single sources request: The browser result itself and every
+ * file object of the listing are enriched with a new {@link EditabilityContext}. Run with <code>-prof gc</code> to
+ * see the allocations per listing.
+ * <br>
+ * The repository services are stub only mocks, so that the numbers show the overhead of the enrichers and not of a
+ * concrete repository implementation. The guards have no optimized batch implementation, like most guards of other
+ * plugins.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EnrichmentBenchmark {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+
+  /**
+   * The number of children of the listed directory.
+   */
+  @Param({"10", "1000", "50000"})
+  int children;
+
+  /**
+   * The number of registered change guards.
+   */
+  @Param({"0", "1", "20"})
+  int guards;
+
+  /**
+   * Whether every tenth file of the listing is locked by another user.
+   */
+  @Param({"false", "true"})
+  boolean locks;
+
+  /**
+   * Whether the file link enricher appends only the link to resolve the possible changes on demand.
+   */
+  @Param({"false", "true"})
+  boolean lazyLinks;
+
+  private BrowserResult browserResult;
+  private EditabilityContext editabilityContext;
+  private BrowserResultLinkEnricher browserResultLinkEnricher;
+  private FileLinkEnricher fileLinkEnricher;
+  private HalAppender appender;
+
+  @Setup(Level.Trial)
+  public void createListing() {
+    FileObject directory = new FileObject();
+    directory.setName("src");
+    directory.setPath("src");
+    directory.setDirectory(true);
+    List<FileObject> files = new ArrayList<>();
+    List<FileLock> fileLocks = new ArrayList<>();
+    for (int i = 0; i < children; ++i) {
+      FileObject file = new FileObject();
+      file.setDirectory(i % 10 == 9);
+      file.setName((file.isDirectory() ? "dir" : "file") + i);
+      file.setPath("src/" + file.getName());
+      file.setParentPath("src");
+      files.add(file);
+      if (locks && i % 10 == 0) {
+        fileLocks.add(new FileLock(file.getPath(), Integer.toString(i), "dent", Instant.now()));
+      }
+    }
+    directory.setChildren(files);
+    browserResult = new BrowserResult("42", "main", directory, true);
+
+    RepositoryServiceFactory serviceFactory = createServiceFactory(fileLocks);
+    Set<ChangeGuard> changeGuards = new LinkedHashSet<>();
+    for (int i = 0; i < guards; ++i) {
+      // each guard protects one of the subdirectories of the listing
+      changeGuards.add(new PathGuard("src/dir" + (i * 10 + 9)));
+    }
+    EditorMetrics metrics = new EditorMetrics(new SimpleMeterRegistry());
+    // the guard cache is disabled, so that every invocation measures the evaluation of the guards
+    ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(changeGuards, metrics, new ChangeGuardEvaluator(), new ChangeGuardCache(0, 0));
+
+    ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
+    pathInfoStore.set(() -> URI.create("/scm/api/"));
+    Provider<ScmPathInfoStore> pathInfoStoreProvider = () -> pathInfoStore;
+    Provider<EditabilityContext> editabilityContextProvider = () -> editabilityContext;
+    EditorPreconditions preconditions = new EditorPreconditions(serviceFactory, editabilityContextProvider);
+
+    browserResultLinkEnricher = new BrowserResultLinkEnricher(pathInfoStoreProvider, preconditions, changeGuardCheck, metrics, lazyLinks);
+    FileCapabilitiesCheck capabilitiesCheck = new FileCapabilitiesCheck(serviceFactory, preconditions, changeGuardCheck, editabilityContextProvider);
+    fileLinkEnricher = new FileLinkEnricher(pathInfoStoreProvider, capabilitiesCheck, metrics, lazyLinks);
+  }
+
+  @Setup(Level.Iteration)
+  public void bindSubject(Blackhole blackhole) {
+    ThreadContext.bind(mock(Subject.class, withSettings().stubOnly().defaultAnswer(invocation -> {
+      if ("getPrincipal".equals(invocation.getMethod().getName())) {
+        return "trillian";
+      }
+      // the user has every permission
+      return invocation.getMethod().getReturnType() == boolean.class ? Boolean.TRUE : null;
+    })));
+    appender = mock(HalAppender.class, withSettings().stubOnly().defaultAnswer(invocation -> {
+      blackhole.consume(invocation.getArguments());
+      return null;
+    }));
+  }
+
+  @TearDown(Level.Iteration)
+  public void unbindSubject() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Benchmark
+  public void enrichListing() {
+    editabilityContext = new EditabilityContext();
+    browserResultLinkEnricher.enrich(HalEnricherContext.of(NAMESPACE_AND_NAME, browserResult), appender);
+    enrichFile(browserResult.getFile());
+    for (FileObject child : browserResult.getFile().getChildren()) {
+      enrichFile(child);
+    }
+  }
+
+  private void enrichFile(FileObject file) {
+    fileLinkEnricher.enrich(HalEnricherContext.of(NAMESPACE_AND_NAME, browserResult, file), appender);
+  }
+
+  private RepositoryServiceFactory createServiceFactory(List<FileLock> fileLocks) {
+    FileLockCommandBuilder lockCommand = mock(FileLockCommandBuilder.class, withSettings().stubOnly());
+    when(lockCommand.getAll()).thenReturn(fileLocks);
+
+    RepositoryService repositoryService = mock(RepositoryService.class, withSettings().stubOnly());
+    when(repositoryService.getRepository()).thenReturn(new Repository("42", "git", NAMESPACE_AND_NAME.getNamespace(), NAMESPACE_AND_NAME.getName()));
+    when(repositoryService.isSupported(any(Command.class))).thenReturn(true);
+    when(repositoryService.getLockCommand()).thenReturn(lockCommand);
+
+    RepositoryServiceFactory serviceFactory = mock(RepositoryServiceFactory.class, withSettings().stubOnly());
+    when(serviceFactory.create(any(NamespaceAndName.class))).thenReturn(repositoryService);
+    return serviceFactory;
+  }
+
+  /**
+   * A simple guard protecting a directory and all files within.
+   */
+  private static class PathGuard implements ChangeGuard {
+
+    private final String protectedDirectory;
+
+    private PathGuard(String protectedDirectory) {
+      this.protectedDirectory = protectedDirectory;
+    }
+
+    @Override
+    public Collection<ChangeObstacle> getObstacles(NamespaceAndName namespaceAndName, String branch, Changes changes) {
+      if (isProtected(changes.getFilesToModify()) || isProtected(changes.getFilesToDelete()) || isProtected(changes.getFilesToCreate())
+        || changes.getPathForCreate().filter(this::isProtected).isPresent()) {
+        return singletonList(new ChangeObstacle() {
+          @Override
+          public String getMessage() {
+            return "protected";
+          }
+
+          @Override
+          public String getKey() {
+            return "protected";
+          }
+        });
+      }
+      return emptyList();
+    }
+
+    private boolean isProtected(Collection<String> paths) {
+      return paths.stream().anyMatch(this::isProtected);
+    }
+
+    private boolean isProtected(String path) {
+      return path.equals(protectedDirectory) || path.startsWith(protectedDirectory + "/");
+    }
+  }
+}
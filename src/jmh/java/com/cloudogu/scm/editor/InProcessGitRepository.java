@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.io.ByteSource;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.mockito.stubbing.Answer;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.ModifyCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A bare git repository in a temporary directory, that is accessed with JGit in the benchmark process. The
+ * {@link RepositoryServiceFactory} of this fixture hands out services, whose modify command stages the changes like
+ * the real command: the content of a file is copied to a temporary file in a work directory when it is passed, without
+ * holding it in memory. On {@link ModifyCommandBuilder#execute()} the staged files are streamed into a real commit in
+ * this repository. The log command reads the new commit back from the repository.
+ * <br>
+ * The mocks are created once and reused for every command, so that the benchmarks do not measure the creation of
+ * mocks. Therefore the fixture must not be used by more than one thread.
+ */
+class InProcessGitRepository implements AutoCloseable {
+
+  static final String NAMESPACE = "space";
+  static final String NAME = "name";
+
+  private static final String BRANCH = Constants.R_HEADS + "master";
+  private static final PersonIdent AUTHOR = new PersonIdent("Trillian McMillan", "trillian@hitchhiker.com");
+
+  private final Path directory;
+  private final Path workDirectory;
+  private final org.eclipse.jgit.lib.Repository repository;
+  private final List<String> paths = new ArrayList<>();
+  private final int fileSize;
+
+  private final Repository scmRepository = new Repository("benchmark", "git", NAMESPACE, NAME);
+  private final RepositoryServiceFactory serviceFactory = mock(RepositoryServiceFactory.class, withSettings().stubOnly());
+
+  private final List<Operation> stagedOperations = new ArrayList<>();
+  private String commitMessage;
+  private String pathOfCurrentCommand;
+
+  /**
+   * Creates a repository with an initial commit containing the given number of files, that are distributed over
+   * directories up to the given depth.
+   */
+  InProcessGitRepository(int files, int depth, int fileSize) throws IOException {
+    this.fileSize = fileSize;
+    this.directory = Files.createTempDirectory("scm-editor-benchmark");
+    this.workDirectory = Files.createTempDirectory("scm-editor-benchmark-work");
+    this.repository = new FileRepositoryBuilder().setGitDir(directory.toFile()).setBare().build();
+    repository.create(true);
+
+    for (int i = 0; i < files; ++i) {
+      String path = pathFor(i, depth);
+      paths.add(path);
+      stagedOperations.add(new Operation(Operation.Kind.WRITE, path, null, stage(new ByteArrayInputStream(content(i)))));
+    }
+    commit("initial commit");
+
+    initializeServiceFactory();
+  }
+
+  RepositoryServiceFactory getServiceFactory() {
+    return serviceFactory;
+  }
+
+  List<String> getPaths() {
+    return paths;
+  }
+
+  /**
+   * Creates content with the configured file size, that differs for each seed.
+   */
+  byte[] content(int seed) {
+    byte[] content = new byte[fileSize];
+    Arrays.fill(content, (byte) ('a' + Math.floorMod(seed, 26)));
+    byte[] prefix = Integer.toString(seed).getBytes();
+    System.arraycopy(prefix, 0, content, 0, Math.min(prefix.length, fileSize));
+    return content;
+  }
+
+  /**
+   * Writes the given file with a commit of its own, bypassing the mocked services. This can be used to prepare
+   * files for benchmarks, that remove files.
+   */
+  void writeFile(String path, byte[] content) throws IOException {
+    stagedOperations.add(new Operation(Operation.Kind.WRITE, path, null, stage(new ByteArrayInputStream(content))));
+    commit("prepare " + path);
+  }
+
+  private static String pathFor(int index, int depth) {
+    StringBuilder path = new StringBuilder();
+    int remaining = index;
+    for (int level = 0; level < depth; ++level) {
+      path.append("dir").append(remaining % 10).append('/');
+      remaining /= 10;
+    }
+    return path.append("file").append(index).append(".txt").toString();
+  }
+
+  private void initializeServiceFactory() {
+    ModifyCommandBuilder modifyCommand = mock(ModifyCommandBuilder.class, withSettings().stubOnly().defaultAnswer(modifyCommandAnswer()));
+    ModifyCommandBuilder.WithOverwriteFlagContentLoader createLoader = mock(ModifyCommandBuilder.WithOverwriteFlagContentLoader.class, withSettings().stubOnly().defaultAnswer(contentLoaderAnswer(modifyCommand)));
+    ModifyCommandBuilder.SimpleContentLoader modifyLoader = mock(ModifyCommandBuilder.SimpleContentLoader.class, withSettings().stubOnly().defaultAnswer(contentLoaderAnswer(modifyCommand)));
+    ModifyCommandBuilder.MoveBuilder moveBuilder = mock(ModifyCommandBuilder.MoveBuilder.class, withSettings().stubOnly().defaultAnswer(invocation -> {
+      stagedOperations.add(new Operation(Operation.Kind.MOVE, pathOfCurrentCommand, invocation.getArgument(0), null));
+      return modifyCommand;
+    }));
+    when(modifyCommand.createFile(any())).thenAnswer(invocation -> {
+      pathOfCurrentCommand = invocation.getArgument(0);
+      return createLoader;
+    });
+    when(modifyCommand.modifyFile(any())).thenAnswer(invocation -> {
+      pathOfCurrentCommand = invocation.getArgument(0);
+      return modifyLoader;
+    });
+    when(modifyCommand.move(any())).thenAnswer(invocation -> {
+      pathOfCurrentCommand = invocation.getArgument(0);
+      return moveBuilder;
+    });
+
+    LogCommandBuilder logCommand = mock(LogCommandBuilder.class, withSettings().stubOnly().defaultAnswer(invocation -> {
+      if ("getChangeset".equals(invocation.getMethod().getName())) {
+        return readChangeset(invocation.getArgument(0));
+      }
+      return invocation.getMock();
+    }));
+
+    RepositoryService repositoryService = mock(RepositoryService.class, withSettings().stubOnly());
+    when(repositoryService.getRepository()).thenReturn(scmRepository);
+    when(repositoryService.getModifyCommand()).thenAnswer(invocation -> {
+      discardStagedOperations();
+      commitMessage = null;
+      return modifyCommand;
+    });
+    when(repositoryService.getLogCommand()).thenReturn(logCommand);
+
+    when(serviceFactory.create(any(NamespaceAndName.class))).thenReturn(repositoryService);
+  }
+
+  private Answer<Object> modifyCommandAnswer() {
+    return invocation -> {
+      switch (invocation.getMethod().getName()) {
+        case "setCommitMessage":
+          commitMessage = invocation.getArgument(0);
+          break;
+        case "deleteFile":
+          stagedOperations.add(new Operation(Operation.Kind.DELETE, invocation.getArgument(0), null, null));
+          break;
+        case "execute":
+          return commit(commitMessage);
+        default:
+          // branch and expected revision are not relevant for the benchmarks
+          break;
+      }
+      return invocation.getMock();
+    };
+  }
+
+  private Answer<Object> contentLoaderAnswer(ModifyCommandBuilder modifyCommand) {
+    return invocation -> {
+      if ("withData".equals(invocation.getMethod().getName())) {
+        Object data = invocation.getArgument(0);
+        Path content;
+        if (data instanceof InputStream) {
+          // like the real command, the stream is copied but not closed
+          content = stage((InputStream) data);
+        } else {
+          try (InputStream stream = ((ByteSource) data).openStream()) {
+            content = stage(stream);
+          }
+        }
+        stagedOperations.add(new Operation(Operation.Kind.WRITE, pathOfCurrentCommand, null, content));
+        return modifyCommand;
+      }
+      return invocation.getMock();
+    };
+  }
+
+  private Path stage(InputStream content) throws IOException {
+    Path file = Files.createTempFile(workDirectory, "content", null);
+    Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+    return file;
+  }
+
+  private void discardStagedOperations() throws IOException {
+    for (Operation operation : stagedOperations) {
+      if (operation.content != null) {
+        Files.deleteIfExists(operation.content);
+      }
+    }
+    stagedOperations.clear();
+  }
+
+  private String commit(String message) throws IOException {
+    try (ObjectInserter inserter = repository.newObjectInserter();
+         ObjectReader reader = repository.newObjectReader();
+         RevWalk walk = new RevWalk(reader)) {
+      ObjectId head = repository.resolve(BRANCH);
+      RevCommit parent = head == null ? null : walk.parseCommit(head);
+
+      DirCache index = DirCache.newInCore();
+      if (parent != null) {
+        DirCacheBuilder builder = index.builder();
+        builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, parent.getTree());
+        builder.finish();
+      }
+      for (Operation operation : stagedOperations) {
+        apply(index, inserter, operation);
+      }
+      stagedOperations.clear();
+
+      CommitBuilder commit = new CommitBuilder();
+      commit.setTreeId(index.writeTree(inserter));
+      if (parent != null) {
+        commit.setParentId(parent);
+      }
+      commit.setAuthor(AUTHOR);
+      commit.setCommitter(AUTHOR);
+      commit.setMessage(message);
+      ObjectId commitId = inserter.insert(commit);
+      inserter.flush();
+
+      RefUpdate refUpdate = repository.updateRef(BRANCH);
+      refUpdate.setNewObjectId(commitId);
+      refUpdate.setExpectedOldObjectId(parent == null ? ObjectId.zeroId() : parent);
+      RefUpdate.Result result = refUpdate.update(walk);
+      if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD) {
+        throw new IOException("could not update branch: " + result);
+      }
+      return commitId.name();
+    }
+  }
+
+  private void apply(DirCache index, ObjectInserter inserter, Operation operation) throws IOException {
+    DirCacheEditor editor = index.editor();
+    switch (operation.kind) {
+      case WRITE:
+        ObjectId blob;
+        try (InputStream content = Files.newInputStream(operation.content)) {
+          blob = inserter.insert(Constants.OBJ_BLOB, Files.size(operation.content), content);
+        }
+        Files.delete(operation.content);
+        editor.add(new DirCacheEditor.PathEdit(stripLeadingSlash(operation.path)) {
+          @Override
+          public void apply(DirCacheEntry entry) {
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setObjectId(blob);
+          }
+        });
+        break;
+      case DELETE:
+        delete(index, editor, stripLeadingSlash(operation.path));
+        break;
+      case MOVE:
+        move(index, editor, stripLeadingSlash(operation.path), stripLeadingSlash(operation.target));
+        break;
+    }
+    editor.finish();
+  }
+
+  private void move(DirCache index, DirCacheEditor editor, String source, String target) {
+    for (int i = 0; i < index.getEntryCount(); ++i) {
+      DirCacheEntry entry = index.getEntry(i);
+      String path = entry.getPathString();
+      if (path.equals(source) || path.startsWith(source + "/")) {
+        String newPath = target + path.substring(source.length());
+        editor.add(new DirCacheEditor.PathEdit(newPath) {
+          @Override
+          public void apply(DirCacheEntry newEntry) {
+            newEntry.setFileMode(entry.getFileMode());
+            newEntry.setObjectId(entry.getObjectId());
+          }
+        });
+      }
+    }
+    delete(index, editor, source);
+  }
+
+  private void delete(DirCache index, DirCacheEditor editor, String path) {
+    if (index.findEntry(path) >= 0) {
+      editor.add(new DirCacheEditor.DeletePath(path));
+    } else {
+      editor.add(new DirCacheEditor.DeleteTree(path));
+    }
+  }
+
+  private Changeset readChangeset(String id) throws IOException {
+    try (RevWalk walk = new RevWalk(repository)) {
+      RevCommit commit = walk.parseCommit(ObjectId.fromString(id));
+      PersonIdent author = commit.getAuthorIdent();
+      Changeset changeset = new Changeset(id, author.getWhen().getTime(), new Person(author.getName(), author.getEmailAddress()));
+      changeset.setDescription(commit.getFullMessage());
+      return changeset;
+    }
+  }
+
+  private static String stripLeadingSlash(String path) {
+    return path.startsWith("/") ? path.substring(1) : path;
+  }
+
+  @Override
+  public void close() throws IOException {
+    repository.close();
+    FileUtils.deleteDirectory(directory.toFile());
+    FileUtils.deleteDirectory(workDirectory.toFile());
+  }
+
+  private static class Operation {
+
+    private enum Kind {
+      WRITE, DELETE, MOVE
+    }
+
+    private final Kind kind;
+    private final String path;
+    private final String target;
+    private final Path content;
+
+    private Operation(Kind kind, String path, String target, Path content) {
+      this.kind = kind;
+      this.path = path;
+      this.target = target;
+      this.content = content;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import sonia.scm.util.ValidationUtil;
+
+import jakarta.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Expands zip and tar archives (the latter optionally gzip compressed) entry by entry while they are read, so that
+ * neither the archive nor its entries have to be stored temporarily. The format is detected by the first bytes of
+ * the archive. Only regular files are passed on with their relative paths; directories are created implicitly. The
+ * expansion can be limited with system properties:
+ * <ul>
+ *   <li><code>scm.editor.archive.maxEntries</code>: the maximum number of files in one archive (default: 10000)</li>
+ *   <li><code>scm.editor.archive.maxSize</code>: the maximum size of all expanded files of one archive in bytes
+ *     (default: 1073741824)</li>
+ * </ul>
+ */
+class ArchiveExpander {
+
+  static final String MAX_ENTRIES_PROPERTY = "scm.editor.archive.maxEntries";
+  static final String MAX_SIZE_PROPERTY = "scm.editor.archive.maxSize";
+
+  private static final int DEFAULT_MAX_ENTRIES = 10000;
+  private static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+  private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+  private static final byte[] EMPTY_ZIP_MAGIC = {'P', 'K', 5, 6};
+  private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+
+  private final int maxEntries;
+  private final long maxSize;
+
+  @Inject
+  ArchiveExpander() {
+    this(Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES), Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+  }
+
+  ArchiveExpander(int maxEntries, long maxSize) {
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Passes each file of the archive to the consumer. The content of a file can only be read inside the consumer.
+   *
+   * @throws ArchiveNotExpandableException if the archive contains invalid paths or exceeds the limits
+   */
+  void expand(InputStream archive, EntryConsumer consumer) throws IOException {
+    BufferedInputStream input = new BufferedInputStream(archive);
+    input.mark(ZIP_MAGIC.length);
+    byte[] magic = input.readNBytes(ZIP_MAGIC.length);
+    input.reset();
+
+    Limits limits = new Limits();
+    if (startsWith(magic, ZIP_MAGIC) || startsWith(magic, EMPTY_ZIP_MAGIC)) {
+      expandZip(new ZipInputStream(input, UTF_8), limits, consumer);
+    } else if (startsWith(magic, GZIP_MAGIC)) {
+      expandTar(new TarStream(new GZIPInputStream(input)), limits, consumer);
+    } else {
+      expandTar(new TarStream(input), limits, consumer);
+    }
+  }
+
+  private void expandZip(ZipInputStream zip, Limits limits, EntryConsumer consumer) throws IOException {
+    ZipEntry entry = zip.getNextEntry();
+    while (entry != null) {
+      if (!entry.isDirectory()) {
+        accept(entry.getName(), zip, limits, consumer);
+      }
+      entry = zip.getNextEntry();
+    }
+  }
+
+  private void expandTar(TarStream tar, Limits limits, EntryConsumer consumer) throws IOException {
+    Optional<TarStream.Entry> entry = tar.nextEntry();
+    while (entry.isPresent()) {
+      accept(entry.get().getName(), entry.get().getContent(), limits, consumer);
+      entry = tar.nextEntry();
+    }
+  }
+
+  private void accept(String name, InputStream content, Limits limits, EntryConsumer consumer) throws IOException {
+    if (++limits.entries > maxEntries) {
+      throw new ArchiveNotExpandableException("archive contains more than " + maxEntries + " files");
+    }
+    consumer.accept(validatePath(name), new EntryContent(content, limits));
+  }
+
+  private static String validatePath(String name) {
+    String path = name;
+    while (path.startsWith("./")) {
+      path = path.substring(2);
+    }
+    if (path.isEmpty() || path.startsWith("/") || !ValidationUtil.isPathValid(path)) {
+      throw new ArchiveNotExpandableException("archive contains invalid path: " + name);
+    }
+    return path;
+  }
+
+  private static boolean startsWith(byte[] data, byte[] prefix) {
+    return data.length >= prefix.length && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+  private static class Limits {
+    private int entries;
+    private long size;
+  }
+
+  /**
+   * Counts the expanded bytes of all entries against the maximum size and keeps the archive open, when a consumer
+   * closes the content of an entry.
+   */
+  private class EntryContent extends FilterInputStream {
+
+    private final Limits limits;
+
+    EntryContent(InputStream content, Limits limits) {
+      super(content);
+      this.limits = limits;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value >= 0) {
+        count(1);
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+      int read = super.read(target, offset, length);
+      if (read > 0) {
+        count(read);
+      }
+      return read;
+    }
+
+    private void count(int read) {
+      limits.size += read;
+      if (limits.size > maxSize) {
+        throw new ArchiveNotExpandableException("expanded archive is larger than " + maxSize + " bytes");
+      }
+    }
+
+    @Override
+    public void close() {
+      // the archive is closed by the caller
+    }
+  }
+
+  @FunctionalInterface
+  interface EntryConsumer {
+    void accept(String path, InputStream content) throws IOException;
+  }
+}
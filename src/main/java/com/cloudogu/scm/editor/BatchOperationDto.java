@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchOperationDto {
+
+  @NotNull
+  private Type type;
+  @NotBlank
+  private String path;
+  private String newPath;
+  private String content;
+  /**
+   * With <code>base64</code>, the content is decoded before it is stored, so that binary files can be created and
+   * modified, too. Otherwise, the content is stored as text with UTF-8.
+   */
+  @Pattern(regexp = "(?i)text|base64")
+  private String encoding;
+
+  boolean isBase64() {
+    return "base64".equalsIgnoreCase(encoding);
+  }
+
+  public enum Type {
+    CREATE, MODIFY, DELETE, MOVE
+  }
+}
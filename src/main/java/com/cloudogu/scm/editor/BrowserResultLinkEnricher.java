@@ -16,6 +16,8 @@
 
 package com.cloudogu.scm.editor;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import sonia.scm.api.v2.resources.Enrich;
 import sonia.scm.api.v2.resources.HalAppender;
 import sonia.scm.api.v2.resources.HalEnricher;
@@ -28,7 +30,16 @@ import sonia.scm.repository.NamespaceAndName;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
+import java.net.URLEncoder;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Appends an <code>upload</code> link to directories new files can be created in. If the system property
+ * <code>scm.editor.lazyLinks</code> is set to <code>true</code> (see {@link FileLinkEnricher}), a templated
+ * <code>editorCapabilities</code> link is appended, too, so that the possible changes for a single file can be
+ * resolved on demand by replacing <code>{path}</code> with the path of the file.
+ */
 @Extension
 @Enrich(BrowserResult.class)
 public class BrowserResultLinkEnricher implements HalEnricher {
@@ -36,26 +47,44 @@ public class BrowserResultLinkEnricher implements HalEnricher {
   private final Provider<ScmPathInfoStore> scmPathInfoStore;
   private final EditorPreconditions preconditions;
   private final ChangeGuardCheck changeGuardCheck;
+  private final EditorMetrics metrics;
+  private final boolean lazyLinks;
 
   @Inject
-  public BrowserResultLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, EditorPreconditions preconditions, ChangeGuardCheck changeGuardCheck) {
+  public BrowserResultLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, EditorPreconditions preconditions, ChangeGuardCheck changeGuardCheck, EditorMetrics metrics) {
+    this(scmPathInfoStore, preconditions, changeGuardCheck, metrics, Boolean.getBoolean(FileLinkEnricher.LAZY_LINKS_PROPERTY));
+  }
+
+  @VisibleForTesting
+  BrowserResultLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, EditorPreconditions preconditions, ChangeGuardCheck changeGuardCheck, EditorMetrics metrics, boolean lazyLinks) {
     this.scmPathInfoStore = scmPathInfoStore;
     this.preconditions = preconditions;
     this.changeGuardCheck = changeGuardCheck;
+    this.metrics = metrics;
+    this.lazyLinks = lazyLinks;
   }
 
   @Override
   public void enrich(HalEnricherContext context, HalAppender appender) {
+    metrics.timeEnrichment("browserResult", () -> enrichBrowserResult(context, appender));
+  }
+
+  private void enrichBrowserResult(HalEnricherContext context, HalAppender appender) {
     NamespaceAndName namespaceAndName = context.oneRequireByType(NamespaceAndName.class);
     BrowserResult browserResult = context.oneRequireByType(BrowserResult.class);
-    if (isEnrichable(namespaceAndName, browserResult)) {
+    if (preconditions.isEditable(namespaceAndName, browserResult)) {
       LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
-      appender.appendLink("upload", createUploadLink(linkBuilder, namespaceAndName));
+      if (canCreateFilesIn(namespaceAndName, browserResult)) {
+        appender.appendLink("upload", createUploadLink(linkBuilder, namespaceAndName));
+      }
+      if (lazyLinks) {
+        appender.appendLink("editorCapabilities", createCapabilitiesLink(linkBuilder, namespaceAndName, browserResult));
+      }
     }
   }
 
-  private boolean isEnrichable(NamespaceAndName namespaceAndName, BrowserResult browserResult) {
-    return preconditions.isEditable(namespaceAndName, browserResult) && isDirectory(browserResult) &&
+  private boolean canCreateFilesIn(NamespaceAndName namespaceAndName, BrowserResult browserResult) {
+    return isDirectory(browserResult) &&
       changeGuardCheck.canCreateFilesIn(namespaceAndName, browserResult.getRequestedRevision(), browserResult.getFile().getPath()).isEmpty();
   }
 
@@ -69,4 +98,15 @@ public class BrowserResultLinkEnricher implements HalEnricher {
       .href()
       .replace("PATH_PART", "{path}");
   }
+
+  private String createCapabilitiesLink(LinkBuilder linkBuilder, NamespaceAndName repository, BrowserResult browserResult) {
+    String href = linkBuilder.method("getCapabilities")
+      .parameters(repository.getNamespace(), repository.getName(), "PATH_PART")
+      .href()
+      .replace("PATH_PART", "{path}");
+    if (Strings.isNullOrEmpty(browserResult.getRequestedRevision())) {
+      return href;
+    }
+    return href + "?revision=" + URLEncoder.encode(browserResult.getRequestedRevision(), UTF_8);
+  }
 }
@@ -20,6 +20,8 @@ import sonia.scm.plugin.ExtensionPoint;
 import sonia.scm.repository.NamespaceAndName;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Arrays.asList;
@@ -30,6 +32,19 @@ import static java.util.Collections.unmodifiableCollection;
 public interface ChangeGuard {
   Collection<ChangeObstacle> getObstacles(NamespaceAndName namespaceAndName, String branch, Changes changes);
 
+  /**
+   * Checks many independent changes at once, one for each path (for example all files of a directory listing). The
+   * default implementation calls {@link #getObstacles(NamespaceAndName, String, Changes)} for each path. Guards that
+   * can evaluate their rules for a whole set of paths more efficiently should override this.
+   *
+   * @return the obstacles for each path; paths without obstacles may be omitted
+   */
+  default Map<String, Collection<ChangeObstacle>> getObstaclesByPath(NamespaceAndName namespaceAndName, String branch, Map<String, Changes> changesByPath) {
+    Map<String, Collection<ChangeObstacle>> obstacles = new HashMap<>();
+    changesByPath.forEach((path, changes) -> obstacles.put(path, getObstacles(namespaceAndName, branch, changes)));
+    return obstacles;
+  }
+
   class Changes {
     private Collection<String> filesToEdit = emptyList();
     private Collection<String> filesToCreate = emptyList();
@@ -78,7 +93,11 @@ public interface ChangeGuard {
     }
 
     Changes withFilesToDelete(String... filesToDelete) {
-      this.filesToDelete = asList(filesToDelete);
+      return withFilesToDelete(asList(filesToDelete));
+    }
+
+    Changes withFilesToDelete(Collection<String> filesToDelete) {
+      this.filesToDelete = filesToDelete;
       return this;
     }
 
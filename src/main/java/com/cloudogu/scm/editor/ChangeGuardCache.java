@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.github.legman.Subscribe;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import sonia.scm.EagerSingleton;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.unmodifiableCollection;
+
+/**
+ * Caches the obstacles of the {@link ChangeGuard}s for single paths, so that browsing the same directories again and
+ * again does not run the guards for every request. The entries are kept for each user and are dropped, when a new
+ * changeset is created with the editor or pushed to the repository. The cache can be configured with system
+ * properties:
+ * <ul>
+ *   <li><code>scm.editor.guard.cache.size</code>: maximum number of cached paths (default: 10000, <code>0</code>
+ *     disables the cache)</li>
+ *   <li><code>scm.editor.guard.cache.ttl</code>: time in seconds an entry is kept (default: 30)</li>
+ * </ul>
+ */
+@Extension
+@EagerSingleton
+public class ChangeGuardCache {
+
+  static final String SIZE_PROPERTY = "scm.editor.guard.cache.size";
+  static final String TTL_PROPERTY = "scm.editor.guard.cache.ttl";
+
+  private static final long DEFAULT_SIZE = 10000;
+  private static final long DEFAULT_TTL = 30;
+
+  private final Cache<Key, Collection<ChangeObstacle>> cache;
+
+  @Inject
+  ChangeGuardCache() {
+    this(Long.getLong(SIZE_PROPERTY, DEFAULT_SIZE), Long.getLong(TTL_PROPERTY, DEFAULT_TTL));
+  }
+
+  ChangeGuardCache(long maximumSize, long ttlSeconds) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maximumSize)
+      .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+      .build();
+  }
+
+  Collection<ChangeObstacle> get(NamespaceAndName namespaceAndName, String revision, ChangeKind kind, String path) {
+    return cache.getIfPresent(new Key(namespaceAndName, revision, kind, path, currentPrincipal()));
+  }
+
+  void put(NamespaceAndName namespaceAndName, String revision, ChangeKind kind, String path, Collection<ChangeObstacle> obstacles) {
+    if (obstacles.stream().noneMatch(GuardTimeoutObstacle.class::isInstance)) {
+      cache.put(new Key(namespaceAndName, revision, kind, path, currentPrincipal()), unmodifiableCollection(new ArrayList<>(obstacles)));
+    }
+  }
+
+  /**
+   * Drops all entries for the given branch. If no branch is given, all entries of the repository are dropped, because
+   * the default branch may have been requested by its name.
+   */
+  void invalidate(NamespaceAndName namespaceAndName, String branch) {
+    cache.asMap().keySet().removeIf(
+      key -> key.namespaceAndName().equals(namespaceAndName) && (Strings.isNullOrEmpty(branch) || branch.equals(key.revision()))
+    );
+  }
+
+  @Subscribe(async = false)
+  public void onPush(PostReceiveRepositoryHookEvent event) {
+    invalidate(event.getRepository().getNamespaceAndName(), null);
+  }
+
+  private static String currentPrincipal() {
+    Subject subject = ThreadContext.getSubject();
+    if (subject == null || subject.getPrincipal() == null) {
+      return null;
+    }
+    return subject.getPrincipal().toString();
+  }
+
+  private record Key(NamespaceAndName namespaceAndName, String revision, ChangeKind kind, String path, String principal) {
+  }
+}
@@ -16,53 +16,195 @@
 
 package com.cloudogu.scm.editor;
 
+import com.google.common.collect.Iterables;
 import sonia.scm.repository.NamespaceAndName;
 
 import jakarta.inject.Inject;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import static com.cloudogu.scm.editor.ChangeGuard.Changes.changes;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Asks all {@link ChangeGuard}s for obstacles of changes. The batch checks pass the paths to the guards in parts, so
+ * that the timeout of the guards applies to a limited number of paths and not to a whole directory. The size of these
+ * parts can be configured with the system property <code>scm.editor.guard.batchSize</code> (default: 100).
+ */
 public class ChangeGuardCheck {
 
+  static final String BATCH_SIZE_PROPERTY = "scm.editor.guard.batchSize";
+
+  private static final int DEFAULT_BATCH_SIZE = 100;
+
   private final Set<ChangeGuard> changeGuards;
+  private final EditorMetrics metrics;
+  private final ChangeGuardEvaluator evaluator;
+  private final ChangeGuardCache cache;
+  private final int batchSize;
 
   @Inject
-  ChangeGuardCheck(Set<ChangeGuard> changeGuards) {
+  ChangeGuardCheck(Set<ChangeGuard> changeGuards, EditorMetrics metrics, ChangeGuardEvaluator evaluator, ChangeGuardCache cache) {
+    this(changeGuards, metrics, evaluator, cache, Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+  }
+
+  ChangeGuardCheck(Set<ChangeGuard> changeGuards, EditorMetrics metrics, ChangeGuardEvaluator evaluator, ChangeGuardCache cache, int batchSize) {
     this.changeGuards = changeGuards;
+    this.metrics = metrics;
+    this.evaluator = evaluator;
+    this.cache = cache;
+    this.batchSize = Math.max(1, batchSize);
   }
 
   public Collection<ChangeObstacle> isDeletable(NamespaceAndName namespaceAndName, String revision, String path) {
-    return changeGuards
-      .stream()
-      .map(guard -> guard.getObstacles(namespaceAndName, revision, changes().withFilesToDelete(path)))
-      .flatMap(Collection::stream)
-      .collect(toList());
+    return getObstacles(namespaceAndName, revision, changes().withFilesToDelete(path));
   }
 
   public Collection<ChangeObstacle> isModifiable(NamespaceAndName namespaceAndName, String revision, String path) {
-    return changeGuards
-      .stream()
-      .map(guard -> guard.getObstacles(namespaceAndName, revision, changes().withFilesToModify(path)))
-      .flatMap(Collection::stream)
-      .collect(toList());
+    return getObstacles(namespaceAndName, revision, changes().withFilesToModify(path));
   }
 
   public Collection<ChangeObstacle> isModifiableAndCreatable(NamespaceAndName namespaceAndName, String revision, Collection<String> toBeModified, Collection<String> toBeCreated) {
-    return changeGuards
-      .stream()
-      .map(guard -> guard.getObstacles(namespaceAndName, revision, changes().withFilesToModify(toBeModified).withFilesToCreate(toBeCreated)))
-      .flatMap(Collection::stream)
-      .collect(toList());
+    return getObstacles(namespaceAndName, revision, changes().withFilesToModify(toBeModified).withFilesToCreate(toBeCreated));
+  }
+
+  public Collection<ChangeObstacle> isChangeable(NamespaceAndName namespaceAndName, String revision, Collection<String> toBeModified, Collection<String> toBeCreated, Collection<String> toBeDeleted) {
+    return getObstacles(namespaceAndName, revision, changes().withFilesToModify(toBeModified).withFilesToCreate(toBeCreated).withFilesToDelete(toBeDeleted));
   }
 
   public Collection<ChangeObstacle> canCreateFilesIn(NamespaceAndName namespaceAndName, String revision, String path) {
-    return changeGuards
+    return getObstacles(namespaceAndName, revision, changes().withPathForCreate(path));
+  }
+
+  /**
+   * Batch variant of {@link #isDeletable(NamespaceAndName, String, String)}. Each guard is asked once for each batch
+   * of paths. The results are cached for a short time, so this should only be used to display the possible
+   * changes, not to check them right before a commit.
+   *
+   * @return the obstacles for each of the given paths
+   */
+  public Map<String, Collection<ChangeObstacle>> isDeletableForEach(NamespaceAndName namespaceAndName, String revision, Collection<String> paths) {
+    return getObstaclesByPath(namespaceAndName, revision, paths, ChangeKind.DELETE, path -> changes().withFilesToDelete(path));
+  }
+
+  /**
+   * Batch variant of {@link #isModifiable(NamespaceAndName, String, String)}. Each guard is asked once for each batch
+   * of paths. The results are cached for a short time, so this should only be used to display the possible
+   * changes, not to check them right before a commit.
+   *
+   * @return the obstacles for each of the given paths
+   */
+  public Map<String, Collection<ChangeObstacle>> isModifiableForEach(NamespaceAndName namespaceAndName, String revision, Collection<String> paths) {
+    return getObstaclesByPath(namespaceAndName, revision, paths, ChangeKind.MODIFY, path -> changes().withFilesToModify(path));
+  }
+
+  /**
+   * Batch variant of {@link #canCreateFilesIn(NamespaceAndName, String, String)}. Each guard is asked once for each
+   * batch of paths. The results are cached for a short time, so this should only be used to display the possible
+   * changes, not to check them right before a commit.
+   *
+   * @return the obstacles for each of the given paths
+   */
+  public Map<String, Collection<ChangeObstacle>> canCreateFilesInEach(NamespaceAndName namespaceAndName, String revision, Collection<String> paths) {
+    return getObstaclesByPath(namespaceAndName, revision, paths, ChangeKind.CREATE, path -> changes().withPathForCreate(path));
+  }
+
+  /**
+   * Drops the cached results for the given branch after a new changeset has been created.
+   */
+  void invalidate(NamespaceAndName namespaceAndName, String branch) {
+    cache.invalidate(namespaceAndName, branch);
+  }
+
+  private Map<String, Collection<ChangeObstacle>> getObstaclesByPath(NamespaceAndName namespaceAndName, String revision, Collection<String> paths, ChangeKind kind, Function<String, ChangeGuard.Changes> changesForPath) {
+    Map<String, ChangeGuard.Changes> changesByPath = new LinkedHashMap<>();
+    Map<String, Collection<ChangeObstacle>> obstacles = new HashMap<>();
+    for (String path : paths) {
+      Collection<ChangeObstacle> cachedObstacles = cache.get(namespaceAndName, revision, kind, path);
+      if (cachedObstacles == null) {
+        changesByPath.put(path, changesForPath.apply(path));
+        obstacles.put(path, new ArrayList<>());
+      } else {
+        obstacles.put(path, cachedObstacles);
+      }
+    }
+    Set<ChangeGuard> respondingGuards = new LinkedHashSet<>(changeGuards);
+    for (List<String> batchPaths : Iterables.partition(changesByPath.keySet(), batchSize)) {
+      Map<String, ChangeGuard.Changes> batch = new LinkedHashMap<>();
+      batchPaths.forEach(path -> batch.put(path, changesByPath.get(path)));
+      for (ChangeGuard guard : changeGuards) {
+        if (!respondingGuards.contains(guard) && !evaluator.isFailOpen()) {
+          // a guard, that did not respond for a former batch, is not asked again, so that it does not delay every batch
+          addObstacles(obstacles, batch, timeoutObstacles(guard, batch));
+        }
+      }
+      respondingGuards = evaluateBatch(namespaceAndName, revision, respondingGuards, batch, obstacles);
+    }
+    changesByPath.keySet().forEach(path -> cache.put(namespaceAndName, revision, kind, path, obstacles.get(path)));
+    return obstacles;
+  }
+
+  /**
+   * Asks the given guards for the obstacles of a single batch and returns the guards that responded in time.
+   */
+  private Set<ChangeGuard> evaluateBatch(NamespaceAndName namespaceAndName, String revision, Set<ChangeGuard> guards, Map<String, ChangeGuard.Changes> batch, Map<String, Collection<ChangeObstacle>> obstacles) {
+    Set<ChangeGuard> respondedGuards = ConcurrentHashMap.newKeySet();
+    List<Map<String, Collection<ChangeObstacle>>> obstaclesByGuard = evaluator.evaluate(
+      guards,
+      guard -> {
+        Map<String, Collection<ChangeObstacle>> guardObstacles = metrics.timeGuard(guard, () -> guard.getObstaclesByPath(namespaceAndName, revision, batch));
+        guardObstacles.values().forEach(pathObstacles -> metrics.countObstacles(guard, pathObstacles));
+        respondedGuards.add(guard);
+        return guardObstacles;
+      },
+      guard -> timeoutObstacles(guard, batch)
+    );
+    obstaclesByGuard.forEach(guardObstacles -> addObstacles(obstacles, batch, guardObstacles));
+    Set<ChangeGuard> stillResponding = new LinkedHashSet<>(guards);
+    stillResponding.retainAll(respondedGuards);
+    return stillResponding;
+  }
+
+  private void addObstacles(Map<String, Collection<ChangeObstacle>> obstacles, Map<String, ChangeGuard.Changes> batch, Map<String, Collection<ChangeObstacle>> guardObstacles) {
+    guardObstacles.forEach((path, pathObstacles) -> {
+      if (pathObstacles != null && batch.containsKey(path)) {
+        obstacles.get(path).addAll(pathObstacles);
+      }
+    });
+  }
+
+  private Map<String, Collection<ChangeObstacle>> timeoutObstacles(ChangeGuard guard, Map<String, ChangeGuard.Changes> batch) {
+    Map<String, Collection<ChangeObstacle>> timeoutObstacles = new HashMap<>();
+    batch.keySet().forEach(path -> timeoutObstacles.put(path, timeoutObstacle(guard)));
+    return timeoutObstacles;
+  }
+
+  private Collection<ChangeObstacle> getObstacles(NamespaceAndName namespaceAndName, String revision, ChangeGuard.Changes changes) {
+    List<Collection<ChangeObstacle>> obstaclesByGuard = evaluator.evaluate(
+      changeGuards,
+      guard -> {
+        Collection<ChangeObstacle> obstacles = metrics.timeGuard(guard, () -> guard.getObstacles(namespaceAndName, revision, changes));
+        metrics.countObstacles(guard, obstacles);
+        return obstacles;
+      },
+      this::timeoutObstacle
+    );
+    return obstaclesByGuard
       .stream()
-      .map(guard -> guard.getObstacles(namespaceAndName, revision, changes().withPathForCreate(path)))
       .flatMap(Collection::stream)
       .collect(toList());
   }
+
+  private Collection<ChangeObstacle> timeoutObstacle(ChangeGuard guard) {
+    return singletonList(new GuardTimeoutObstacle(guard, evaluator.getTimeoutMillis()));
+  }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Evaluates the {@link ChangeGuard}s concurrently on a bounded pool of daemon threads, so that the time for a check is
+ * bounded by the slowest guard instead of the sum of all guards. This is done for any number of guards, so that the
+ * timeout applies to a single guard, too. The timeout of each guard starts when the guard is actually started; a
+ * guard that has not been started within its timeout, because all threads are busy (for example with guards that
+ * ignore interrupts), or that cannot be queued at all, is handled like a guard that did not respond in time. The
+ * evaluation can be configured with system properties:
+ * <ul>
+ *   <li><code>scm.editor.guard.threads</code>: maximum number of threads for the evaluation (default: number of
+ *     processors, at least 2)</li>
+ *   <li><code>scm.editor.guard.timeout</code>: time in milliseconds each guard may take (default: 10000)</li>
+ *   <li><code>scm.editor.guard.failOpen</code>: if set to <code>true</code>, a guard that does not respond in time is
+ *     ignored; otherwise the change is prevented (default: <code>false</code>)</li>
+ * </ul>
+ * Only the Shiro subject of the caller is available to guards; objects in the request scope (like the current HTTP
+ * request) cannot be injected into or used by guards.
+ */
+@Singleton
+class ChangeGuardEvaluator {
+
+  static final String THREADS_PROPERTY = "scm.editor.guard.threads";
+  static final String TIMEOUT_PROPERTY = "scm.editor.guard.timeout";
+  static final String FAIL_OPEN_PROPERTY = "scm.editor.guard.failOpen";
+
+  private static final Logger LOG = LoggerFactory.getLogger(ChangeGuardEvaluator.class);
+
+  private static final long DEFAULT_TIMEOUT = 10000;
+  private static final int QUEUE_SIZE_PER_THREAD = 64;
+
+  private final ExecutorService executor;
+  private final long timeoutMillis;
+  private final boolean failOpen;
+
+  @Inject
+  ChangeGuardEvaluator() {
+    this(
+      createExecutor(Integer.getInteger(THREADS_PROPERTY, Math.max(2, Runtime.getRuntime().availableProcessors()))),
+      Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT),
+      Boolean.getBoolean(FAIL_OPEN_PROPERTY)
+    );
+  }
+
+  ChangeGuardEvaluator(ExecutorService executor, long timeoutMillis, boolean failOpen) {
+    this.executor = executor;
+    this.timeoutMillis = timeoutMillis;
+    this.failOpen = failOpen;
+  }
+
+  /**
+   * Runs the given check for each guard and returns the results in the order of the guards. For a guard that does not
+   * respond in time, the result of <code>onTimeout</code> is used, if the evaluation is configured to fail closed.
+   * Otherwise the guard is left out.
+   */
+  <T> List<T> evaluate(Collection<ChangeGuard> guards, Function<ChangeGuard, T> check, Function<ChangeGuard, T> onTimeout) {
+    if (guards.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<GuardTask<T>> tasks = new ArrayList<>(guards.size());
+    for (ChangeGuard guard : guards) {
+      GuardTask<T> task = new GuardTask<>(guard, check);
+      try {
+        task.future = executor.submit(withSubject(task));
+      } catch (RejectedExecutionException e) {
+        LOG.warn("change guard {} could not be started, because all threads are busy", guard.getClass().getName());
+      }
+      tasks.add(task);
+    }
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    List<T> results = new ArrayList<>(guards.size());
+    for (GuardTask<T> task : tasks) {
+      try {
+        if (task.future == null) {
+          throw new TimeoutException("change guard has been rejected");
+        }
+        results.add(task.future.get(task.remainingNanos(timeoutNanos), TimeUnit.NANOSECONDS));
+      } catch (TimeoutException e) {
+        task.cancel();
+        LOG.warn("change guard {} did not respond within {} ms; {}", task.guard.getClass().getName(), timeoutMillis, failOpen ? "ignoring guard" : "preventing change");
+        if (!failOpen) {
+          results.add(onTimeout.apply(task.guard));
+        }
+      } catch (ExecutionException e) {
+        cancelAll(tasks);
+        throw unwrap(e);
+      } catch (InterruptedException e) {
+        cancelAll(tasks);
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while waiting for change guards", e);
+      }
+    }
+    return results;
+  }
+
+  long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  boolean isFailOpen() {
+    return failOpen;
+  }
+
+  private <T> Callable<T> withSubject(Callable<T> callable) {
+    Subject subject = ThreadContext.getSubject();
+    if (subject == null) {
+      return callable;
+    }
+    return subject.associateWith(callable);
+  }
+
+  private static <T> void cancelAll(List<GuardTask<T>> tasks) {
+    tasks.forEach(GuardTask::cancel);
+  }
+
+  private static RuntimeException unwrap(ExecutionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException runtimeException) {
+      return runtimeException;
+    }
+    if (cause instanceof Error error) {
+      throw error;
+    }
+    return new IllegalStateException("change guard failed", cause);
+  }
+
+  private static ExecutorService createExecutor(int configuredThreads) {
+    int threads = Math.max(1, configuredThreads);
+    // guards that ignore interrupts keep their threads after a timeout, so neither the threads nor the queue may grow
+    // without limit; rejected guards are handled like guards that did not respond in time
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(threads * QUEUE_SIZE_PER_THREAD), new GuardThreadFactory()
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Remembers when the guard has been started, so that the time a task may have waited for a thread of an executor
+   * with a queue does not count against the timeout of the guard.
+   */
+  private static class GuardTask<T> implements Callable<T> {
+
+    private final ChangeGuard guard;
+    private final Function<ChangeGuard, T> check;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile long startedNanos;
+    private Future<T> future;
+
+    GuardTask(ChangeGuard guard, Function<ChangeGuard, T> check) {
+      this.guard = guard;
+      this.check = check;
+    }
+
+    @Override
+    public T call() {
+      startedNanos = System.nanoTime();
+      started.countDown();
+      return check.apply(guard);
+    }
+
+    void cancel() {
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
+
+    /**
+     * Waits up to the timeout for the guard to be started and returns the time left from its own timeout.
+     */
+    long remainingNanos(long timeoutNanos) throws InterruptedException {
+      if (!started.await(timeoutNanos, TimeUnit.NANOSECONDS)) {
+        return 0;
+      }
+      return Math.max(0, startedNanos + timeoutNanos - System.nanoTime());
+    }
+  }
+
+  private static class GuardThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "EditorChangeGuard-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -53,8 +53,15 @@ public class ChangeNotAllowedExceptionMapper implements ExceptionMapper<ChangeNo
         public Collection<Object> getViolations() {
           return exception.getObstacles()
             .stream()
-            .map(ChangeObstacle::getKey)
-            .map(key -> new Object() { public String getKey() { return key; }})
+            .map(obstacle -> new Object() {
+              public String getKey() {
+                return obstacle.getKey();
+              }
+
+              public String getMessage() {
+                return obstacle.getMessage();
+              }
+            })
             .collect(Collectors.toList());
         }
       }).type(VndMediaType.ERROR_TYPE).build();
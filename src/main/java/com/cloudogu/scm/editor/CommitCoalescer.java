@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.Strings;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import sonia.scm.repository.NamespaceAndName;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Merges batch changes of a single user for the same branch, that arrive within a short time window, into a single
+ * commit. The first request of a window waits for the window to pass and then commits the operations of all requests
+ * that joined in the meantime. Every request receives the id of the common changeset. If the common commit fails, the
+ * changes of every request are committed on their own, so that a request does not fail because of the changes of
+ * another one.
+ * <br>
+ * Requests are merged only if they are sent by the same user and expect the same revision of the branch (or none at
+ * all), so that the author of the changeset is correct and the expected revision is still checked for every request. A request that changes a path that is already changed by the current
+ * window starts a new window, that is committed after the current one. The coalescing is disabled by default and can
+ * be configured with system properties:
+ * <ul>
+ *   <li><code>scm.editor.coalesce.window</code>: time in milliseconds to wait for further changes
+ *     (default: 0, which disables the coalescing)</li>
+ *   <li><code>scm.editor.coalesce.maxOperations</code>: maximum number of operations in a single commit
+ *     (default: 1000)</li>
+ * </ul>
+ */
+@Singleton
+class CommitCoalescer {
+
+  static final String WINDOW_PROPERTY = "scm.editor.coalesce.window";
+  static final String MAX_OPERATIONS_PROPERTY = "scm.editor.coalesce.maxOperations";
+
+  private static final long DEFAULT_WINDOW = 0;
+  private static final int DEFAULT_MAX_OPERATIONS = 1000;
+
+  private final long windowMillis;
+  private final int maxOperations;
+  private final Map<Key, Window> windows = new HashMap<>();
+
+  @Inject
+  CommitCoalescer() {
+    this(Long.getLong(WINDOW_PROPERTY, DEFAULT_WINDOW), Integer.getInteger(MAX_OPERATIONS_PROPERTY, DEFAULT_MAX_OPERATIONS));
+  }
+
+  CommitCoalescer(long windowMillis, int maxOperations) {
+    this.windowMillis = windowMillis;
+    this.maxOperations = maxOperations;
+  }
+
+  boolean isEnabled() {
+    return windowMillis > 0;
+  }
+
+  /**
+   * Adds the operations to the current window for the branch and returns the id of the changeset they have been
+   * committed with. The committer is used for the common commit, if this request is the first one of a new window,
+   * and for the operations of this request alone, if the common commit failed.
+   *
+   * @param branch The branch of the request, resolved to the default branch if the request has none (see
+   *               {@link EditorService#resolveBranch(String, String, String)}).
+   * @param paths  All paths changed by the operations.
+   */
+  String submit(NamespaceAndName namespaceAndName, String branch, String expectedRevision, String commitMessage,
+                List<BatchOperationDto> operations, Collection<String> paths, Committer committer) throws IOException {
+    Key key = new Key(namespaceAndName, Strings.nullToEmpty(branch), Strings.nullToEmpty(expectedRevision), currentPrincipal());
+    Member member = new Member(commitMessage, operations);
+    Window window;
+    boolean first;
+    synchronized (windows) {
+      Window current = windows.get(key);
+      first = current == null || !current.tryAdd(member, paths);
+      if (first) {
+        window = new Window(current == null ? null : current.finished(), member, paths);
+        windows.put(key, window);
+      } else {
+        window = current;
+      }
+    }
+    if (!first) {
+      return await(window, member, committer);
+    }
+    waitForWindow(window);
+    synchronized (windows) {
+      windows.remove(key, window);
+    }
+    try {
+      window.result.complete(committer.commit(window.commitMessage(), window.operations()));
+    } catch (IOException | RuntimeException e) {
+      window.result.completeExceptionally(e);
+    } finally {
+      if (!window.result.isDone()) {
+        // the other requests of the window must not wait forever, even if the commit failed with an error
+        window.result.completeExceptionally(new IllegalStateException("commit of coalesced changes aborted"));
+        member.finished.complete(null);
+      }
+    }
+    return await(window, member, committer);
+  }
+
+  private void waitForWindow(Window window) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(windowMillis);
+      if (window.previous != null) {
+        // the outcome of the previous window does not matter, it only has to be committed first
+        window.previous.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the id of the common changeset of the window. If the common commit failed, the changes of the given
+   * member are committed on their own, unless the member has been the only one of the window anyway.
+   */
+  private String await(Window window, Member member, Committer committer) throws IOException {
+    try {
+      return window.result.join();
+    } catch (CompletionException e) {
+      if (window.size() == 1) {
+        throw unwrap(e);
+      }
+      return committer.commit(member.commitMessage, member.operations);
+    } finally {
+      member.finished.complete(null);
+    }
+  }
+
+  private static IOException unwrap(CompletionException e) {
+    if (e.getCause() instanceof IOException) {
+      return (IOException) e.getCause();
+    }
+    if (e.getCause() instanceof RuntimeException) {
+      throw (RuntimeException) e.getCause();
+    }
+    throw e;
+  }
+
+  private static String currentPrincipal() {
+    Subject subject = ThreadContext.getSubject();
+    if (subject == null || subject.getPrincipal() == null) {
+      return null;
+    }
+    return subject.getPrincipal().toString();
+  }
+
+  @FunctionalInterface
+  interface Committer {
+    String commit(String commitMessage, List<BatchOperationDto> operations) throws IOException;
+  }
+
+  private record Key(NamespaceAndName namespaceAndName, String branch, String expectedRevision, String principal) {
+  }
+
+  /**
+   * The changes of a single request, that are committed on their own if the common commit of the window fails.
+   */
+  private static class Member {
+
+    private final String commitMessage;
+    private final List<BatchOperationDto> operations;
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+    private Member(String commitMessage, List<BatchOperationDto> operations) {
+      this.commitMessage = commitMessage;
+      this.operations = operations;
+    }
+  }
+
+  /**
+   * The requests collected for a single commit. Access is guarded by the map of windows.
+   */
+  private class Window {
+
+    private final CompletableFuture<Void> previous;
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private final List<Member> members = new ArrayList<>();
+    private final Set<String> paths = new HashSet<>();
+    private int operationCount;
+
+    private Window(CompletableFuture<Void> previous, Member member, Collection<String> paths) {
+      this.previous = previous;
+      add(member, paths);
+    }
+
+    private boolean tryAdd(Member member, Collection<String> newPaths) {
+      if (operationCount + member.operations.size() > maxOperations || newPaths.stream().anyMatch(paths::contains)) {
+        return false;
+      }
+      add(member, newPaths);
+      return true;
+    }
+
+    private void add(Member member, Collection<String> newPaths) {
+      members.add(member);
+      operationCount += member.operations.size();
+      paths.addAll(newPaths);
+    }
+
+    private int size() {
+      synchronized (windows) {
+        return members.size();
+      }
+    }
+
+    /**
+     * Completes, when the changes of all members have been committed, either together or on their own.
+     */
+    private CompletableFuture<Void> finished() {
+      synchronized (windows) {
+        return CompletableFuture.allOf(members.stream().map(member -> member.finished).toArray(CompletableFuture[]::new));
+      }
+    }
+
+    private String commitMessage() {
+      synchronized (windows) {
+        return members.stream().map(member -> member.commitMessage).distinct().collect(Collectors.joining("\n\n"));
+      }
+    }
+
+    private List<BatchOperationDto> operations() {
+      synchronized (windows) {
+        return members.stream().flatMap(member -> member.operations.stream()).collect(Collectors.toList());
+      }
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.Strings;
+
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import java.io.IOException;
+
+import static com.cloudogu.scm.editor.ContentEncodings.CONTENT_ENCODING_HEADER;
+
+/**
+ * Decompresses request bodies with a <code>Content-Encoding</code> header on the fly, before they are passed to the
+ * resource methods annotated with {@link DecodeContentEncoding}.
+ */
+@Provider
+@DecodeContentEncoding
+public class ContentEncodingInterceptor implements ReaderInterceptor {
+
+  @Override
+  public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+    String contentEncoding = context.getHeaders().getFirst(CONTENT_ENCODING_HEADER);
+    if (!Strings.isNullOrEmpty(contentEncoding)) {
+      context.setInputStream(ContentEncodings.decode(contentEncoding, context.getInputStream()));
+      // the body is decoded now, so no one else must decode it again
+      context.getHeaders().remove(CONTENT_ENCODING_HEADER);
+    }
+    return context.proceed();
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.Strings;
+
+import javax.annotation.CheckForNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes request bodies and multipart parts according to their <code>Content-Encoding</code> header while they are
+ * read. Supported are <code>gzip</code> and <code>deflate</code>; several codings are undone in reverse order. To
+ * protect the server from highly compressed bodies, the size of the decoded content is limited with the system
+ * property <code>scm.editor.contentEncoding.maxSize</code> in bytes (default: 1073741824).
+ */
+final class ContentEncodings {
+
+  static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  static final String MAX_SIZE_PROPERTY = "scm.editor.contentEncoding.maxSize";
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+  private ContentEncodings() {
+  }
+
+  static InputStream decode(@CheckForNull String contentEncoding, InputStream body) throws IOException {
+    return decode(contentEncoding, body, Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+  }
+
+  static InputStream decode(@CheckForNull String contentEncoding, InputStream body, long maxSize) throws IOException {
+    if (Strings.isNullOrEmpty(contentEncoding)) {
+      return body;
+    }
+    String[] codings = contentEncoding.split(",");
+    InputStream decoded = body;
+    for (int i = codings.length - 1; i >= 0; --i) {
+      decoded = decodeCoding(codings[i].trim().toLowerCase(Locale.ENGLISH), decoded);
+    }
+    return decoded == body ? body : new LimitedContent(decoded, maxSize);
+  }
+
+  private static InputStream decodeCoding(String coding, InputStream body) throws IOException {
+    switch (coding) {
+      case "":
+      case "identity":
+        return body;
+      case "gzip":
+      case "x-gzip":
+        return new GZIPInputStream(body, BUFFER_SIZE);
+      case "deflate":
+        return new InflaterInputStream(body);
+      default:
+        throw new UnsupportedContentEncodingException(coding);
+    }
+  }
+
+  /**
+   * Fails as soon as more than the maximum size has been read from the decoded content.
+   */
+  private static class LimitedContent extends FilterInputStream {
+
+    private final long maxSize;
+    private long size;
+
+    LimitedContent(InputStream content, long maxSize) {
+      super(content);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value >= 0) {
+        count(1);
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+      int read = super.read(target, offset, length);
+      if (read > 0) {
+        count(read);
+      }
+      return read;
+    }
+
+    private void count(int read) {
+      size += read;
+      if (size > maxSize) {
+        throw new ContentTooLargeException(maxSize);
+      }
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+/**
+ * Writes all files of a directory at a single revision as zip archive to a stream. The archive is written entry by
+ * entry without temporary files. To hide the latency of the repository, small files are read ahead concurrently on a
+ * bounded pool of daemon threads while the current entry is written; larger files are streamed directly. Every file
+ * read ahead uses a repository service of its own, so that the services are neither shared between threads nor
+ * closed while a cancelled read is still running. This can be configured with system properties:
+ * <ul>
+ *   <li><code>scm.editor.download.threads</code>: maximum number of files read ahead for each archive and number of
+ *     threads reading them (default: 4)</li>
+ *   <li><code>scm.editor.download.prefetchSize</code>: maximum size in bytes of a file that is read ahead; larger
+ *     files are streamed directly (default: 1048576)</li>
+ * </ul>
+ */
+@Singleton
+class DirectoryArchiver {
+
+  static final String THREADS_PROPERTY = "scm.editor.download.threads";
+  static final String PREFETCH_SIZE_PROPERTY = "scm.editor.download.prefetchSize";
+
+  private static final int DEFAULT_THREADS = 4;
+  private static final long DEFAULT_PREFETCH_SIZE = 1024 * 1024;
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final ExecutorService executor;
+  private final int readAhead;
+  private final long prefetchSize;
+
+  @Inject
+  DirectoryArchiver(RepositoryServiceFactory repositoryServiceFactory) {
+    this(repositoryServiceFactory, Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS), Long.getLong(PREFETCH_SIZE_PROPERTY, DEFAULT_PREFETCH_SIZE));
+  }
+
+  DirectoryArchiver(RepositoryServiceFactory repositoryServiceFactory, int threads, long prefetchSize) {
+    this(repositoryServiceFactory, createExecutor(Math.max(1, threads)), Math.max(0, threads), prefetchSize);
+  }
+
+  DirectoryArchiver(RepositoryServiceFactory repositoryServiceFactory, ExecutorService executor, int readAhead, long prefetchSize) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.executor = executor;
+    this.readAhead = readAhead;
+    this.prefetchSize = prefetchSize;
+  }
+
+  /**
+   * Resolves the revision and collects the files of the directory. This is done before anything is written, so that
+   * a missing directory or revision can still be reported as error.
+   */
+  DirectoryArchive prepare(NamespaceAndName namespaceAndName, String revision, String path) throws IOException {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      BrowseCommandBuilder browseCommand = repositoryService.getBrowseCommand()
+        .setPath(path)
+        .setRecursive(true)
+        .setLimit(Integer.MAX_VALUE)
+        .setDisableLastCommit(true)
+        .setDisableSubRepositoryDetection(true);
+      if (!Strings.isNullOrEmpty(revision)) {
+        browseCommand.setRevision(revision);
+      }
+      BrowserResult browserResult = browseCommand.getBrowserResult();
+      if (browserResult == null || browserResult.getFile() == null || !browserResult.getFile().isDirectory()) {
+        throw notFound(entity("Directory", path).in(namespaceAndName));
+      }
+      FileObject directory = browserResult.getFile();
+      List<FileObject> files = new ArrayList<>();
+      collectFiles(directory, files);
+      String directoryPath = CharMatcher.is('/').trimFrom(Strings.nullToEmpty(directory.getPath()));
+      String name = directoryPath.isEmpty() ? namespaceAndName.getName() : directoryPath.substring(directoryPath.lastIndexOf('/') + 1);
+      return new DirectoryArchive(name, browserResult.getRevision(), directoryPath, files);
+    }
+  }
+
+  private void collectFiles(FileObject directory, List<FileObject> files) {
+    for (FileObject child : directory.getChildren()) {
+      if (child.isDirectory()) {
+        collectFiles(child, files);
+      } else if (child.getSubRepository() == null) {
+        files.add(child);
+      }
+    }
+  }
+
+  /**
+   * Writes the files of the prepared archive as zip to the given stream. All entries are placed in a folder with the
+   * name of the archive.
+   */
+  void write(NamespaceAndName namespaceAndName, DirectoryArchive archive, OutputStream output) throws IOException {
+    Deque<Future<byte[]>> readsAhead = new ArrayDeque<>();
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName);
+         ZipOutputStream zip = new ZipOutputStream(output)) {
+      List<FileObject> files = archive.files();
+      int submitted = 0;
+      for (int index = 0; index < files.size(); ++index) {
+        for (; submitted < files.size() && submitted <= index + readAhead; ++submitted) {
+          readsAhead.add(readAhead(namespaceAndName, archive.revision(), files.get(submitted)));
+        }
+        FileObject file = files.get(index);
+        byte[] content = await(readsAhead.remove());
+        zip.putNextEntry(new ZipEntry(archive.entryName(file)));
+        if (content != null) {
+          zip.write(content);
+        } else {
+          try (InputStream stream = cat(repositoryService, archive.revision(), file)) {
+            stream.transferTo(zip);
+          }
+        }
+        zip.closeEntry();
+      }
+      zip.finish();
+    } finally {
+      readsAhead.forEach(future -> future.cancel(true));
+    }
+  }
+
+  private Future<byte[]> readAhead(NamespaceAndName namespaceAndName, String revision, FileObject file) {
+    OptionalLong length = file.getLength();
+    if (readAhead == 0 || length.isEmpty() || length.getAsLong() > prefetchSize) {
+      // read later on the writing thread, so that large files do not have to be kept in memory
+      return CompletableFuture.completedFuture(null);
+    }
+    return executor.submit(withSubject(() -> {
+      try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName);
+           InputStream stream = cat(repositoryService, revision, file)) {
+        return ByteStreams.toByteArray(stream);
+      }
+    }));
+  }
+
+  private InputStream cat(RepositoryService repositoryService, String revision, FileObject file) throws IOException {
+    return repositoryService.getCatCommand().setRevision(revision).getStream(file.getPath());
+  }
+
+  private static byte[] await(Future<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading file for archive");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw new IOException("failed to read file for archive", cause);
+    }
+  }
+
+  private static <T> Callable<T> withSubject(Callable<T> callable) {
+    Subject subject = ThreadContext.getSubject();
+    if (subject == null) {
+      return callable;
+    }
+    return subject.associateWith(callable);
+  }
+
+  private static ExecutorService createExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DownloadThreadFactory()
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * The files of a directory at a resolved revision. The name is used for the folder in the archive and the file name
+   * of the archive; for the root directory this is the name of the repository.
+   */
+  record DirectoryArchive(String name, String revision, String path, List<FileObject> files) {
+
+    String fileName() {
+      return name + ".zip";
+    }
+
+    String entryName(FileObject file) {
+      String filePath = file.getPath();
+      if (!path.isEmpty() && filePath.startsWith(path + "/")) {
+        filePath = filePath.substring(path.length() + 1);
+      }
+      return name + "/" + filePath;
+    }
+  }
+
+  private static class DownloadThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "EditorDownload-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
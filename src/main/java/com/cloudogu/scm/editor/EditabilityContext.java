@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import com.google.inject.servlet.RequestScoped;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.FileLock;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the results of the editor checks for the duration of a single request. The enrichers are called for every
+ * child of a {@link BrowserResult}, but whether the browser result is editable does not depend on the child, so it
+ * is computed only once per listing. The same applies to the file locks of a repository, which are fetched once and
+ * indexed by path, and for the obstacles of the change guards, which are checked for all paths of a listing at once.
+ */
+@RequestScoped
+class EditabilityContext {
+
+  private final Map<BrowserResult, Boolean> editableBrowserResults = new IdentityHashMap<>();
+  private final Map<NamespaceAndName, Map<String, FileLock>> fileLocks = new HashMap<>();
+  private final Map<BrowserResult, Map<ChangeKind, Map<String, Collection<ChangeObstacle>>>> obstacles = new IdentityHashMap<>();
+
+  boolean isEditable(BrowserResult browserResult, Supplier<Boolean> check) {
+    return editableBrowserResults.computeIfAbsent(browserResult, result -> check.get());
+  }
+
+  Map<String, FileLock> getFileLocks(NamespaceAndName namespaceAndName, Supplier<Map<String, FileLock>> loader) {
+    return fileLocks.computeIfAbsent(namespaceAndName, repository -> loader.get());
+  }
+
+  Map<String, Collection<ChangeObstacle>> getObstacles(BrowserResult browserResult, ChangeKind kind, Supplier<Map<String, Collection<ChangeObstacle>>> check) {
+    return obstacles
+      .computeIfAbsent(browserResult, result -> new EnumMap<>(ChangeKind.class))
+      .computeIfAbsent(kind, k -> check.get());
+  }
+}
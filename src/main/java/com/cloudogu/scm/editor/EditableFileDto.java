@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import de.otto.edison.hal.HalRepresentation;
+import de.otto.edison.hal.Links;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@SuppressWarnings("java:S2160") // we do not need equals for dto
+public class EditableFileDto extends HalRepresentation {
+  private String path;
+  private String name;
+  private String revision;
+  private long size;
+  private String type;
+  private String language;
+  private String encoding;
+  private boolean locked;
+  private String lockOwner;
+  private boolean move;
+  private boolean delete;
+  private boolean modify;
+  private String content;
+
+  EditableFileDto(Links links, EditableFileLoader.EditableFile file) {
+    super(links);
+    this.path = file.file().getPath();
+    this.name = file.file().getName();
+    this.revision = file.revision();
+    this.size = file.size();
+    this.type = file.type();
+    this.language = file.language();
+    this.encoding = file.encoding();
+    this.locked = file.lockOwner() != null;
+    this.lockOwner = file.lockOwner();
+    this.move = file.capabilities().canMove();
+    this.delete = file.capabilities().canDelete();
+    this.modify = file.capabilities().canModify();
+    this.content = file.content();
+  }
+}
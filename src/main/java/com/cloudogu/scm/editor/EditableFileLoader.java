@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import sonia.scm.io.ContentType;
+import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_16BE;
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+/**
+ * Collects everything the editor needs to open a file with a single repository service: the resolved revision, the
+ * type and the encoding of the content, the lock state, the possible changes and the content itself. The content is
+ * only included for text files up to a maximum size, which can be configured with the system property
+ * <code>scm.editor.open.maxContentSize</code> (in bytes, default: 1048576). For other files clients have to read the
+ * content on their own.
+ */
+class EditableFileLoader {
+
+  static final String MAX_CONTENT_SIZE_PROPERTY = "scm.editor.open.maxContentSize";
+
+  private static final int DEFAULT_MAX_CONTENT_SIZE = 1024 * 1024;
+
+  private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+  private static final byte[] UTF_16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+  private static final byte[] UTF_16LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final FileCapabilitiesCheck capabilitiesCheck;
+  private final EditorPreconditions editorPreconditions;
+  private final ContentTypeResolver contentTypeResolver;
+  private final int maxContentSize;
+
+  @Inject
+  EditableFileLoader(RepositoryServiceFactory repositoryServiceFactory, FileCapabilitiesCheck capabilitiesCheck, EditorPreconditions editorPreconditions, ContentTypeResolver contentTypeResolver) {
+    this(repositoryServiceFactory, capabilitiesCheck, editorPreconditions, contentTypeResolver, Integer.getInteger(MAX_CONTENT_SIZE_PROPERTY, DEFAULT_MAX_CONTENT_SIZE));
+  }
+
+  EditableFileLoader(RepositoryServiceFactory repositoryServiceFactory, FileCapabilitiesCheck capabilitiesCheck, EditorPreconditions editorPreconditions, ContentTypeResolver contentTypeResolver, int maxContentSize) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.capabilitiesCheck = capabilitiesCheck;
+    this.editorPreconditions = editorPreconditions;
+    this.contentTypeResolver = contentTypeResolver;
+    this.maxContentSize = maxContentSize;
+  }
+
+  EditableFile load(NamespaceAndName namespaceAndName, String revision, String path) throws IOException {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      BrowserResult browserResult = browse(repositoryService, revision, path);
+      if (browserResult == null || browserResult.getFile() == null || browserResult.getFile().isDirectory()) {
+        throw notFound(entity("File", path).in(namespaceAndName));
+      }
+      FileObject file = browserResult.getFile();
+      file.setChildren(emptyList());
+
+      // the content is read at the resolved revision, so that it matches the revision clients send back on commit
+      byte[] head;
+      boolean complete;
+      try (InputStream content = repositoryService.getCatCommand().setRevision(browserResult.getRevision()).getStream(file.getPath())) {
+        head = ByteStreams.toByteArray(ByteStreams.limit(content, maxContentSize + 1L));
+        complete = head.length <= maxContentSize;
+      }
+      ContentType contentType = contentTypeResolver.resolve(file.getPath(), head);
+
+      long size = complete ? head.length : file.getLength().orElse(-1);
+      String encoding = null;
+      String content = null;
+      if (contentType.isText()) {
+        Charset charset = detectCharset(head, complete);
+        encoding = charset.name();
+        if (complete) {
+          int bom = bomLength(head, charset);
+          content = new String(head, bom, head.length - bom, charset);
+        }
+      }
+
+      return new EditableFile(
+        file,
+        browserResult.getRevision(),
+        size,
+        contentType.getRaw(),
+        contentType.getLanguage().orElse(null),
+        encoding,
+        editorPreconditions.getLockOwner(namespaceAndName, file.getPath()),
+        capabilitiesCheck.check(namespaceAndName, browserResult, file),
+        content
+      );
+    }
+  }
+
+  private BrowserResult browse(RepositoryService repositoryService, String revision, String path) throws IOException {
+    BrowseCommandBuilder browseCommand = repositoryService.getBrowseCommand()
+      .setPath(path)
+      .setDisableLastCommit(true)
+      .setDisableSubRepositoryDetection(true);
+    if (!Strings.isNullOrEmpty(revision)) {
+      browseCommand.setRevision(revision);
+    }
+    return browseCommand.getBrowserResult();
+  }
+
+  /**
+   * Detects the charset by the byte order mark. Without a mark, content that is valid UTF-8 is taken as UTF-8 and
+   * everything else as ISO-8859-1, which can represent any byte sequence. If the content is not complete, a character
+   * cut off at the end is no error.
+   */
+  static Charset detectCharset(byte[] content, boolean complete) {
+    if (startsWith(content, UTF_8_BOM)) {
+      return UTF_8;
+    } else if (startsWith(content, UTF_16BE_BOM)) {
+      return UTF_16BE;
+    } else if (startsWith(content, UTF_16LE_BOM)) {
+      return UTF_16LE;
+    }
+    ByteBuffer input = ByteBuffer.wrap(content);
+    CoderResult result = UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT)
+      .decode(input, CharBuffer.allocate(content.length), complete);
+    // a character cut off at the end is left in the input and not reported as error
+    return result.isError() || (complete && input.hasRemaining()) ? ISO_8859_1 : UTF_8;
+  }
+
+  private static int bomLength(byte[] content, Charset charset) {
+    if (charset.equals(UTF_8) && startsWith(content, UTF_8_BOM)) {
+      return UTF_8_BOM.length;
+    } else if (charset.equals(UTF_16BE) || charset.equals(UTF_16LE)) {
+      return UTF_16BE_BOM.length;
+    }
+    return 0;
+  }
+
+  private static boolean startsWith(byte[] content, byte[] prefix) {
+    return content.length >= prefix.length && Arrays.equals(content, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+  /**
+   * A file opened for editing. The content is <code>null</code> for binary files and files exceeding the maximum
+   * size; the encoding is <code>null</code> for binary files.
+   */
+  record EditableFile(FileObject file,
+                      String revision,
+                      long size,
+                      String type,
+                      String language,
+                      String encoding,
+                      String lockOwner,
+                      FileCapabilities capabilities,
+                      String content) {
+  }
+}
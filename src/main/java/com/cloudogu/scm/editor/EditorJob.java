@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import sonia.scm.repository.NamespaceAndName;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A change of the editor that is executed in the background by the {@link EditorJobManager}. The job reports its
+ * progress to all subscribers.
+ */
+public class EditorJob {
+
+  public enum State {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  private final String id;
+  private final String type;
+  private final NamespaceAndName namespaceAndName;
+  private final String branch;
+  private final String principal;
+  private final List<Consumer<EditorJob>> subscribers = new CopyOnWriteArrayList<>();
+
+  private State state = State.QUEUED;
+  private long filesTotal = -1;
+  private long filesProcessed;
+  private String changesetId;
+  private String errorCode;
+  private String errorMessage;
+  private Instant finished;
+
+  EditorJob(String id, String type, NamespaceAndName namespaceAndName, String branch, String principal) {
+    this.id = id;
+    this.type = type;
+    this.namespaceAndName = namespaceAndName;
+    this.branch = branch;
+    this.principal = principal;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public NamespaceAndName getNamespaceAndName() {
+    return namespaceAndName;
+  }
+
+  public String getBranch() {
+    return branch;
+  }
+
+  String getPrincipal() {
+    return principal;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * The number of files the job will process, or <code>-1</code> if this is not known (yet).
+   */
+  public synchronized long getFilesTotal() {
+    return filesTotal;
+  }
+
+  public synchronized long getFilesProcessed() {
+    return filesProcessed;
+  }
+
+  public synchronized String getChangesetId() {
+    return changesetId;
+  }
+
+  public synchronized String getErrorCode() {
+    return errorCode;
+  }
+
+  public synchronized String getErrorMessage() {
+    return errorMessage;
+  }
+
+  synchronized Instant getFinished() {
+    return finished;
+  }
+
+  public synchronized boolean isFinished() {
+    return state == State.DONE || state == State.FAILED;
+  }
+
+  void setFilesTotal(long filesTotal) {
+    synchronized (this) {
+      this.filesTotal = filesTotal;
+    }
+    notifySubscribers();
+  }
+
+  void addFilesProcessed(long files) {
+    synchronized (this) {
+      this.filesProcessed += files;
+    }
+    notifySubscribers();
+  }
+
+  void started() {
+    synchronized (this) {
+      this.state = State.RUNNING;
+    }
+    notifySubscribers();
+  }
+
+  void done(String changesetId) {
+    synchronized (this) {
+      this.state = State.DONE;
+      this.changesetId = changesetId;
+      this.finished = Instant.now();
+    }
+    notifySubscribers();
+    subscribers.clear();
+  }
+
+  void failed(String errorCode, String errorMessage) {
+    synchronized (this) {
+      this.state = State.FAILED;
+      this.errorCode = errorCode;
+      this.errorMessage = errorMessage;
+      this.finished = Instant.now();
+    }
+    notifySubscribers();
+    subscribers.clear();
+  }
+
+  /**
+   * Calls the subscriber with the current state of the job and after every change, until the job is finished.
+   */
+  public void subscribe(Consumer<EditorJob> subscriber) {
+    synchronized (this) {
+      if (!isFinished()) {
+        subscribers.add(subscriber);
+      }
+    }
+    subscriber.accept(this);
+  }
+
+  public void unsubscribe(Consumer<EditorJob> subscriber) {
+    subscribers.remove(subscriber);
+  }
+
+  private void notifySubscribers() {
+    subscribers.forEach(subscriber -> subscriber.accept(this));
+  }
+}
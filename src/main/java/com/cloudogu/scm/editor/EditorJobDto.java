@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import de.otto.edison.hal.HalRepresentation;
+import de.otto.edison.hal.Links;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@SuppressWarnings("java:S2160") // we do not need equals for dto
+public class EditorJobDto extends HalRepresentation {
+  private String id;
+  private String type;
+  private String branch;
+  private EditorJob.State state;
+  private long filesTotal;
+  private long filesProcessed;
+  private String changesetId;
+  private String errorCode;
+  private String errorMessage;
+
+  EditorJobDto(Links links, EditorJob job) {
+    super(links);
+    this.id = job.getId();
+    this.type = job.getType();
+    this.branch = job.getBranch();
+    this.state = job.getState();
+    this.filesTotal = job.getFilesTotal();
+    this.filesProcessed = job.getFilesProcessed();
+    this.changesetId = job.getChangesetId();
+    this.errorCode = job.getErrorCode();
+    this.errorMessage = job.getErrorMessage();
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.Strings;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.ExceptionWithContext;
+import sonia.scm.repository.NamespaceAndName;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs long running changes of the editor in the background, so that they do not block a request. Jobs for the same
+ * branch of a repository are executed one after the other in the order they have been submitted, while jobs for
+ * different branches or repositories may run in parallel. The jobs are kept in memory and are dropped some time after
+ * they have finished. The manager can be configured with system properties:
+ * <ul>
+ *   <li><code>scm.editor.jobs.threads</code>: maximum number of jobs running at the same time (default: 4)</li>
+ *   <li><code>scm.editor.jobs.retention</code>: time in minutes a finished job is kept (default: 60)</li>
+ * </ul>
+ */
+@Singleton
+public class EditorJobManager {
+
+  static final String THREADS_PROPERTY = "scm.editor.jobs.threads";
+  static final String RETENTION_PROPERTY = "scm.editor.jobs.retention";
+
+  private static final Logger LOG = LoggerFactory.getLogger(EditorJobManager.class);
+
+  private static final int DEFAULT_THREADS = 4;
+  private static final long DEFAULT_RETENTION = 60;
+
+  private final ExecutorService executor;
+  private final Duration retention;
+  private final Map<String, EditorJob> jobs = new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<Void>> queues = new ConcurrentHashMap<>();
+
+  @Inject
+  EditorJobManager() {
+    this(
+      createExecutor(Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS)),
+      Duration.ofMinutes(Long.getLong(RETENTION_PROPERTY, DEFAULT_RETENTION))
+    );
+  }
+
+  EditorJobManager(ExecutorService executor, Duration retention) {
+    this.executor = executor;
+    this.retention = retention;
+  }
+
+  /**
+   * Queues the given work and returns the new job immediately. The work is executed with the subject of the caller.
+   * Jobs are queued per branch, so the branch has to be resolved by the caller (see
+   * {@link EditorService#resolveBranch(String, String, String)}); otherwise jobs for the default branch with and
+   * without an explicit branch name would run concurrently.
+   */
+  EditorJob submit(String type, NamespaceAndName namespaceAndName, String branch, Work work) {
+    removeExpiredJobs();
+    Subject subject = ThreadContext.getSubject();
+    EditorJob job = new EditorJob(UUID.randomUUID().toString(), type, namespaceAndName, branch, principalOf(subject));
+    jobs.put(job.getId(), job);
+    Runnable runnable = () -> run(job, work);
+    enqueue(namespaceAndName + "@" + Strings.nullToEmpty(branch), subject == null ? runnable : subject.associateWith(runnable));
+    return job;
+  }
+
+  /**
+   * Appends the runnable to the queue with the given key. It is started on the executor not before all runnables
+   * submitted earlier for the same key have finished, so that waiting jobs do not block a thread.
+   */
+  private void enqueue(String key, Runnable runnable) {
+    CompletableFuture<Void> finished = new CompletableFuture<>();
+    CompletableFuture<Void> previous = queues.put(key, finished);
+    (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+      .whenCompleteAsync((ignored, error) -> {
+        try {
+          runnable.run();
+        } finally {
+          queues.remove(key, finished);
+          finished.complete(null);
+        }
+      }, executor);
+  }
+
+  /**
+   * Returns the job with the given id, if it has been submitted for the given repository by the current user.
+   */
+  Optional<EditorJob> get(NamespaceAndName namespaceAndName, String id) {
+    EditorJob job = jobs.get(id);
+    if (job == null || !job.getNamespaceAndName().equals(namespaceAndName)
+      || !Objects.equals(job.getPrincipal(), principalOf(ThreadContext.getSubject()))) {
+      return Optional.empty();
+    }
+    return Optional.of(job);
+  }
+
+  private void run(EditorJob job, Work work) {
+    job.started();
+    try {
+      job.done(work.run(job));
+    } catch (ExceptionWithContext e) {
+      LOG.info("editor job {} failed: {}", job.getId(), e.getMessage());
+      job.failed(e.getCode(), e.getMessage());
+    } catch (Exception e) {
+      LOG.warn("editor job {} failed", job.getId(), e);
+      job.failed(null, e.getMessage());
+    }
+  }
+
+  private void removeExpiredJobs() {
+    Instant expired = Instant.now().minus(retention);
+    jobs.values().removeIf(job -> job.isFinished() && job.getFinished().isBefore(expired));
+  }
+
+  private static String principalOf(Subject subject) {
+    if (subject == null || subject.getPrincipal() == null) {
+      return null;
+    }
+    return subject.getPrincipal().toString();
+  }
+
+  private static ExecutorService createExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new JobThreadFactory()
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @FunctionalInterface
+  interface Work {
+    /**
+     * Executes the change and returns the id of the new changeset.
+     */
+    String run(EditorJob job) throws Exception;
+  }
+
+  private static class JobThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "EditorJob-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
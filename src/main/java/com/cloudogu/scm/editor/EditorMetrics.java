@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.repository.Repository;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the metrics of the editor plugin to the meter registry of SCM-Manager:
+ * <ul>
+ *   <li><code>scm.editor.operation</code>: timer for write operations until the new changeset has been created,
+ *     tagged by <code>operation</code>, repository <code>type</code> and <code>outcome</code></li>
+ *   <li><code>scm.editor.upload.size</code>: distribution of the size of created and modified files in bytes, tagged
+ *     by <code>operation</code> and repository <code>type</code></li>
+ *   <li><code>scm.editor.guard</code>: timer for each call of a {@link ChangeGuard}, tagged by the class of the
+ *     <code>guard</code></li>
+ *   <li><code>scm.editor.guard.obstacles</code>: counter of the obstacles found by a <code>guard</code></li>
+ *   <li><code>scm.editor.enrich</code>: timer for each call of an <code>enricher</code></li>
+ * </ul>
+ */
+@Singleton
+class EditorMetrics {
+
+  static final String OPERATION_TIMER = "scm.editor.operation";
+  static final String UPLOAD_SIZE_SUMMARY = "scm.editor.upload.size";
+  static final String GUARD_TIMER = "scm.editor.guard";
+  static final String GUARD_OBSTACLES_COUNTER = "scm.editor.guard.obstacles";
+  static final String ENRICH_TIMER = "scm.editor.enrich";
+
+  static final String OUTCOME_SUCCESS = "success";
+  static final String OUTCOME_CHANGE_NOT_ALLOWED = "change_not_allowed";
+  static final String OUTCOME_UPLOAD_FAILED = "upload_failed";
+  static final String OUTCOME_ERROR = "error";
+
+  private final MeterRegistry registry;
+
+  @Inject
+  EditorMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  <T, E extends Exception> T timeOperation(String operation, Repository repository, Operation<T, E> callable) throws E {
+    Timer.Sample sample = Timer.start(registry);
+    String outcome = OUTCOME_ERROR;
+    try {
+      T result = callable.call();
+      outcome = OUTCOME_SUCCESS;
+      return result;
+    } catch (ChangeNotAllowedException e) {
+      outcome = OUTCOME_CHANGE_NOT_ALLOWED;
+      throw e;
+    } catch (UploadFailedException e) {
+      outcome = OUTCOME_UPLOAD_FAILED;
+      throw e;
+    } finally {
+      sample.stop(
+        Timer.builder(OPERATION_TIMER)
+          .description("Time of editor operations until the new changeset has been created")
+          .tag("operation", operation)
+          .tag("type", repository.getType())
+          .tag("outcome", outcome)
+          .register(registry)
+      );
+    }
+  }
+
+  void recordUpload(String operation, Repository repository, long bytes) {
+    DistributionSummary.builder(UPLOAD_SIZE_SUMMARY)
+      .description("Size of files created or modified with the editor")
+      .baseUnit("bytes")
+      .tag("operation", operation)
+      .tag("type", repository.getType())
+      .register(registry)
+      .record(bytes);
+  }
+
+  <T> T timeGuard(ChangeGuard guard, Supplier<T> check) {
+    return Timer.builder(GUARD_TIMER)
+      .description("Time to check the changes with a change guard")
+      .tag("guard", guard.getClass().getName())
+      .register(registry)
+      .record(check);
+  }
+
+  void countObstacles(ChangeGuard guard, Collection<ChangeObstacle> obstacles) {
+    if (obstacles != null && !obstacles.isEmpty()) {
+      Counter.builder(GUARD_OBSTACLES_COUNTER)
+        .description("Obstacles found by a change guard")
+        .tag("guard", guard.getClass().getName())
+        .register(registry)
+        .increment(obstacles.size());
+    }
+  }
+
+  void timeEnrichment(String enricher, Runnable enrichment) {
+    Timer.builder(ENRICH_TIMER)
+      .description("Time to enrich a single object with editor links")
+      .tag("enricher", enricher)
+      .register(registry)
+      .record(enrichment);
+  }
+
+  @FunctionalInterface
+  interface Operation<T, E extends Exception> {
+    T call() throws E;
+  }
+}
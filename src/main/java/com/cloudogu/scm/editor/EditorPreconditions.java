@@ -17,6 +17,8 @@
 package com.cloudogu.scm.editor;
 
 import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.apache.shiro.SecurityUtils;
 import org.slf4j.Logger;
@@ -33,22 +35,31 @@ import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.io.IOException;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
 
 public class EditorPreconditions {
 
   private static final Logger LOG = LoggerFactory.getLogger(EditorPreconditions.class);
 
   private final RepositoryServiceFactory repositoryServiceFactory;
+  private final Provider<EditabilityContext> editabilityContext;
 
   @Inject
-  public EditorPreconditions(RepositoryServiceFactory repositoryServiceFactory) {
+  public EditorPreconditions(RepositoryServiceFactory repositoryServiceFactory, Provider<EditabilityContext> editabilityContext) {
     this.repositoryServiceFactory = repositoryServiceFactory;
+    this.editabilityContext = editabilityContext;
   }
 
   public boolean isEditable(NamespaceAndName namespaceAndName, BrowserResult browserResult) {
+    return editabilityContext.get().isEditable(browserResult, () -> checkIsEditable(namespaceAndName, browserResult));
+  }
+
+  private boolean checkIsEditable(NamespaceAndName namespaceAndName, BrowserResult browserResult) {
     try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
-      return isEditableCheck(repositoryService, browserResult);
+      return isEditableCheck(namespaceAndName, repositoryService, browserResult);
     } catch (IOException ex) {
       throw new InternalRepositoryException(
         ContextEntry.ContextBuilder.entity(namespaceAndName),
@@ -58,23 +69,62 @@ public class EditorPreconditions {
     }
   }
 
-  private boolean isEditableCheck(RepositoryService repositoryService, BrowserResult browserResult) throws IOException {
+  /**
+   * Checks whether the given file is not locked or is locked by the current user. The locks of the repository are
+   * read only once per request and looked up by path afterwards.
+   */
+  public boolean isUnlockedOrLockedByMe(NamespaceAndName namespaceAndName, String path) {
+    FileLock fileLock = editabilityContext.get().getFileLocks(namespaceAndName, () -> loadFileLocks(namespaceAndName)).get(path);
+    return fileLock == null || isLockedByMe(fileLock);
+  }
+
+  /**
+   * Returns the id of the user who locked the given file, or <code>null</code> if the file is not locked.
+   */
+  @CheckForNull
+  public String getLockOwner(NamespaceAndName namespaceAndName, String path) {
+    FileLock fileLock = editabilityContext.get().getFileLocks(namespaceAndName, () -> loadFileLocks(namespaceAndName)).get(path);
+    return fileLock == null ? null : fileLock.getUserId();
+  }
+
+  private boolean isEditableCheck(NamespaceAndName namespaceAndName, RepositoryService repositoryService, BrowserResult browserResult) throws IOException {
     LOG.trace("check if repository {} is editable for browser result {}", repositoryService.getRepository(), browserResult);
     boolean result = isPermitted(repositoryService.getRepository())
       && isModifySupported(repositoryService)
-      && isUnlockedOrLockedByMe(repositoryService, browserResult)
+      && isUnlockedOrLockedByMe(namespaceAndName, repositoryService, browserResult)
       && browserResult.isModifiable();
     LOG.debug("repository is editable: {}", result);
     return result;
   }
 
-  private boolean isUnlockedOrLockedByMe(RepositoryService repositoryService, BrowserResult browserResult) {
-    if (repositoryService.isSupported(Command.FILE_LOCK)) {
-      Optional<FileLock> fileLock = repositoryService.getLockCommand().status(browserResult.getFile().getPath());
-      return fileLock.isEmpty() || fileLock.get().getUserId().equals(SecurityUtils.getSubject().getPrincipal().toString());
+  private boolean isUnlockedOrLockedByMe(NamespaceAndName namespaceAndName, RepositoryService repositoryService, BrowserResult browserResult) {
+    FileLock fileLock = editabilityContext.get().getFileLocks(namespaceAndName, () -> loadFileLocks(repositoryService)).get(browserResult.getFile().getPath());
+    if (fileLock == null || isLockedByMe(fileLock)) {
+      return true;
     }
     LOG.trace("repository is not editable due to file lock");
-    return true;
+    return false;
+  }
+
+  private boolean isLockedByMe(FileLock fileLock) {
+    return fileLock.getUserId().equals(SecurityUtils.getSubject().getPrincipal().toString());
+  }
+
+  private Map<String, FileLock> loadFileLocks(NamespaceAndName namespaceAndName) {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      return loadFileLocks(repositoryService);
+    }
+  }
+
+  private Map<String, FileLock> loadFileLocks(RepositoryService repositoryService) {
+    if (!repositoryService.isSupported(Command.FILE_LOCK)) {
+      return emptyMap();
+    }
+    Map<String, FileLock> fileLocks = new HashMap<>();
+    for (FileLock fileLock : repositoryService.getLockCommand().getAll()) {
+      fileLocks.put(fileLock.getPath(), fileLock);
+    }
+    return fileLocks;
   }
 
   private boolean isEmptyRepository(BrowserResult browserResult) {
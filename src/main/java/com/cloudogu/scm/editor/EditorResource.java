@@ -20,6 +20,8 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.ByteSource;
+import com.google.common.io.FileBackedOutputStream;
+import de.otto.edison.hal.Links;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -34,30 +36,62 @@ import sonia.scm.BadRequestException;
 import sonia.scm.api.v2.resources.ChangesetDto;
 import sonia.scm.api.v2.resources.ChangesetToChangesetDtoMapper;
 import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.api.v2.resources.LinkBuilder;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
 import sonia.scm.repository.Changeset;
+import sonia.scm.repository.FileObject;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.web.VndMediaType;
 
 import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
+import jakarta.inject.Provider;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
+import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+import static com.cloudogu.scm.editor.ContentEncodings.CONTENT_ENCODING_HEADER;
+import static de.otto.edison.hal.Link.link;
+import static de.otto.edison.hal.Links.linkingTo;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
 import static jakarta.ws.rs.core.Response.Status.CREATED;
 
 @OpenAPIDefinition(tags = {
@@ -68,24 +102,51 @@ public class EditorResource {
 
   static final String EDITOR_REQUESTS_PATH_V2 = "v2/edit";
 
+  static final String COMMIT_MESSAGE_HEADER = "X-Commit-Message";
+  static final String BRANCH_HEADER = "X-Branch";
+  static final String EXPECTED_REVISION_HEADER = "X-Expected-Revision";
+  static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-Checksum";
+  private static final String CONTENT_TRANSFER_ENCODING_HEADER = "Content-Transfer-Encoding";
+  private static final String PREFER_HEADER = "Prefer";
+  private static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+  private static final String RETURN_MINIMAL = "return=minimal";
+  private static final String RESPOND_ASYNC = "respond-async";
+  private static final int PATCH_MEMORY_THRESHOLD = 1024 * 1024;
+  private static final String ARCHIVE_MEDIA_TYPE = "application/zip";
+
   private final EditorService editorService;
   private final ChangesetToChangesetDtoMapper changesetMapper;
   private final RepositoryManager repositoryManager;
+  private final FileCapabilitiesCheck capabilitiesCheck;
+  private final Provider<ScmPathInfoStore> scmPathInfoStore;
+  private final EditorJobManager jobManager;
+  private final UploadSessionManager uploadSessionManager;
+  private final EditableFileLoader editableFileLoader;
+  private final ArchiveExpander archiveExpander;
+  private final DirectoryArchiver directoryArchiver;
 
   @Inject
-  public EditorResource(EditorService editorService, ChangesetToChangesetDtoMapper changesetMapper, RepositoryManager repositoryManager) {
+  public EditorResource(EditorService editorService, ChangesetToChangesetDtoMapper changesetMapper, RepositoryManager repositoryManager, FileCapabilitiesCheck capabilitiesCheck, Provider<ScmPathInfoStore> scmPathInfoStore, EditorJobManager jobManager, UploadSessionManager uploadSessionManager, EditableFileLoader editableFileLoader, ArchiveExpander archiveExpander, DirectoryArchiver directoryArchiver) {
     this.editorService = editorService;
     this.changesetMapper = changesetMapper;
     this.repositoryManager = repositoryManager;
+    this.capabilitiesCheck = capabilitiesCheck;
+    this.scmPathInfoStore = scmPathInfoStore;
+    this.jobManager = jobManager;
+    this.uploadSessionManager = uploadSessionManager;
+    this.editableFileLoader = editableFileLoader;
+    this.archiveExpander = archiveExpander;
+    this.directoryArchiver = directoryArchiver;
   }
 
   /**
-   * This equals {@link EditorResource#createWithJson(String, String, String, SingleFileCreateCommitDto)} with the
+   * This equals {@link EditorResource#createWithJson(String, String, String, String, SingleFileCreateCommitDto)} with the
    * difference, that files will be added to the root directory of the repository.
-   * @see #createWithJson(String, String, String, SingleFileCreateCommitDto)
+   * @see #createWithJson(String, String, String, String, SingleFileCreateCommitDto)
    */
   @POST
   @Path("{namespace}/{name}/create")
+  @DecodeContentEncoding
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -115,23 +176,20 @@ public class EditorResource {
   public Response createWithJsonInRoot(
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
+    @HeaderParam(PREFER_HEADER) String prefer,
     @Valid SingleFileCreateCommitDto fileCommit
   ) throws IOException {
-    try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, "", fileCommit)) {
-      fileUploader.create(fileCommit.getFileName(), new ByteArrayInputStream(fileCommit.getFileContent().getBytes(UTF_8)));
-      Changeset newCommit = fileUploader.done();
-      ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-      return Response.status(CREATED).entity(newCommitDto).build();
-    }
+    return createWithJson(namespace, name, "", prefer, fileCommit);
   }
 
   /**
-   * This equals {@link EditorResource#create(String, String, String, MultipartFormDataInput)} with the
+   * This equals {@link EditorResource#create(String, String, String, String, MultipartFormDataInput)} with the
    * difference, that files will be added to the root directory of the repository.
-   * @see #create(String, String, String, MultipartFormDataInput)
+   * @see #create(String, String, String, String, MultipartFormDataInput)
    */
   @POST
   @Path("{namespace}/{name}/create")
+  @DecodeContentEncoding
   @Consumes(MediaType.MULTIPART_FORM_DATA)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -160,9 +218,10 @@ public class EditorResource {
   public Response createInRoot(
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
+    @HeaderParam(PREFER_HEADER) String prefer,
     MultipartFormDataInput input
   ) throws IOException {
-    return create(namespace, name, "", input);
+    return create(namespace, name, "", prefer, input);
   }
 
   /**
@@ -181,6 +240,8 @@ public class EditorResource {
    * @param namespace  The namespace of the repository.
    * @param name       The name of the repository.
    * @param path       The destination directory for the new file.
+   * @param prefer     With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                   changeset are returned.
    * @param fileCommit The commit object with the following attributes:
    *                   <ul>
    *                     <li>The commit message for the new commit (this is required).</li>
@@ -197,6 +258,7 @@ public class EditorResource {
    */
   @POST
   @Path("{namespace}/{name}/create/{path: .*}")
+  @DecodeContentEncoding
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -227,13 +289,12 @@ public class EditorResource {
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
     @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
     @Valid SingleFileCreateCommitDto fileCommit
   ) throws IOException {
     try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, path, fileCommit)) {
       fileUploader.create(fileCommit.getFileName(), new ByteArrayInputStream(fileCommit.getFileContent().getBytes(UTF_8)));
-      Changeset newCommit = fileUploader.done();
-      ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-      return Response.status(CREATED).entity(newCommitDto).build();
+      return commitResponse(namespace, name, fileCommit.getBranch(), prefer, fileUploader);
     }
   }
 
@@ -243,6 +304,9 @@ public class EditorResource {
    * <code>Content-Disposition: form-data; name="file1"; filename="pom.xml"</code>). Additionally a form data with
    * name 'message' with the commit message is required
    * (eg. <code>Content-Disposition: form-data; name="commit"....{"commitMessage": "My message"}..</code>).
+   * The whole request or single file parts may be compressed, which has to be declared with a
+   * <code>Content-Encoding</code> header (<code>gzip</code> or <code>deflate</code>) for the request or the part, or
+   * for parts in the commit object as 'contentEncodings' (eg. <code>{"file1": "gzip"}</code>).
    * <br>
    * To upload two files 'resource.xml' and 'data.json' to a repository 'scmadmin/repo' on branch 'master' in folder
    * 'src/resources' with curl, you will have to call something like
@@ -257,6 +321,9 @@ public class EditorResource {
    * @param namespace The namespace of the repository.
    * @param name      The name of the repository.
    * @param path      The destination directory for the new file.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned. With <code>respond-async</code>, the files are stored
+   *                  temporarily and committed in the background.
    * @param input     The form data. These will have to have parts with names starting with 'name' for the files to
    *                  upload and part with name 'commit' for the commit object.
    *                  This object encapsulates necessary specifications for the new commit:
@@ -268,11 +335,19 @@ public class EditorResource {
    *                      will only be applied if the revision of the branch (either the specified or the default branch)
    *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
    *                      returned.</li>
+   *                    <li>Whether files with unchanged content should be skipped (optional, as 'skipUnchanged'). If
+   *                      this is set, files with the same content as on the branch will not be committed. The
+   *                      SHA-256 checksums of the files can be given as 'checksums' by file name (optional), so that
+   *                      unchanged files do not have to be read at all.</li>
+   *                    <li>Whether the uploaded files are zip or tar archives that should be expanded (optional, as
+   *                      'expandArchives'). If this is set, the files of each archive are created in the directory of
+   *                      the archive instead of the archive itself.</li>
    *                  </ul>
    * @throws IOException Whenever there were exceptions handling the uploaded files.
    */
   @POST
   @Path("{namespace}/{name}/create/{path: .*}")
+  @DecodeContentEncoding
   @Consumes(MediaType.MULTIPART_FORM_DATA)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -288,6 +363,14 @@ public class EditorResource {
       schema = @Schema(implementation = ChangesetDto.class)
     )
   )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
   @ApiResponse(
@@ -302,20 +385,159 @@ public class EditorResource {
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
     @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
     MultipartFormDataInput input
   ) throws IOException {
-    Changeset newCommit = processFiles(namespace, name, path, input, EditorService.FileUploader::create);
-    ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-    return Response.status(CREATED).entity(newCommitDto).build();
+    return processFiles(namespace, name, path, prefer, input, EditorService.FileUploader::create);
+  }
+
+  /**
+   * Streaming variant of {@link #create(String, String, String, String, MultipartFormDataInput)}. The parts are read one after
+   * the other directly from the request and each file is passed to the editor while it is received, so that neither
+   * the memory nor temporary files are used to buffer the whole request. To make this possible, the form data with
+   * the name 'commit' has to be the <em>first</em> part of the request.
+   * <br>
+   * To upload two files 'resource.xml' and 'data.json' to a repository 'scmadmin/repo' on branch 'master' in folder
+   * 'src/resources' with curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/stream/create/src/resources \
+   *   -F 'commit={"commitMessage": "Commit message", "branch": "master", "names": {"file1": "resource.xml", "file2": "data.json"} }' \
+   *   -F 'file1=@resource.xml' \
+   *   -F 'file2=@data.json'
+   * </pre>
+   * To create files in the root directory, use an empty path (<code>.../stream/create/</code>).
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The destination directory for the new files.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned. With <code>respond-async</code>, the files are stored
+   *                  temporarily and committed in the background.
+   * @param headers   The request headers with the boundary of the multipart body.
+   * @param body      The multipart body with the commit object as first part.
+   * @throws IOException Whenever there were exceptions handling the uploaded files.
+   */
+  @POST
+  @Path("{namespace}/{name}/stream/create/{path: .*}")
+  @DecodeContentEncoding
+  @Consumes(MediaType.MULTIPART_FORM_DATA)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Create files streaming",
+    description = "Creates new files with a form-based request as new commit, that is processed while it is received. The commit part has to be the first part. Returns the created changeset.",
+    hidden = true
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "the commit part is missing or is not the first part")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response createStreaming(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Context HttpHeaders headers,
+    InputStream body
+  ) throws IOException {
+    return processFilesStreaming(namespace, name, path, prefer, headers, body, EditorService.FileUploader::create);
+  }
+
+  /**
+   * Streaming variant of {@link #modify(String, String, String, String, MultipartFormDataInput)}. Like
+   * {@link #createStreaming(String, String, String, String, HttpHeaders, InputStream)}, this requires the form data with the
+   * name 'commit' to be the <em>first</em> part of the request.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The directory of the files to modify.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned. With <code>respond-async</code>, the files are stored
+   *                  temporarily and committed in the background.
+   * @param headers   The request headers with the boundary of the multipart body.
+   * @param body      The multipart body with the commit object as first part.
+   * @throws IOException Whenever there were exceptions handling the uploaded files.
+   */
+  @POST
+  @Path("{namespace}/{name}/stream/modify/{path: .*}")
+  @DecodeContentEncoding
+  @Consumes(MediaType.MULTIPART_FORM_DATA)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Modify files streaming",
+    description = "Modifies existing files with a form-based request as new commit, that is processed while it is received. The commit part has to be the first part. Returns the created changeset.",
+    hidden = true
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "the commit part is missing or is not the first part")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, this file is not available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response modifyStreaming(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Context HttpHeaders headers,
+    InputStream body
+  ) throws IOException {
+    return processFilesStreaming(namespace, name, path, prefer, headers, body, EditorService.FileUploader::modify);
   }
 
   /**
-   * This equals {@link EditorResource#modify(String, String, String, MultipartFormDataInput)} with the
+   * This equals {@link EditorResource#modify(String, String, String, String, MultipartFormDataInput)} with the
    * difference, that files will be modified in the root directory of the repository.
-   * @see #create(String, String, String, MultipartFormDataInput)
+   * @see #create(String, String, String, String, MultipartFormDataInput)
    */
   @POST
   @Path("{namespace}/{name}/modify")
+  @DecodeContentEncoding
   @Consumes(MediaType.MULTIPART_FORM_DATA)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -345,9 +567,10 @@ public class EditorResource {
   public Response modifyInRoot(
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
+    @HeaderParam(PREFER_HEADER) String prefer,
     MultipartFormDataInput input
   ) throws IOException {
-    return modify(namespace, name, "", input);
+    return modify(namespace, name, "", prefer, input);
   }
 
   /**
@@ -366,6 +589,8 @@ public class EditorResource {
    * @param namespace  The namespace of the repository.
    * @param name       The name of the repository.
    * @param path       The destination directory and file name for the new file.
+   * @param prefer     With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                   changeset are returned.
    * @param fileCommit The commit object with the following attributes:
    *                   <ul>
    *                     <li>The commit message for the new commit (this is required).</li>
@@ -381,6 +606,7 @@ public class EditorResource {
    */
   @POST
   @Path("{namespace}/{name}/modify/{path: .*}")
+  @DecodeContentEncoding
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -412,17 +638,265 @@ public class EditorResource {
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
     @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
     @Valid SingleFileModifyCommitDto fileCommit
   ) throws IOException {
     String[] pathAndFileName = extractFileName(path);
     try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, pathAndFileName[0], fileCommit)) {
       fileUploader.modify(pathAndFileName[1], new ByteArrayInputStream(fileCommit.getFileContent().getBytes(UTF_8)));
-      Changeset newCommit = fileUploader.done();
-      ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-      return Response.status(CREATED).entity(newCommitDto).build();
+      return commitResponse(namespace, name, fileCommit.getBranch(), prefer, fileUploader);
     }
   }
 
+  /**
+   * Creates a new file with the raw content of the request body. In contrast to
+   * {@link #createWithJson(String, String, String, String, SingleFileCreateCommitDto)}, the content is passed to the
+   * repository as it is received and is never held in memory as a whole, so that binary and large files can be
+   * uploaded without a multipart form, too. The file name has to be set in the <code>Content-Disposition</code> header,
+   * the commit is specified by the headers <code>X-Commit-Message</code> (required), <code>X-Branch</code> and
+   * <code>X-Expected-Revision</code>. Header values may be percent encoded (UTF-8) to pass non ASCII characters or line
+   * breaks; a <code>+</code> is not decoded to a space. If the content is base64 encoded, this has to be declared with
+   * the header <code>Content-Transfer-Encoding: base64</code>; the content will then be decoded while it is read. A body
+   * compressed with <code>Content-Encoding: gzip</code> or <code>deflate</code> is decompressed the same way.
+   * <br>
+   * To upload an image 'logo.png' to a repository 'scmadmin/repo' on branch 'master' in folder 'src/resources' with
+   * curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/create/src/resources \
+   *   -H 'Content-Type: application/octet-stream' \
+   *   -H 'Content-Disposition: attachment; filename="logo.png"' \
+   *   -H 'X-Commit-Message: Add%20logo' \
+   *   -H 'X-Branch: master' \
+   *   --data-binary @logo.png
+   * </pre>
+   *
+   * @param namespace        The namespace of the repository.
+   * @param name             The name of the repository.
+   * @param path             The destination directory for the new file.
+   * @param commitMessage    The commit message for the new commit (this is required).
+   * @param branch           The branch the change should be made upon (optional).
+   * @param expectedRevision The expected revision the change should be made upon (optional).
+   * @param prefer           With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                         changeset are returned. With <code>respond-async</code>, the files are stored
+   *                         temporarily and committed in the background.
+   * @param headers          The request headers with the file name and the transfer encoding.
+   * @param body             The content of the new file.
+   * @throws IOException Whenever there were exceptions handling the uploaded file.
+   */
+  @POST
+  @Path("{namespace}/{name}/create/{path: .*}")
+  @DecodeContentEncoding
+  @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Create file from raw content",
+    description = "Creates a new file with the raw (or base64 encoded) request body as new commit. Commit metadata is read from headers. Returns the created changeset.",
+    tags = "Editor Plugin",
+    operationId = "editor_create_file_raw"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "the commit message or the file name is missing")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response createWithRawContent(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @HeaderParam(COMMIT_MESSAGE_HEADER) String commitMessage,
+    @HeaderParam(BRANCH_HEADER) String branch,
+    @HeaderParam(EXPECTED_REVISION_HEADER) String expectedRevision,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Context HttpHeaders headers,
+    InputStream body
+  ) throws IOException {
+    String fileName = parseFileName(headers.getRequestHeaders());
+    CommitDto commit = commitFromHeaders(commitMessage, branch, expectedRevision);
+    return processRawContent(namespace, name, path, fileName, commit, prefer, headers, body, EditorService.FileUploader::create);
+  }
+
+  /**
+   * Expands a zip or tar archive (the latter optionally gzip compressed) from the request body and creates all its
+   * files with their relative paths in the given directory with a single commit. The archive is expanded entry by entry
+   * while it is read. The commit is specified by headers like for
+   * {@link #createWithRawContent(String, String, String, String, String, String, String, HttpHeaders, InputStream)}.
+   * The change guards are checked for all files of the archive together before the commit. The number of files and
+   * their total size are limited (see {@link ArchiveExpander}).
+   * <br>
+   * To upload the files of an archive 'site.tar.gz' to a repository 'scmadmin/repo' on branch 'master' in folder
+   * 'docs' with curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/expand/docs \
+   *   -H 'Content-Type: application/octet-stream' \
+   *   -H 'X-Commit-Message: Update%20site' \
+   *   -H 'X-Branch: master' \
+   *   --data-binary @site.tar.gz
+   * </pre>
+   *
+   * @param namespace        The namespace of the repository.
+   * @param name             The name of the repository.
+   * @param path             The destination directory for the files of the archive.
+   * @param commitMessage    The commit message for the new commit (this is required).
+   * @param branch           The branch the change should be made upon (optional).
+   * @param expectedRevision The expected revision the change should be made upon (optional).
+   * @param prefer           With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                         changeset are returned. With <code>respond-async</code>, the archive is stored
+   *                         temporarily and expanded and committed in the background.
+   * @param headers          The request headers with the transfer encoding.
+   * @param body             The archive.
+   * @throws IOException Whenever there were exceptions handling the archive.
+   */
+  @POST
+  @Path("{namespace}/{name}/expand/{path: .*}")
+  @DecodeContentEncoding
+  @Consumes({MediaType.APPLICATION_OCTET_STREAM, "application/zip", "application/x-tar", "application/gzip"})
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Create files from archive",
+    description = "Expands a zip or tar archive from the request body and creates its files as new commit. Commit metadata is read from headers. Returns the created changeset.",
+    tags = "Editor Plugin",
+    operationId = "editor_expand_archive"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "the commit message is missing, the archive contains invalid paths or exceeds the limits")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response expandArchive(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @HeaderParam(COMMIT_MESSAGE_HEADER) String commitMessage,
+    @HeaderParam(BRANCH_HEADER) String branch,
+    @HeaderParam(EXPECTED_REVISION_HEADER) String expectedRevision,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Context HttpHeaders headers,
+    InputStream body
+  ) throws IOException {
+    CommitDto commit = commitFromHeaders(commitMessage, branch, expectedRevision);
+    return processRawContent(namespace, name, path, "", commit, prefer, headers, body, expandingArchives());
+  }
+
+  /**
+   * Modifies an existing file with the raw content of the request body. Like
+   * {@link #createWithRawContent(String, String, String, String, String, String, String, HttpHeaders, InputStream)}, the
+   * commit is specified by headers and the content may be base64 encoded. Like
+   * {@link #modifyWithJson(String, String, String, String, SingleFileModifyCommitDto)}, the path has to contain the file name.
+   *
+   * @param namespace        The namespace of the repository.
+   * @param name             The name of the repository.
+   * @param path             The directory and file name of the file to modify.
+   * @param commitMessage    The commit message for the new commit (this is required).
+   * @param branch           The branch the change should be made upon (optional).
+   * @param expectedRevision The expected revision the change should be made upon (optional).
+   * @param prefer           With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                         changeset are returned. With <code>respond-async</code>, the files are stored
+   *                         temporarily and committed in the background.
+   * @param headers          The request headers with the transfer encoding.
+   * @param body             The new content of the file.
+   * @throws IOException Whenever there were exceptions handling the uploaded file.
+   */
+  @POST
+  @Path("{namespace}/{name}/modify/{path: .*}")
+  @DecodeContentEncoding
+  @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Modify file with raw content",
+    description = "Modifies an existing file with the raw (or base64 encoded) request body as new commit. Commit metadata is read from headers. Returns the created changeset.",
+    tags = "Editor Plugin",
+    operationId = "editor_modify_file_raw"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "the commit message is missing")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, this file is not available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response modifyWithRawContent(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("path") String path,
+    @HeaderParam(COMMIT_MESSAGE_HEADER) String commitMessage,
+    @HeaderParam(BRANCH_HEADER) String branch,
+    @HeaderParam(EXPECTED_REVISION_HEADER) String expectedRevision,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Context HttpHeaders headers,
+    InputStream body
+  ) throws IOException {
+    String[] pathAndFileName = extractFileName(path);
+    CommitDto commit = commitFromHeaders(commitMessage, branch, expectedRevision);
+    return processRawContent(namespace, name, pathAndFileName[0], pathAndFileName[1], commit, prefer, headers, body, EditorService.FileUploader::modify);
+  }
+
   /**
    * Replaces existing files with content from a request with a multipart form. Each form data with names starting with
    * 'file' will be expected to have a content disposition header with a value for 'filename' (eg.
@@ -443,6 +917,9 @@ public class EditorResource {
    * @param namespace The namespace of the repository.
    * @param name      The name of the repository.
    * @param path      The destination directory for the new file.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned. With <code>respond-async</code>, the files are stored
+   *                  temporarily and committed in the background.
    * @param input     The form data. These will have to have parts with names starting with 'name' for the files to
    *                  upload and part with name 'commit' for the commit object.
    *                  This object encapsulates necessary specifications for the new commit:
@@ -454,11 +931,16 @@ public class EditorResource {
    *                      will only be applied if the revision of the branch (either the specified or the default branch)
    *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
    *                      returned.</li>
+   *                    <li>Whether files with unchanged content should be skipped (optional, as 'skipUnchanged'). If
+   *                      this is set, files with the same content as on the branch will not be committed. The
+   *                      SHA-256 checksums of the files can be given as 'checksums' by file name (optional), so that
+   *                      unchanged files do not have to be read at all.</li>
    *                  </ul>
    * @throws IOException Whenever there were exceptions handling the uploaded files.
    */
   @POST
   @Path("{namespace}/{name}/modify/{path: .*}")
+  @DecodeContentEncoding
   @Consumes(MediaType.MULTIPART_FORM_DATA)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
@@ -474,6 +956,14 @@ public class EditorResource {
       schema = @Schema(implementation = ChangesetDto.class)
     )
   )
+  @ApiResponse(
+    responseCode = "202",
+    description = "upload job accepted, if the files should be committed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
   @ApiResponse(responseCode = "404", description = "not found, this file is not available")
@@ -489,39 +979,56 @@ public class EditorResource {
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
     @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
     MultipartFormDataInput input
   ) throws IOException {
-    Changeset newCommit = processFiles(namespace, name, path, input, EditorService.FileUploader::modify);
-    ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-    return Response.status(CREATED).entity(newCommitDto).build();
+    return processFiles(namespace, name, path, prefer, input, EditorService.FileUploader::modify);
   }
 
   /**
-   * Deletes a file.
+   * Modifies an existing file by replacing ranges of lines, so that only the changed lines have to be sent instead of
+   * the complete new content. The replacements are applied to the file in the expected revision (or in the head of
+   * the branch, if no revision is expected) while it is read, and the result is committed like a modification with
+   * the complete content. See {@link LinePatcher} for the details of the line ranges.
+   * <br>
+   * To replace the second line of the file 'src/readme.md' in a repository 'scmadmin/repo' on branch 'master' with
+   * curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/patch/src/readme.md \
+   *   -H 'Content-Type: application/json' \
+   *   --data '{"commitMessage": "Commit message", "branch": "master", "expectedRevision": "2e5c2b4a",
+   *     "replacements": [{"from": 2, "to": 2, "content": "new second line\n"}]}'
+   * </pre>
    *
    * @param namespace The namespace of the repository.
    * @param name      The name of the repository.
-   * @param path      The path and name of the file that should be deleted.
+   * @param path      The path and name of the file that should be modified.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned.
    * @param commit    This object encapsulates necessary specifications for the new commit:
    *                  <ul>
    *                    <li>The commit message for the new commit (this is required).</li>
    *                    <li>The branch the change should be made upon (optional). If this is omitted, the default
    *                      branch will be used.</li>
-   *                    <li>The expected revision the change should be made upon (optional). If this is set, the changes
-   *                      will only be applied if the revision of the branch (either the specified or the default branch)
-   *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
-   *                      returned.</li>
+   *                    <li>The expected revision the change should be made upon (optional, but recommended). If this is
+   *                      set, the replacements are applied to the file in this revision, and the changes will only be
+   *                      committed if the revision of the branch equals the given revision. If this is not the case,
+   *                      a conflict (status code 409) will be returned.</li>
+   *                    <li>The replacements, sorted by their lines (at least one is required).</li>
    *                  </ul>
+   * @throws IOException Whenever there were exceptions reading or patching the file.
    */
   @POST
-  @Path("{namespace}/{name}/delete/{path: .*}")
+  @Path("{namespace}/{name}/patch/{path: .*}")
+  @DecodeContentEncoding
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
-    summary = "Delete file",
-    description = "Deletes an existing file as new commit. Returns the created changeset.",
+    summary = "Patch file",
+    description = "Modifies an existing file by replacing ranges of lines as new commit. Returns the created changeset.",
     tags = "Editor Plugin",
-    operationId = "editor_delete_file"
+    operationId = "editor_patch_file"
   )
   @ApiResponse(
     responseCode = "201",
@@ -531,8 +1038,11 @@ public class EditorResource {
       schema = @Schema(implementation = ChangesetDto.class)
     )
   )
+  @ApiResponse(responseCode = "400", description = "the replacements are invalid or exceed the lines of the file")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, this file is not available")
+  @ApiResponse(responseCode = "409", description = "conflict, the branch has been changed after the expected revision")
   @ApiResponse(
     responseCode = "500",
     description = "internal server error",
@@ -541,50 +1051,868 @@ public class EditorResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public Response delete(
+  public Response patch(
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
-    @Nullable @PathParam("path") String path,
-    @Valid CommitDto commit
+    @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Valid PatchCommitDto commit
   ) throws IOException {
-    Changeset newCommit =
-      editorService.delete(
-        namespace,
+    String[] pathAndFileName = extractFileName(path);
+    String revision = StringUtils.isEmpty(commit.getExpectedRevision()) ? commit.getBranch() : commit.getExpectedRevision();
+    FileBackedOutputStream patchedContent = new FileBackedOutputStream(PATCH_MEMORY_THRESHOLD, true);
+    try {
+      try (OutputStream target = new BufferedOutputStream(patchedContent)) {
+        editorService.patch(namespace, name, revision, path, commit.getReplacements(), target);
+      }
+      try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, pathAndFileName[0], commit);
+           InputStream content = patchedContent.asByteSource().openStream()) {
+        fileUploader.modify(pathAndFileName[1], content);
+        return commitResponse(namespace, name, commit.getBranch(), prefer, fileUploader);
+      }
+    } finally {
+      patchedContent.reset();
+    }
+  }
+
+  /**
+   * Deletes a file.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The path and name of the file that should be deleted.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned.
+   * @param commit    This object encapsulates necessary specifications for the new commit:
+   *                  <ul>
+   *                    <li>The commit message for the new commit (this is required).</li>
+   *                    <li>The branch the change should be made upon (optional). If this is omitted, the default
+   *                      branch will be used.</li>
+   *                    <li>The expected revision the change should be made upon (optional). If this is set, the changes
+   *                      will only be applied if the revision of the branch (either the specified or the default branch)
+   *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
+   *                      returned.</li>
+   *                  </ul>
+   */
+  @POST
+  @Path("{namespace}/{name}/delete/{path: .*}")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Delete file",
+    description = "Deletes an existing file as new commit. Returns the created changeset.",
+    tags = "Editor Plugin",
+    operationId = "editor_delete_file"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response delete(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Valid CommitDto commit
+  ) throws IOException {
+    if (isMinimalReturnPreferred(prefer)) {
+      String changesetId =
+        editorService.deleteAndReturnRevision(
+          namespace,
+          name,
+          commit.getBranch(),
+          path,
+          commit.getCommitMessage(),
+          commit.getExpectedRevision());
+      return minimalResponse(changesetId, commit.getBranch());
+    }
+    Changeset newCommit =
+      editorService.delete(
+        namespace,
         name,
         commit.getBranch(),
         path,
         commit.getCommitMessage(),
         commit.getExpectedRevision());
-    ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-    return Response.status(CREATED).entity(newCommitDto).build();
+    return changesetResponse(namespace, name, newCommit);
+  }
+
+  /**
+   * Moves a file or folder. Moving large folders may take some time. To move them in the background, the header
+   * <code>Prefer: respond-async</code> can be set. Then a job is returned immediately with status code 202, that can
+   * be polled (see {@link #getJob(String, String, String)}) or subscribed to (see
+   * {@link #getJobEvents(String, String, String, SseEventSink, Sse)}). The permission to commit is checked before the
+   * job is created. A move is executed as a single operation, so the job reports no progress of files; its state tells
+   * when it has finished.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The path and name of the file/folder that should be moved to a new location.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned. With <code>respond-async</code>, the move is executed in the
+   *                  background.
+   * @param request   This object provides the destination path and encapsulates necessary specifications for the new commit:
+   *                  <ul>
+   *                    <li>The commit message for the new commit (this is required).</li>
+   *                    <li>The branch the change should be made upon (optional). If this is omitted, the default
+   *                      branch will be used.</li>
+   *                    <li>The expected revision the change should be made upon (optional). If this is set, the changes
+   *                      will only be applied if the revision of the branch (either the specified or the default branch)
+   *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
+   *                      returned.</li>
+   *                  </ul>
+   */
+  @POST
+  @Path("{namespace}/{name}/move/{path: .*}")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Move file",
+    description = "Moves an existing file or folder as new commit. Returns the created changeset.",
+    tags = "Editor Plugin",
+    operationId = "editor_move"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "move job accepted, if the move should be executed in the background",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response move(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Valid MoveDto request
+  ) throws IOException {
+    if (isPreferred(prefer, RESPOND_ASYNC)) {
+      editorService.checkWritePermission(namespace, name);
+      String branch = editorService.resolveBranch(namespace, name, request.getBranch());
+      EditorJob job = jobManager.submit("move", new NamespaceAndName(namespace, name), branch, moveJob ->
+        editorService.moveAndReturnRevision(
+          namespace,
+          name,
+          request.getBranch(),
+          path,
+          request.getNewPath(),
+          request.getCommitMessage()));
+      return acceptedResponse(job);
+    }
+    if (isMinimalReturnPreferred(prefer)) {
+      String changesetId =
+        editorService.moveAndReturnRevision(
+          namespace,
+          name,
+          request.getBranch(),
+          path,
+          request.getNewPath(),
+          request.getCommitMessage());
+      return minimalResponse(changesetId, request.getBranch());
+    }
+    Changeset newCommit =
+      editorService.move(
+        namespace,
+        name,
+        request.getBranch(),
+        path,
+        request.getNewPath(),
+        request.getCommitMessage());
+    return changesetResponse(namespace, name, newCommit);
+  }
+
+  /**
+   * Applies an ordered list of operations (creating, modifying, deleting and moving files) as a single commit. All
+   * operations are checked against the change guards at once before anything is changed. If the coalescing of
+   * commits is enabled (see {@link CommitCoalescer}), batches of the same user for the same branch arriving within
+   * a short time may be committed together. In this case, all of these requests return the same changeset, which
+   * then contains the changes of the other requests and their commit messages, too. If this common commit fails,
+   * the changes of every request are committed on their own, so that every request only fails because of its own
+   * changes. The content of created and modified files is taken as text and stored with UTF-8. To create or modify
+   * binary files, the content has to be base64 encoded and the operation needs the <code>"encoding": "base64"</code>.
+   * <br>
+   * To rename one file, delete another and add an image in a repository 'scmadmin/repo' on branch 'master' with curl,
+   * you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/batch \
+   *   -H 'Content-Type: application/json' \
+   *   --data '{"commitMessage": "Commit message", "branch": "master", "operations": [
+   *     {"type": "MOVE", "path": "src/old.txt", "newPath": "/src/new.txt"},
+   *     {"type": "DELETE", "path": "src/obsolete.txt"},
+   *     {"type": "CREATE", "path": "src/added.txt", "content": "new content"},
+   *     {"type": "CREATE", "path": "src/logo.png", "content": "iVBORw0KGgo...", "encoding": "base64"}
+   *   ]}'
+   * </pre>
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned.
+   * @param request   The commit object with the operations to apply, in the order they should be applied. Besides
+   *                  the operations, this encapsulates necessary specifications for the new commit:
+   *                  <ul>
+   *                    <li>The commit message for the new commit (this is required).</li>
+   *                    <li>The branch the change should be made upon (optional). If this is omitted, the default
+   *                      branch will be used.</li>
+   *                    <li>The expected revision the change should be made upon (optional). If this is set, the changes
+   *                      will only be applied if the revision of the branch (either the specified or the default branch)
+   *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
+   *                      returned.</li>
+   *                  </ul>
+   * @throws IOException Whenever there were exceptions applying the operations.
+   */
+  @POST
+  @Path("{namespace}/{name}/batch")
+  @DecodeContentEncoding
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Batch of changes",
+    description = "Creates, modifies, deletes and moves multiple files as a single new commit. Returns the created changeset.",
+    tags = "Editor Plugin",
+    operationId = "editor_batch"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "create commit success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ChangesetDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid operations")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, a file to modify, delete or move is not available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response batch(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Valid BatchCommitDto request
+  ) throws IOException {
+    if (isMinimalReturnPreferred(prefer)) {
+      String changesetId =
+        editorService.batchAndReturnRevision(
+          namespace,
+          name,
+          request.getBranch(),
+          request.getCommitMessage(),
+          request.getExpectedRevision(),
+          request.getOperations());
+      return minimalResponse(changesetId, request.getBranch());
+    }
+    Changeset newCommit =
+      editorService.batch(
+        namespace,
+        name,
+        request.getBranch(),
+        request.getCommitMessage(),
+        request.getExpectedRevision(),
+        request.getOperations());
+    return changesetResponse(namespace, name, newCommit);
+  }
+
+  /**
+   * Resolves the changes the current user may apply to a single file or directory. This is used by clients, when the
+   * links for the changes are not appended to the sources directly (see {@link FileLinkEnricher}). The result contains
+   * a flag for each possible change and the links to the corresponding endpoints.
+   * <br>
+   * To get the possible changes for the file 'src/readme.md' in a repository 'scmadmin/repo' on branch 'master' with
+   * curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   'http://localhost:8081/scm/api/v2/edit/scmadmin/repo/capabilities/src/readme.md?revision=master'
+   * </pre>
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The path of the file or directory.
+   * @param revision  The revision or branch of the file (optional). If this is omitted, the default branch will be
+   *                  used.
+   * @throws IOException Whenever there were exceptions reading the file.
+   */
+  @GET
+  @Path("{namespace}/{name}/capabilities/{path: .*}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Possible changes",
+    description = "Resolves the changes the current user may apply to a single file or directory.",
+    tags = "Editor Plugin",
+    operationId = "editor_get_capabilities"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = FileCapabilitiesDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"read:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, the file or the revision is not available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public FileCapabilitiesDto getCapabilities(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("path") String path,
+    @QueryParam("revision") String revision
+  ) throws IOException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    return createCapabilitiesDto(namespaceAndName, path, capabilitiesCheck.check(namespaceAndName, revision, path));
+  }
+
+  /**
+   * Returns everything the editor needs to open a file with a single request: the resolved revision (which should
+   * be sent back as expected revision with the changes), the size, the content type, the detected programming
+   * language and encoding, the lock state, the possible changes with their links and the content itself. The content
+   * is only included for text files up to a maximum size; for other files it is <code>null</code> and has to be
+   * read with the content link of the sources.
+   * <br>
+   * To open the file 'src/readme.md' in a repository 'scmadmin/repo' on branch 'master' with curl, you will have to
+   * call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   'http://localhost:8081/scm/api/v2/edit/scmadmin/repo/open/src/readme.md?revision=master'
+   * </pre>
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The path of the file.
+   * @param revision  The revision or branch of the file (optional). If this is omitted, the default branch will be
+   *                  used.
+   * @throws IOException Whenever there were exceptions reading the file.
+   */
+  @GET
+  @Path("{namespace}/{name}/open/{path: .*}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Open file for editing",
+    description = "Returns the metadata, the possible changes and the content of a file with a single request.",
+    tags = "Editor Plugin",
+    operationId = "editor_open_file"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditableFileDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"read:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, the file or the revision is not available or the path is a directory")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public EditableFileDto open(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("path") String path,
+    @QueryParam("revision") String revision
+  ) throws IOException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    EditableFileLoader.EditableFile file = editableFileLoader.load(namespaceAndName, revision, path);
+    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
+    Links.Builder links = linkingTo()
+      .self(linkBuilder.method("open").parameters(namespace, name, path).href());
+    file.capabilities().forEachLink(namespaceAndName, file.file(), linkBuilder, (linkName, href) -> links.single(link(linkName, href)));
+    return new EditableFileDto(links.build(), file);
+  }
+
+  /**
+   * Downloads all files of a directory as zip archive. The files are read at a single revision and the archive is
+   * streamed to the client while it is written, so that even large directories can be downloaded with a single
+   * request. The entries are placed in a folder with the name of the directory (or the name of the repository for
+   * the root directory).
+   * <br>
+   * To download the directory 'src/main' in a repository 'scmadmin/repo' on branch 'master' with curl, you will have
+   * to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin -o main.zip \
+   *   'http://localhost:8081/scm/api/v2/edit/scmadmin/repo/archive/src/main?revision=master'
+   * </pre>
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param path      The path of the directory. If this is empty, the whole repository will be downloaded.
+   * @param revision  The revision or branch of the directory (optional). If this is omitted, the default branch will
+   *                  be used.
+   * @throws IOException Whenever there were exceptions reading the directory.
+   */
+  @GET
+  @Path("{namespace}/{name}/archive/{path: .*}")
+  @Produces(ARCHIVE_MEDIA_TYPE)
+  @Operation(
+    summary = "Download directory",
+    description = "Streams all files of a directory as zip archive.",
+    tags = "Editor Plugin",
+    operationId = "editor_download_directory"
+  )
+  @ApiResponse(responseCode = "200", description = "success")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"read:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, the directory or the revision is not available or the path is a file")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response downloadDirectory(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Nullable @PathParam("path") String path,
+    @QueryParam("revision") String revision
+  ) throws IOException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    DirectoryArchiver.DirectoryArchive archive = directoryArchiver.prepare(namespaceAndName, revision, StringUtils.defaultString(path));
+    StreamingOutput output = stream -> directoryArchiver.write(namespaceAndName, archive, stream);
+    return Response.ok(output, ARCHIVE_MEDIA_TYPE)
+      .header("Content-Disposition", "attachment; filename*=UTF-8''" + URLEncoder.encode(archive.fileName(), UTF_8).replace("+", "%20"))
+      .build();
+  }
+
+  /**
+   * Resolves the changes the current user may apply to many files or directories at once. The preconditions of the
+   * editor and the change guards are checked only once for all given paths. Paths that do not exist have no possible
+   * changes.
+   * <br>
+   * To get the possible changes for the files 'src/readme.md' and 'src/main' in a repository 'scmadmin/repo' on branch
+   * 'master' with curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/capabilities \
+   *   -H 'Content-Type: application/json' \
+   *   --data '{"branch": "master", "paths": ["src/readme.md", "src/main"]}'
+   * </pre>
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param request   The branch (optional, if this is omitted, the default branch will be used) and the paths to check.
+   * @throws IOException Whenever there were exceptions reading the files.
+   */
+  @POST
+  @Path("{namespace}/{name}/capabilities")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Possible changes for many files",
+    description = "Resolves the changes the current user may apply to many files or directories at once.",
+    tags = "Editor Plugin",
+    operationId = "editor_get_capabilities_for_paths"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = CapabilitiesResultDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid request, no paths given")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"read:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, the repository or the branch is not available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public CapabilitiesResultDto getCapabilitiesForPaths(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Valid CapabilitiesRequestDto request
+  ) throws IOException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    List<FileCapabilitiesDto> files = new ArrayList<>();
+    capabilitiesCheck.check(namespaceAndName, request.getBranch(), request.getPaths())
+      .forEach((path, capabilities) -> files.add(createCapabilitiesDto(namespaceAndName, path, capabilities)));
+    return new CapabilitiesResultDto(request.getBranch(), files);
+  }
+
+  private FileCapabilitiesDto createCapabilitiesDto(NamespaceAndName namespaceAndName, String path, FileCapabilities capabilities) {
+    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
+    Links.Builder links = linkingTo()
+      .self(linkBuilder.method("getCapabilities").parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), path).href());
+    FileObject fileObject = new FileObject();
+    fileObject.setPath(path);
+    fileObject.setDirectory(capabilities.isDirectory());
+    capabilities.forEachLink(namespaceAndName, fileObject, linkBuilder, (linkName, href) -> links.single(link(linkName, href)));
+    return new FileCapabilitiesDto(links.build(), path, capabilities);
+  }
+
+  /**
+   * Returns the state of a job of the editor, like a move or an upload in the background. Jobs can only be read by the user who
+   * started them and are kept for some time after they have finished.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param id        The id of the job.
+   */
+  @GET
+  @Path("{namespace}/{name}/jobs/{id}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Editor job",
+    description = "Returns the state of a job of the editor.",
+    tags = "Editor Plugin",
+    operationId = "editor_get_job"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = EditorJobDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "404", description = "not found, no job with this id is available for the current user")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public EditorJobDto getJob(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("id") String id
+  ) {
+    EditorJob job = findJob(namespace, name, id);
+    return new EditorJobDto(createJobLinks(job), job);
+  }
+
+  /**
+   * Streams the state of a job of the editor as server sent events. An event is sent for every change of the job,
+   * like the number of processed files. The stream is closed, when the job has finished.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param id        The id of the job.
+   */
+  @GET
+  @Path("{namespace}/{name}/jobs/{id}/events")
+  @Produces(MediaType.SERVER_SENT_EVENTS)
+  @Operation(
+    summary = "Editor job events",
+    description = "Streams the state of a job of the editor as server sent events.",
+    tags = "Editor Plugin",
+    operationId = "editor_get_job_events"
+  )
+  @ApiResponse(responseCode = "200", description = "success")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "404", description = "not found, no job with this id is available for the current user")
+  public void getJobEvents(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("id") String id,
+    @Context SseEventSink eventSink,
+    @Context Sse sse
+  ) {
+    EditorJob job = findJob(namespace, name, id);
+    // the links have to be created within the request, because the events are sent from the thread of the job
+    Links links = createJobLinks(job);
+    job.subscribe(new Consumer<>() {
+      @Override
+      public synchronized void accept(EditorJob changedJob) {
+        if (eventSink.isClosed()) {
+          changedJob.unsubscribe(this);
+          return;
+        }
+        eventSink.send(
+          sse.newEventBuilder()
+            .name("job")
+            .mediaType(MediaType.APPLICATION_JSON_TYPE)
+            .data(EditorJobDto.class, new EditorJobDto(links, changedJob))
+            .build()
+        );
+        if (changedJob.isFinished()) {
+          eventSink.close();
+        }
+      }
+    });
+  }
+
+  private EditorJob findJob(String namespace, String name, String id) {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    return jobManager.get(namespaceAndName, id)
+      .orElseThrow(() -> notFound(entity("EditorJob", id).in(namespaceAndName)));
+  }
+
+  /**
+   * Starts a chunked upload of a single file. The file can then be uploaded in chunks with
+   * {@link #uploadChunk(String, String, String, long, String, InputStream)}. If the connection breaks, the upload can
+   * be resumed at the offset returned by {@link #getUploadSession(String, String, String)}. Finally the file is
+   * committed with {@link #commitUpload(String, String, String, String, UploadCommitDto)}. The chunks are stored in
+   * a staging directory on the server (see {@link UploadSessionManager}).
+   * <br>
+   * To upload a large file 'data.bin' to the folder 'src/resources' of a repository 'scmadmin/repo' on branch
+   * 'master' in chunks of 100 MB with curl, you will have to call something like
+   * <pre>
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/uploads \
+   *   -H 'Content-Type: application/json' \
+   *   --data '{"path": "src/resources", "fileName": "data.bin", "size": 2147483648}'
+   *
+   * curl -u scmadmin:scmadmin -X PUT \
+   *   'http://localhost:8081/scm/api/v2/edit/scmadmin/repo/uploads/{id}?offset=0' \
+   *   -H 'Content-Type: application/octet-stream' \
+   *   -H 'X-Chunk-Checksum: {sha256 of the chunk}' \
+   *   --data-binary @chunk-0
+   * ...
+   * curl -u scmadmin:scmadmin \
+   *   http://localhost:8081/scm/api/v2/edit/scmadmin/repo/uploads/{id}/commit \
+   *   -H 'Content-Type: application/json' \
+   *   --data '{"commitMessage": "Commit message", "branch": "master", "checksum": "{sha256 of the file}"}'
+   * </pre>
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param request   The target of the upload:
+   *                  <ul>
+   *                    <li>The directory of the file (optional, the root directory if omitted).</li>
+   *                    <li>The name of the file (required).</li>
+   *                    <li>Whether an existing file should be modified (optional, by default a new file is
+   *                      created).</li>
+   *                    <li>The size of the complete file in bytes (optional). If this is set, the upload can only be
+   *                      committed, when all bytes have been received.</li>
+   *                  </ul>
+   * @throws IOException Whenever the file for the chunks could not be created.
+   */
+  @POST
+  @Path("{namespace}/{name}/uploads")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Start chunked upload",
+    description = "Starts an upload of a single file, that is sent in multiple chunks.",
+    tags = "Editor Plugin",
+    operationId = "editor_create_upload"
+  )
+  @ApiResponse(
+    responseCode = "201",
+    description = "upload session created",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = UploadSessionDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid request, the file name is missing or the size exceeds the maximum size")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response createUploadSession(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @Valid UploadSessionRequestDto request
+  ) throws IOException {
+    editorService.checkWritePermission(namespace, name);
+    UploadSession session = uploadSessionManager.create(
+      new NamespaceAndName(namespace, name),
+      StringUtils.defaultString(request.getPath()),
+      request.getFileName(),
+      request.isModify(),
+      request.getSize()
+    );
+    Links links = createUploadLinks(session);
+    return Response.status(CREATED)
+      .location(URI.create(links.getLinkBy("self").orElseThrow().getHref()))
+      .entity(new UploadSessionDto(links, session))
+      .build();
   }
 
   /**
-   * Moves a file or folder.
+   * Returns the state of a chunked upload, especially the offset the next chunk has to start at.
    *
    * @param namespace The namespace of the repository.
    * @param name      The name of the repository.
-   * @param path      The path and name of the file/folder that should be moved to a new location.
-   * @param request   This object provides the destination path and encapsulates necessary specifications for the new commit:
-   *                  <ul>
-   *                    <li>The commit message for the new commit (this is required).</li>
-   *                    <li>The branch the change should be made upon (optional). If this is omitted, the default
-   *                      branch will be used.</li>
-   *                    <li>The expected revision the change should be made upon (optional). If this is set, the changes
-   *                      will only be applied if the revision of the branch (either the specified or the default branch)
-   *                      equals the given revision. If this is not the case, a conflict (status code 409) will be
-   *                      returned.</li>
-   *                  </ul>
+   * @param id        The id of the upload.
+   */
+  @GET
+  @Path("{namespace}/{name}/uploads/{id}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Chunked upload",
+    description = "Returns the state of a chunked upload.",
+    tags = "Editor Plugin",
+    operationId = "editor_get_upload"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = UploadSessionDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "404", description = "not found, no upload with this id is available for the current user")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public UploadSessionDto getUploadSession(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("id") String id
+  ) {
+    UploadSession session = findUploadSession(namespace, name, id);
+    return new UploadSessionDto(createUploadLinks(session), session);
+  }
+
+  /**
+   * Appends a chunk to a chunked upload. The chunk has to start at the current offset of the upload. If the chunk
+   * is rejected, nothing of it is stored and it can be sent again.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param id        The id of the upload.
+   * @param offset    The position of the chunk in the complete file.
+   * @param checksum  The SHA-256 checksum of the chunk as hex string (optional). If this is set, the chunk is
+   *                  rejected, if it does not match the received content.
+   * @param body      The content of the chunk.
+   * @throws IOException Whenever the chunk could not be stored.
+   */
+  @PUT
+  @Path("{namespace}/{name}/uploads/{id}")
+  @DecodeContentEncoding
+  @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Upload chunk",
+    description = "Appends a chunk to a chunked upload.",
+    tags = "Editor Plugin",
+    operationId = "editor_upload_chunk"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "chunk stored",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = UploadSessionDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "the chunk does not start at the current offset, does not match the checksum or exceeds the announced or the maximum size of the file")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "404", description = "not found, no upload with this id is available for the current user")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public UploadSessionDto uploadChunk(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("id") String id,
+    @QueryParam("offset") long offset,
+    @HeaderParam(CHUNK_CHECKSUM_HEADER) String checksum,
+    InputStream body
+  ) throws IOException {
+    UploadSession session = findUploadSession(namespace, name, id);
+    session.append(offset, body, checksum);
+    return new UploadSessionDto(createUploadLinks(session), session);
+  }
+
+  /**
+   * Commits the file of a chunked upload. The change guards and the expected revision are checked now, just like for
+   * any other upload. If the commit fails, the upload is kept and the commit can be tried again.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param id        The id of the upload.
+   * @param prefer    With <code>return=minimal</code> in this header, only the id and the branch of the new
+   *                  changeset are returned.
+   * @param commit    The commit object with the commit message (required), the branch (optional), the expected
+   *                  revision (optional) and the SHA-256 checksum of the complete file as hex string (optional).
+   * @throws IOException Whenever there were exceptions handling the uploaded file.
    */
   @POST
-  @Path("{namespace}/{name}/move/{path: .*}")
+  @Path("{namespace}/{name}/uploads/{id}/commit")
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   @Operation(
-    summary = "Move file",
-    description = "Moves an existing file or folder as new commit. Returns the created changeset.",
+    summary = "Commit chunked upload",
+    description = "Commits the file of a chunked upload. Returns the created changeset.",
     tags = "Editor Plugin",
-    operationId = "editor_move"
+    operationId = "editor_commit_upload"
   )
   @ApiResponse(
     responseCode = "201",
@@ -594,8 +1922,10 @@ public class EditorResource {
       schema = @Schema(implementation = ChangesetDto.class)
     )
   )
+  @ApiResponse(responseCode = "400", description = "the upload is incomplete or does not match the checksum")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"push:repository\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, no upload with this id is available for the current user")
   @ApiResponse(
     responseCode = "500",
     description = "internal server error",
@@ -604,22 +1934,68 @@ public class EditorResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public Response move(
+  public Response commitUpload(
     @PathParam("namespace") String namespace,
     @PathParam("name") String name,
-    @Nullable @PathParam("path") String path,
-    @Valid MoveDto request
+    @PathParam("id") String id,
+    @HeaderParam(PREFER_HEADER) String prefer,
+    @Valid UploadCommitDto commit
   ) throws IOException {
-    Changeset newCommit =
-      editorService.move(
-        namespace,
-        name,
-        request.getBranch(),
-        path,
-        request.getNewPath(),
-        request.getCommitMessage());
-    ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
-    return Response.status(CREATED).entity(newCommitDto).build();
+    UploadSession session = findUploadSession(namespace, name, id);
+    session.verify(commit.getChecksum());
+    UploadProcessor processor = session.isModify() ? EditorService.FileUploader::modify : EditorService.FileUploader::create;
+    Response response;
+    try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, session.getPath(), commit);
+         InputStream content = Files.newInputStream(session.getFile())) {
+      processor.process(fileUploader, session.getFileName(), content);
+      response = commitResponse(namespace, name, commit.getBranch(), prefer, fileUploader);
+    }
+    uploadSessionManager.remove(session);
+    return response;
+  }
+
+  /**
+   * Aborts a chunked upload and deletes the chunks received so far.
+   *
+   * @param namespace The namespace of the repository.
+   * @param name      The name of the repository.
+   * @param id        The id of the upload.
+   */
+  @DELETE
+  @Path("{namespace}/{name}/uploads/{id}")
+  @Operation(
+    summary = "Abort chunked upload",
+    description = "Aborts a chunked upload and deletes the chunks received so far.",
+    tags = "Editor Plugin",
+    operationId = "editor_delete_upload"
+  )
+  @ApiResponse(responseCode = "204", description = "upload aborted")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "404", description = "not found, no upload with this id is available for the current user")
+  public void deleteUploadSession(
+    @PathParam("namespace") String namespace,
+    @PathParam("name") String name,
+    @PathParam("id") String id
+  ) {
+    uploadSessionManager.remove(findUploadSession(namespace, name, id));
+  }
+
+  private UploadSession findUploadSession(String namespace, String name, String id) {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    return uploadSessionManager.get(namespaceAndName, id)
+      .orElseThrow(() -> notFound(entity("UploadSession", id).in(namespaceAndName)));
+  }
+
+  private Links createUploadLinks(UploadSession session) {
+    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
+    NamespaceAndName namespaceAndName = session.getNamespaceAndName();
+    String self = linkBuilder.method("getUploadSession").parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), session.getId()).href();
+    return linkingTo()
+      .self(self)
+      .single(link("upload", self))
+      .single(link("delete", self))
+      .single(link("commit", linkBuilder.method("commitUpload").parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), session.getId()).href()))
+      .build();
   }
 
   private String[] extractFileName(String path) {
@@ -634,9 +2010,22 @@ public class EditorResource {
     }
   }
 
-  private Changeset processFiles(String namespace, String name, String path, MultipartFormDataInput input, UploadProcessor processor) throws IOException {
+  private Response processFiles(String namespace, String name, String path, String prefer, MultipartFormDataInput input, UploadProcessor fileProcessor) throws IOException {
     Map<String, List<InputPart>> formParts = input.getFormDataMap();
     FileMappingCommitDto commit = extractCommit(formParts.get("commit"));
+    UploadProcessor processor = processorFor(commit, fileProcessor);
+    if (isPreferred(prefer, RESPOND_ASYNC)) {
+      return submitUpload(namespace, name, path, commit, processor, files -> {
+        for (Map.Entry<String, List<InputPart>> formPart : formParts.entrySet()) {
+          if (formPart.getKey().startsWith("file")) {
+            for (InputPart inputPart : formPart.getValue()) {
+              String fileName = commit.getNames().get(parseFileName(inputPart.getHeaders()));
+              files.add(fileName, decodeContentEncoding(inputPart, commit));
+            }
+          }
+        }
+      });
+    }
     try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, path, commit)) {
       formParts
         .entrySet()
@@ -644,12 +2033,208 @@ public class EditorResource {
         .filter(e -> e.getKey().startsWith("file"))
         .map(Map.Entry::getValue)
         .forEach(inputParts -> processFile(fileUploader, inputParts, processor, commit));
-      return fileUploader.done();
+      return commitResponse(namespace, name, commit.getBranch(), prefer, fileUploader);
+    }
+  }
+
+  private Response processFilesStreaming(String namespace, String name, String path, String prefer, HttpHeaders headers, InputStream body, UploadProcessor fileProcessor) throws IOException {
+    MultipartStream multipartStream = new MultipartStream(body, extractBoundary(headers.getMediaType()));
+    FileMappingCommitDto commit = extractCommit(multipartStream.nextPart());
+    UploadProcessor processor = processorFor(commit, fileProcessor);
+    if (isPreferred(prefer, RESPOND_ASYNC)) {
+      return submitUpload(namespace, name, path, commit, processor, files -> {
+        Optional<MultipartStream.Part> part = multipartStream.nextPart();
+        while (part.isPresent()) {
+          if (part.get().getName().filter(partName -> partName.startsWith("file")).isPresent()) {
+            String fileName = commit.getNames().get(part.get().getFileName().orElseThrow(FileNameMissingException::new));
+            files.add(fileName, decodeContentEncoding(part.get(), commit));
+          }
+          part = multipartStream.nextPart();
+        }
+      });
+    }
+    try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, path, commit)) {
+      Optional<MultipartStream.Part> part = multipartStream.nextPart();
+      while (part.isPresent()) {
+        if (part.get().getName().filter(partName -> partName.startsWith("file")).isPresent()) {
+          processFile(fileUploader, part.get(), processor, commit);
+        }
+        part = multipartStream.nextPart();
+      }
+      return commitResponse(namespace, name, commit.getBranch(), prefer, fileUploader);
+    }
+  }
+
+  private Response processRawContent(String namespace, String name, String path, String fileName, CommitDto commit, String prefer, HttpHeaders headers, InputStream body, UploadProcessor processor) throws IOException {
+    if (isPreferred(prefer, RESPOND_ASYNC)) {
+      return submitUpload(namespace, name, path, commit, processor, files -> files.add(fileName, decodeTransferEncoding(headers, body)));
+    }
+    try (EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, path, commit)) {
+      processor.process(fileUploader, fileName, decodeTransferEncoding(headers, body));
+      return commitResponse(namespace, name, commit.getBranch(), prefer, fileUploader);
+    }
+  }
+
+  /**
+   * Stores the uploaded files temporarily and commits them in a background job. The permission is checked before the
+   * files are read, so that no files are stored for users who are not allowed to commit them anyway. The branch is
+   * resolved beforehand, so that jobs for the default branch are queued together, whether the branch is named or not.
+   */
+  private Response submitUpload(String namespace, String name, String path, CommitDto commit, UploadProcessor processor, Spooler spooler) throws IOException {
+    editorService.checkWritePermission(namespace, name);
+    String branch = editorService.resolveBranch(namespace, name, commit.getBranch());
+    SpooledFiles files = new SpooledFiles();
+    EditorJob job;
+    try {
+      spooler.spool(files);
+      job = jobManager.submit("upload", new NamespaceAndName(namespace, name), branch, uploadJob -> {
+        try (files; EditorService.FileUploader fileUploader = prepareEditorService(namespace, name, path, commit)) {
+          uploadJob.setFilesTotal(files.size());
+          files.forEach((fileName, content) -> {
+            processor.process(fileUploader, fileName, content);
+            uploadJob.addFilesProcessed(1);
+          });
+          return fileUploader.commit();
+        }
+      });
+    } catch (IOException | RuntimeException e) {
+      files.close();
+      throw e;
+    }
+    return acceptedResponse(job);
+  }
+
+  private InputStream decodeTransferEncoding(HttpHeaders headers, InputStream body) {
+    String transferEncoding = headers.getHeaderString(CONTENT_TRANSFER_ENCODING_HEADER);
+    if (StringUtils.isEmpty(transferEncoding) || "binary".equalsIgnoreCase(transferEncoding)) {
+      return body;
+    } else if ("base64".equalsIgnoreCase(transferEncoding)) {
+      return Base64.getMimeDecoder().wrap(body);
+    }
+    throw new UnsupportedTransferEncodingException(transferEncoding);
+  }
+
+  private CommitDto commitFromHeaders(String commitMessage, String branch, String expectedRevision) {
+    if (StringUtils.isEmpty(commitMessage)) {
+      throw new MessageHeaderMissingException();
+    }
+    return new CommitDto(decodeHeader(commitMessage), decodeHeader(branch), decodeHeader(expectedRevision));
+  }
+
+  /**
+   * Decodes percent encoded UTF-8 like in URLs. Other than form decoding, a <code>+</code> is kept as it is.
+   */
+  private static String decodeHeader(String value) {
+    if (value == null || value.indexOf('%') < 0) {
+      return value;
+    }
+    byte[] bytes = value.getBytes(UTF_8);
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream(bytes.length);
+    for (int i = 0; i < bytes.length; ++i) {
+      if (bytes[i] != '%') {
+        decoded.write(bytes[i]);
+      } else if (i + 2 < bytes.length && Character.digit(bytes[i + 1], 16) >= 0 && Character.digit(bytes[i + 2], 16) >= 0) {
+        decoded.write(Character.digit(bytes[i + 1], 16) << 4 | Character.digit(bytes[i + 2], 16));
+        i += 2;
+      } else {
+        throw new HeaderNotDecodableException(value);
+      }
+    }
+    try {
+      return UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT)
+        .decode(ByteBuffer.wrap(decoded.toByteArray()))
+        .toString();
+    } catch (CharacterCodingException e) {
+      throw new HeaderNotDecodableException(value);
+    }
+  }
+
+  private Response commitResponse(String namespace, String name, String branch, String prefer, EditorService.FileUploader fileUploader) throws IOException {
+    if (isMinimalReturnPreferred(prefer)) {
+      return minimalResponse(fileUploader.commit(), branch);
+    }
+    return changesetResponse(namespace, name, fileUploader.done());
+  }
+
+  private boolean isMinimalReturnPreferred(String prefer) {
+    return isPreferred(prefer, RETURN_MINIMAL);
+  }
+
+  private boolean isPreferred(String prefer, String expectedPreference) {
+    if (prefer == null) {
+      return false;
+    }
+    for (String preference : prefer.split(",")) {
+      if (expectedPreference.equalsIgnoreCase(preference.trim())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Response acceptedResponse(EditorJob job) {
+    Links links = createJobLinks(job);
+    return Response.accepted(new EditorJobDto(links, job))
+      .header(PREFERENCE_APPLIED_HEADER, RESPOND_ASYNC)
+      .location(URI.create(links.getLinkBy("self").orElseThrow().getHref()))
+      .build();
+  }
+
+  private Links createJobLinks(EditorJob job) {
+    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
+    NamespaceAndName namespaceAndName = job.getNamespaceAndName();
+    return linkingTo()
+      .self(linkBuilder.method("getJob").parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), job.getId()).href())
+      .single(link("events", linkBuilder.method("getJobEvents").parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), job.getId()).href()))
+      .build();
+  }
+
+  private Response minimalResponse(String changesetId, String branch) {
+    return Response.status(CREATED)
+      .header(PREFERENCE_APPLIED_HEADER, RETURN_MINIMAL)
+      .entity(new CommitResultDto(changesetId, branch))
+      .build();
+  }
+
+  private Response changesetResponse(String namespace, String name, Changeset newCommit) {
+    ChangesetDto newCommitDto = changesetMapper.map(newCommit, repositoryManager.get(new NamespaceAndName(namespace, name)));
+    return Response.status(CREATED).entity(newCommitDto).build();
+  }
+
+  private String extractBoundary(MediaType mediaType) {
+    String boundary = mediaType == null ? null : mediaType.getParameters().get("boundary");
+    if (StringUtils.isEmpty(boundary)) {
+      throw new BoundaryMissingException();
     }
+    return boundary;
+  }
+
+  private UploadProcessor processorFor(FileMappingCommitDto commit, UploadProcessor processor) {
+    return commit.isExpandArchives() ? expandingArchives() : processor;
+  }
+
+  /**
+   * Takes each uploaded file as an archive and creates its files relative to the directory of the archive.
+   */
+  private UploadProcessor expandingArchives() {
+    return (fileUploader, fileName, stream) -> {
+      String directory = fileName == null ? "" : fileName.substring(0, fileName.lastIndexOf('/') + 1);
+      try {
+        archiveExpander.expand(stream, (entryPath, content) -> fileUploader.create(directory + entryPath, content));
+      } catch (IOException e) {
+        throw new UploadFailedException(fileName);
+      }
+    };
   }
 
   private EditorService.FileUploader prepareEditorService(String namespace, String name, String path, CommitDto commit) {
-    return editorService.prepare(namespace, name, commit.getBranch(), path, commit.getCommitMessage(), commit.getExpectedRevision());
+    EditorService.FileUploader fileUploader = editorService.prepare(namespace, name, commit.getBranch(), path, commit.getCommitMessage(), commit.getExpectedRevision());
+    if (commit instanceof FileMappingCommitDto fileMappingCommit && fileMappingCommit.isSkipUnchanged()) {
+      fileUploader.skipUnchanged(fileMappingCommit.getChecksums());
+    }
+    return fileUploader;
   }
 
   private void processFile(EditorService.FileUploader fileUploader, List<InputPart> inputParts, UploadProcessor uploadProcessor, FileMappingCommitDto commit) {
@@ -657,7 +2242,7 @@ public class EditorResource {
       String fileName = commit.getNames().get(parseFileName(inputPart.getHeaders()));
 
       try {
-        InputStream stream = inputPart.getBody(InputStream.class, null);
+        InputStream stream = decodeContentEncoding(inputPart, commit);
         uploadProcessor.process(fileUploader, fileName, stream);
       } catch (IOException e) {
         throw new UploadFailedException(fileName);
@@ -665,21 +2250,66 @@ public class EditorResource {
     }
   }
 
+  private void processFile(EditorService.FileUploader fileUploader, MultipartStream.Part part, UploadProcessor uploadProcessor, FileMappingCommitDto commit) {
+    String fileName = commit.getNames().get(part.getFileName().orElseThrow(FileNameMissingException::new));
+    try {
+      uploadProcessor.process(fileUploader, fileName, decodeContentEncoding(part, commit));
+    } catch (IOException e) {
+      throw new UploadFailedException(fileName);
+    }
+  }
+
+  /**
+   * Parts can be compressed on their own, independent of the encoding of the whole request. Because browsers cannot
+   * set headers for single parts of a form, the encoding can be declared in the commit object, too.
+   */
+  private InputStream decodeContentEncoding(InputPart inputPart, FileMappingCommitDto commit) throws IOException {
+    String contentEncoding = contentEncodingOf(inputPart.getHeaders().getFirst(CONTENT_ENCODING_HEADER), parseFileName(inputPart.getHeaders()), commit);
+    return ContentEncodings.decode(contentEncoding, inputPart.getBody(InputStream.class, null));
+  }
+
+  private InputStream decodeContentEncoding(MultipartStream.Part part, FileMappingCommitDto commit) throws IOException {
+    String contentEncoding = contentEncodingOf(part.getHeader(CONTENT_ENCODING_HEADER), part.getFileName().orElse(null), commit);
+    return ContentEncodings.decode(contentEncoding, part.getBody());
+  }
+
+  private String contentEncodingOf(String headerValue, String partFileName, FileMappingCommitDto commit) {
+    if (!StringUtils.isEmpty(headerValue) || commit.getContentEncodings() == null) {
+      return headerValue;
+    }
+    return commit.getContentEncodings().get(partFileName);
+  }
+
   private FileMappingCommitDto extractCommit(List<InputPart> input) throws IOException {
     if (input != null && !input.isEmpty()) {
-      String content = readBodyForCommitObject(input);
-      try (JsonParser parser = new JsonFactory().createParser(content)) {
-        parser.setCodec(new ObjectMapper());
-        FileMappingCommitDto commitDto = parser.readValueAs(FileMappingCommitDto.class);
-        if (StringUtils.isEmpty(commitDto.getCommitMessage())) {
-          throw new MessageMissingException();
-        }
-        return commitDto;
-      }
+      return parseCommit(readBodyForCommitObject(input));
     }
     throw new MessageMissingException();
   }
 
+  private FileMappingCommitDto extractCommit(Optional<MultipartStream.Part> firstPart) throws IOException {
+    if (firstPart.isEmpty() || !firstPart.get().getName().filter("commit"::equals).isPresent()) {
+      throw new CommitNotFirstException();
+    }
+    return parseCommit(new ByteSource() {
+      @Override
+      public InputStream openStream() {
+        return firstPart.get().getBody();
+      }
+    }.asCharSource(UTF_8).read());
+  }
+
+  private FileMappingCommitDto parseCommit(String content) throws IOException {
+    try (JsonParser parser = new JsonFactory().createParser(content)) {
+      parser.setCodec(new ObjectMapper());
+      FileMappingCommitDto commitDto = parser.readValueAs(FileMappingCommitDto.class);
+      if (StringUtils.isEmpty(commitDto.getCommitMessage())) {
+        throw new MessageMissingException();
+      }
+      return commitDto;
+    }
+  }
+
   private String readBodyForCommitObject(List<InputPart> input) throws IOException {
     return new ByteSource() {
       @Override
@@ -690,11 +2320,16 @@ public class EditorResource {
   }
 
   private String parseFileName(MultivaluedMap<String, String> headers) {
-    String[] contentDispositionHeader = headers.getFirst("Content-Disposition").split(";");
-    for (String name : contentDispositionHeader) {
+    String contentDisposition = headers.getFirst("Content-Disposition");
+    if (contentDisposition == null) {
+      throw new FileNameMissingException();
+    }
+    for (String name : contentDisposition.split(";")) {
       if ((name.trim().startsWith("filename"))) {
-        String[] tmp = name.split("=");
-        return removeQuotes(tmp[1]);
+        String[] tmp = name.split("=", 2);
+        if (tmp.length == 2) {
+          return removeQuotes(tmp[1].trim());
+        }
       }
     }
     throw new FileNameMissingException();
@@ -739,9 +2374,84 @@ public class EditorResource {
     }
   }
 
+  private static class CommitNotFirstException extends BadRequestException {
+
+    private static final String CODE = "5qSYhDrZb1";
+
+    public CommitNotFirstException() {
+      super(Collections.emptyList(), "form part for commit object has to be the first part of a streaming upload");
+    }
+
+    @Override
+    public String getCode() {
+      return CODE;
+    }
+  }
+
+  private static class BoundaryMissingException extends BadRequestException {
+
+    private static final String CODE = "9hSYhEBXn1";
+
+    public BoundaryMissingException() {
+      super(Collections.emptyList(), "content type of multipart request has no boundary");
+    }
+
+    @Override
+    public String getCode() {
+      return CODE;
+    }
+  }
+
+  private static class MessageHeaderMissingException extends BadRequestException {
+
+    private static final String CODE = "7vSYhGKqa1";
+
+    public MessageHeaderMissingException() {
+      super(Collections.emptyList(), "header " + COMMIT_MESSAGE_HEADER + " with the commit message missing");
+    }
+
+    @Override
+    public String getCode() {
+      return CODE;
+    }
+  }
+
+  private static class UnsupportedTransferEncodingException extends BadRequestException {
+
+    private static final String CODE = "3FSYhHWeT1";
+
+    public UnsupportedTransferEncodingException(String transferEncoding) {
+      super(Collections.emptyList(), "unsupported content transfer encoding: " + transferEncoding);
+    }
+
+    @Override
+    public String getCode() {
+      return CODE;
+    }
+  }
+
+  private static class HeaderNotDecodableException extends BadRequestException {
+
+    private static final String CODE = "Vcbu7iz0e1";
+
+    public HeaderNotDecodableException(String value) {
+      super(Collections.emptyList(), "header value is not correctly percent encoded: " + value);
+    }
+
+    @Override
+    public String getCode() {
+      return CODE;
+    }
+  }
+
   @FunctionalInterface
   private interface UploadProcessor {
     void process(EditorService.FileUploader fileUploader, String fileName, InputStream stream);
   }
+
+  @FunctionalInterface
+  private interface Spooler {
+    void spool(SpooledFiles files) throws IOException;
+  }
 }
 
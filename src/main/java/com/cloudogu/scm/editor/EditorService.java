@@ -18,10 +18,20 @@ package com.cloudogu.scm.editor;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.FileBackedOutputStream;
 import org.apache.commons.lang.StringUtils;
+import sonia.scm.NotFoundException;
+import sonia.scm.repository.Branch;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.Command;
 import sonia.scm.repository.api.LogCommandBuilder;
 import sonia.scm.repository.api.ModifyCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
@@ -30,32 +40,64 @@ import sonia.scm.util.ValidationUtil;
 
 import javax.annotation.CheckForNull;
 import jakarta.inject.Inject;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
 import static sonia.scm.ScmConstraintViolationException.Builder.doThrow;
 
 public class EditorService {
 
+  /**
+   * Uploaded files up to this size are kept in memory, when they have to be buffered to compare them with the
+   * existing files.
+   */
+  private static final int SKIP_UNCHANGED_MEMORY_THRESHOLD = 1024 * 1024;
+
   private final RepositoryServiceFactory repositoryServiceFactory;
   private final ChangeGuardCheck changeGuardCheck;
+  private final EditorMetrics metrics;
+  private final CommitCoalescer coalescer;
 
   @Inject
-  public EditorService(RepositoryServiceFactory repositoryServiceFactory, ChangeGuardCheck changeGuardCheck) {
+  public EditorService(RepositoryServiceFactory repositoryServiceFactory, ChangeGuardCheck changeGuardCheck, EditorMetrics metrics, CommitCoalescer coalescer) {
     this.repositoryServiceFactory = repositoryServiceFactory;
     this.changeGuardCheck = changeGuardCheck;
+    this.metrics = metrics;
+    this.coalescer = coalescer;
   }
 
   FileUploader prepare(String namespace, String name, String branch, String path, String commitMessage, String revision) {
     try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(namespace, name))) {
-      ModifyCommandBuilder modifyCommand = initializeModifyCommandBuilder(branch, commitMessage, revision, repositoryService);
-      return new FileUploader(repositoryService, modifyCommand, path, branch);
+      return metrics.timeOperation("prepare", repositoryService.getRepository(), () -> {
+        ModifyCommandBuilder modifyCommand = initializeModifyCommandBuilder(branch, commitMessage, revision, repositoryService);
+        return new FileUploader(repositoryService, modifyCommand, path, branch, revision);
+      });
     }
   }
 
   Changeset move(String namespace, String repositoryName, @CheckForNull String branch, String fromPath, String toPath, String commitMessage) throws IOException {
+    return move(namespace, repositoryName, branch, fromPath, toPath, commitMessage, changeset(branch));
+  }
+
+  /**
+   * Like {@link #move(String, String, String, String, String, String)}, but returns only the id of the new changeset
+   * without reading the changeset from the repository.
+   */
+  String moveAndReturnRevision(String namespace, String repositoryName, @CheckForNull String branch, String fromPath, String toPath, String commitMessage) throws IOException {
+    return move(namespace, repositoryName, branch, fromPath, toPath, commitMessage, changesetId());
+  }
+
+  private <T> T move(String namespace, String repositoryName, @CheckForNull String branch, String fromPath, String toPath, String commitMessage, CommitResult<T> result) throws IOException {
     validatePath(fromPath, "source path");
     doThrow()
       .violation("must not be empty", "source path")
@@ -67,36 +109,170 @@ public class EditorService {
       .when(StringUtils.isEmpty(toPath));
 
     try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(namespace, repositoryName))) {
-      checkWritePermission(repositoryService);
+      String newChangesetId = metrics.timeOperation("move", repositoryService.getRepository(), () -> {
+        checkWritePermission(repositoryService);
 
-      ModifyCommandBuilder modifyCommand = repositoryService.getModifyCommand();
-      if (!Strings.isNullOrEmpty(branch)) {
-        modifyCommand.setBranch(branch);
-      }
-      modifyCommand.setCommitMessage(commitMessage);
-      modifyCommand.move(fromPath).to(toPath);
-      String newChangesetId = modifyCommand.execute();
+        ModifyCommandBuilder modifyCommand = repositoryService.getModifyCommand();
+        if (!Strings.isNullOrEmpty(branch)) {
+          modifyCommand.setBranch(branch);
+        }
+        modifyCommand.setCommitMessage(commitMessage);
+        modifyCommand.move(fromPath).to(toPath);
+        return modifyCommand.execute();
+      });
+      changeGuardCheck.invalidate(repositoryService.getRepository().getNamespaceAndName(), branch);
 
-      return repositoryService.getLogCommand().setBranch(branch).getChangeset(newChangesetId);
+      return result.get(repositoryService, newChangesetId);
+    }
+  }
+
+  /**
+   * Applies the line replacements to the file in the given revision (or the default branch, if no revision is given)
+   * and writes the patched content to the target.
+   */
+  void patch(String namespace, String name, @CheckForNull String revision, String path, List<LineReplacementDto> replacements, OutputStream target) throws IOException {
+    LinePatcher patcher = new LinePatcher(path, replacements);
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(namespace, name))) {
+      CatCommandBuilder catCommand = repositoryService.getCatCommand();
+      if (!Strings.isNullOrEmpty(revision)) {
+        catCommand.setRevision(revision);
+      }
+      try (InputStream original = catCommand.getStream(path)) {
+        patcher.apply(original, target);
+      }
     }
   }
 
   Changeset delete(String namespace, String name, String branch, String path, String commitMessage, String revision) throws IOException {
+    return delete(namespace, name, branch, path, commitMessage, revision, changeset(branch));
+  }
+
+  /**
+   * Like {@link #delete(String, String, String, String, String, String)}, but returns only the id of the new changeset
+   * without reading the changeset from the repository.
+   */
+  String deleteAndReturnRevision(String namespace, String name, String branch, String path, String commitMessage, String revision) throws IOException {
+    return delete(namespace, name, branch, path, commitMessage, revision, changesetId());
+  }
+
+  private <T> T delete(String namespace, String name, String branch, String path, String commitMessage, String revision, CommitResult<T> result) throws IOException {
     NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
 
-    Collection<ChangeObstacle> obstacles = changeGuardCheck.isDeletable(namespaceAndName, branch, path);
-    if (!obstacles.isEmpty()) {
-      throw new ChangeNotAllowedException(namespaceAndName, branch, path, obstacles);
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      String changesetId = metrics.timeOperation("delete", repositoryService.getRepository(), () -> {
+        Collection<ChangeObstacle> obstacles = changeGuardCheck.isDeletable(namespaceAndName, branch, path);
+        if (!obstacles.isEmpty()) {
+          throw new ChangeNotAllowedException(namespaceAndName, branch, path, obstacles);
+        }
+
+        return initializeModifyCommandBuilder(branch, commitMessage, revision, repositoryService)
+          .deleteFile(path)
+          .execute();
+      });
+      changeGuardCheck.invalidate(namespaceAndName, branch);
+      return result.get(repositoryService, changesetId);
+    }
+  }
+
+  Changeset batch(String namespace, String name, String branch, String commitMessage, String revision, List<BatchOperationDto> operations) throws IOException {
+    return batch(namespace, name, branch, commitMessage, revision, operations, changeset(branch));
+  }
+
+  /**
+   * Like {@link #batch(String, String, String, String, String, List)}, but returns only the id of the new changeset
+   * without reading the changeset from the repository.
+   */
+  String batchAndReturnRevision(String namespace, String name, String branch, String commitMessage, String revision, List<BatchOperationDto> operations) throws IOException {
+    return batch(namespace, name, branch, commitMessage, revision, operations, changesetId());
+  }
+
+  private <T> T batch(String namespace, String name, String branch, String commitMessage, String revision, List<BatchOperationDto> operations, CommitResult<T> result) throws IOException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+
+    Collection<String> toBeModified = new ArrayList<>();
+    Collection<String> toBeCreated = new ArrayList<>();
+    Collection<String> toBeDeleted = new ArrayList<>();
+    for (BatchOperationDto operation : operations) {
+      validatePath(operation.getPath(), "path");
+      switch (operation.getType()) {
+        case CREATE:
+          toBeCreated.add(operation.getPath());
+          break;
+        case MODIFY:
+          toBeModified.add(operation.getPath());
+          break;
+        case DELETE:
+          toBeDeleted.add(operation.getPath());
+          break;
+        case MOVE:
+          validatePath(operation.getNewPath(), "new path");
+          doThrow()
+            .violation("must not be empty", "new path")
+            .when(StringUtils.isEmpty(operation.getNewPath()));
+          toBeDeleted.add(operation.getPath());
+          toBeCreated.add(operation.getNewPath());
+          break;
+      }
     }
 
     try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
-      String changesetId = initializeModifyCommandBuilder(branch, commitMessage, revision, repositoryService)
-        .deleteFile(path)
-        .execute();
-      return repositoryService.getLogCommand().setBranch(branch).getChangeset(changesetId);
+      String changesetId = metrics.timeOperation("batch", repositoryService.getRepository(), () -> {
+        Collection<ChangeObstacle> obstacles = changeGuardCheck.isChangeable(namespaceAndName, branch, toBeModified, toBeCreated, toBeDeleted);
+        if (!obstacles.isEmpty()) {
+          throw new ChangeNotAllowedException(namespaceAndName, branch, "", obstacles);
+        }
+
+        if (coalescer.isEnabled()) {
+          checkWritePermission(repositoryService);
+          Collection<String> paths = new ArrayList<>(toBeModified);
+          paths.addAll(toBeCreated);
+          paths.addAll(toBeDeleted);
+          // requests without a branch have to share the window of the requests for the default branch
+          String resolvedBranch = resolveBranch(repositoryService, branch);
+          return coalescer.submit(namespaceAndName, resolvedBranch, revision, commitMessage, operations, paths,
+            (coalescedMessage, coalescedOperations) -> executeBatch(repositoryService, resolvedBranch, coalescedMessage, revision, coalescedOperations));
+        }
+        return executeBatch(repositoryService, branch, commitMessage, revision, operations);
+      });
+      changeGuardCheck.invalidate(namespaceAndName, branch);
+      return result.get(repositoryService, changesetId);
+    }
+  }
+
+  private String executeBatch(RepositoryService repositoryService, String branch, String commitMessage, String revision, List<BatchOperationDto> operations) throws IOException {
+    ModifyCommandBuilder modifyCommand = initializeModifyCommandBuilder(branch, commitMessage, revision, repositoryService);
+    for (BatchOperationDto operation : operations) {
+      applyBatchOperation(modifyCommand, operation);
+    }
+    return modifyCommand.execute();
+  }
+
+  private void applyBatchOperation(ModifyCommandBuilder modifyCommand, BatchOperationDto operation) throws IOException {
+    switch (operation.getType()) {
+      case CREATE:
+        modifyCommand.createFile(operation.getPath()).setOverwrite(true).withData(contentOf(operation));
+        break;
+      case MODIFY:
+        modifyCommand.modifyFile(operation.getPath()).withData(contentOf(operation));
+        break;
+      case DELETE:
+        modifyCommand.deleteFile(operation.getPath());
+        break;
+      case MOVE:
+        modifyCommand.move(operation.getPath()).to(operation.getNewPath());
+        break;
     }
   }
 
+  private InputStream contentOf(BatchOperationDto operation) {
+    String content = Strings.nullToEmpty(operation.getContent());
+    if (operation.isBase64()) {
+      // base64 only consists of ASCII characters, and the binary content is decoded while it is read
+      return Base64.getMimeDecoder().wrap(new ByteArrayInputStream(content.getBytes(US_ASCII)));
+    }
+    return new ByteArrayInputStream(content.getBytes(UTF_8));
+  }
+
   private ModifyCommandBuilder initializeModifyCommandBuilder(String branch, String commitMessage, String revision, RepositoryService repositoryService) {
     checkWritePermission(repositoryService);
     ModifyCommandBuilder modifyCommand = repositoryService.getModifyCommand();
@@ -110,6 +286,47 @@ public class EditorService {
     return modifyCommand;
   }
 
+  /**
+   * Checks whether the current user may commit to the given repository, before any files are processed.
+   */
+  void checkWritePermission(String namespace, String name) {
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(namespace, name))) {
+      checkWritePermission(repositoryService);
+    }
+  }
+
+  /**
+   * Returns the given branch or, if no branch is given, the name of the default branch of the repository, so that
+   * both refer to the same branch. For repositories without branches, <code>null</code> is returned.
+   */
+  @CheckForNull
+  String resolveBranch(String namespace, String name, @CheckForNull String branch) throws IOException {
+    if (!Strings.isNullOrEmpty(branch)) {
+      return branch;
+    }
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(new NamespaceAndName(namespace, name))) {
+      return resolveBranch(repositoryService, branch);
+    }
+  }
+
+  @CheckForNull
+  private String resolveBranch(RepositoryService repositoryService, @CheckForNull String branch) throws IOException {
+    if (!Strings.isNullOrEmpty(branch)) {
+      return branch;
+    }
+    if (!repositoryService.isSupported(Command.BRANCHES)) {
+      return null;
+    }
+    return repositoryService.getBranchesCommand()
+      .getBranches()
+      .getBranches()
+      .stream()
+      .filter(Branch::isDefaultBranch)
+      .map(Branch::getName)
+      .findFirst()
+      .orElse(null);
+  }
+
   @VisibleForTesting
   void checkWritePermission(RepositoryService repositoryService) {
     RepositoryPermissions.push(repositoryService.getRepository()).check();
@@ -122,38 +339,116 @@ public class EditorService {
     private final String path;
     private final String branch;
 
+    private final String expectedRevision;
+
     private final Collection<String> createdFiles = new ArrayList<>();
     private final Collection<String> modifiedFiles = new ArrayList<>();
+    private final Collection<String> skippedFiles = new ArrayList<>();
+
+    private boolean skipUnchanged;
+    private Map<String, String> checksums = emptyMap();
 
-    private FileUploader(RepositoryService repositoryService, ModifyCommandBuilder modifyCommand, String path, String branch) {
+    private FileUploader(RepositoryService repositoryService, ModifyCommandBuilder modifyCommand, String path, String branch, String expectedRevision) {
       this.repositoryService = repositoryService;
       this.modifyCommand = modifyCommand;
       this.path = path;
       this.branch = branch;
+      this.expectedRevision = expectedRevision;
+    }
+
+    /**
+     * Files with the same content as the existing file on the branch will not be committed. The content of each file
+     * is compared by its SHA-256 checksum. If the client knows the checksum of a file, it can be passed in the given
+     * map (with the file name as key), so that the content of the file does not have to be read at all if it is
+     * unchanged. Otherwise, the content is buffered and its checksum is computed while it is read.
+     */
+    public FileUploader skipUnchanged(Map<String, String> checksums) {
+      this.skipUnchanged = true;
+      this.checksums = checksums == null ? emptyMap() : checksums;
+      return this;
     }
 
     public FileUploader create(String fileName, InputStream stream) {
+      return upload("create", fileName, stream, createdFiles,
+        (completeFileName, content) -> modifyCommand.createFile(completeFileName).setOverwrite(true).withData(content));
+    }
+
+    public FileUploader modify(String fileName, InputStream stream) {
+      return upload("modify", fileName, stream, modifiedFiles,
+        (completeFileName, content) -> modifyCommand.modifyFile(completeFileName).withData(content));
+    }
+
+    private FileUploader upload(String operation, String fileName, InputStream stream, Collection<String> changedFiles, ContentWriter writer) {
       @SuppressWarnings("squid:S1075") // the path delimiter is for urls, not for os files
       String completeFileName = computeCompleteFileName(fileName);
+      CountingInputStream countingStream = new CountingInputStream(stream);
+      // only the size is recorded for each file; the operation is timed as "upload" in commit()
+      boolean written = true;
       try {
-        modifyCommand.createFile(completeFileName).setOverwrite(true).withData(stream);
+        if (skipUnchanged) {
+          written = writeIfChanged(fileName, completeFileName, countingStream, writer);
+        } else {
+          writer.write(completeFileName, countingStream);
+        }
       } catch (IOException e) {
         throw new UploadFailedException(fileName);
       }
-      createdFiles.add(completeFileName);
+      metrics.recordUpload(operation, repositoryService.getRepository(), countingStream.getCount());
+      if (written) {
+        changedFiles.add(completeFileName);
+      } else {
+        skippedFiles.add(completeFileName);
+      }
       return this;
     }
 
-    public FileUploader modify(String fileName, InputStream stream) {
-      @SuppressWarnings("squid:S1075") // the path delimiter is for urls, not for os files
-      String completeFileName = computeCompleteFileName(fileName);
+    private boolean writeIfChanged(String fileName, String completeFileName, InputStream stream, ContentWriter writer) throws IOException {
+      String existingChecksum = checksumOfExistingFile(completeFileName);
+      if (existingChecksum == null) {
+        writer.write(completeFileName, stream);
+        return true;
+      }
+      String givenChecksum = checksums.get(fileName);
+      if (givenChecksum != null) {
+        if (existingChecksum.equalsIgnoreCase(givenChecksum)) {
+          return false;
+        }
+        writer.write(completeFileName, stream);
+        return true;
+      }
+      FileBackedOutputStream buffer = new FileBackedOutputStream(SKIP_UNCHANGED_MEMORY_THRESHOLD, true);
       try {
-        modifyCommand.modifyFile(completeFileName).withData(stream);
-      } catch (IOException e) {
-        throw new UploadFailedException(fileName);
+        HashingOutputStream hashingStream = new HashingOutputStream(Hashing.sha256(), buffer);
+        ByteStreams.copy(stream, hashingStream);
+        hashingStream.close();
+        if (existingChecksum.equals(hashingStream.hash().toString())) {
+          return false;
+        }
+        try (InputStream content = buffer.asByteSource().openStream()) {
+          writer.write(completeFileName, content);
+        }
+        return true;
+      } finally {
+        buffer.reset();
+      }
+    }
+
+    @CheckForNull
+    private String checksumOfExistingFile(String completeFileName) throws IOException {
+      CatCommandBuilder catCommand = repositoryService.getCatCommand();
+      if (!Strings.isNullOrEmpty(branch)) {
+        catCommand.setRevision(branch);
+      }
+      try (InputStream content = catCommand.getStream(completeFileName)) {
+        if (content == null) {
+          return null;
+        }
+        HashingInputStream hashingStream = new HashingInputStream(Hashing.sha256(), content);
+        ByteStreams.exhaust(hashingStream);
+        return hashingStream.hash().toString();
+      } catch (NotFoundException e) {
+        return null;
       }
-      modifiedFiles.add(completeFileName);
-      return this;
     }
 
     private String computeCompleteFileName(String fileName) {
@@ -169,18 +464,40 @@ public class EditorService {
     }
 
     public Changeset done() throws IOException {
+      return changeset(branch).get(repositoryService, commit());
+    }
+
+    /**
+     * Executes the modifications like {@link #done()}, but returns only the id of the new changeset without reading
+     * the changeset from the repository.
+     */
+    public String commit() throws IOException {
       NamespaceAndName namespaceAndName = repositoryService.getRepository().getNamespaceAndName();
-      Collection<ChangeObstacle> obstacles = changeGuardCheck.isModifiableAndCreatable(namespaceAndName, branch, modifiedFiles, createdFiles);
-      if (!obstacles.isEmpty()) {
-        throw new ChangeNotAllowedException(namespaceAndName, branch, path, obstacles);
+      if (createdFiles.isEmpty() && modifiedFiles.isEmpty() && !skippedFiles.isEmpty()) {
+        String currentRevision = currentRevision();
+        if (Strings.isNullOrEmpty(expectedRevision) || expectedRevision.equals(currentRevision)) {
+          // all files are unchanged, so there is nothing to commit
+          return currentRevision;
+        }
       }
+      String changesetId = metrics.timeOperation("upload", repositoryService.getRepository(), () -> {
+        Collection<ChangeObstacle> obstacles = changeGuardCheck.isModifiableAndCreatable(namespaceAndName, branch, modifiedFiles, createdFiles);
+        if (!obstacles.isEmpty()) {
+          throw new ChangeNotAllowedException(namespaceAndName, branch, path, obstacles);
+        }
 
-      String changesetId = modifyCommand.execute();
-      LogCommandBuilder logCommand = repositoryService.getLogCommand();
+        return modifyCommand.execute();
+      });
+      changeGuardCheck.invalidate(namespaceAndName, branch);
+      return changesetId;
+    }
+
+    private String currentRevision() throws IOException {
+      LogCommandBuilder logCommand = repositoryService.getLogCommand().setPagingLimit(1);
       if (!Strings.isNullOrEmpty(branch)) {
         logCommand.setBranch(branch);
       }
-      return logCommand.getChangeset(changesetId);
+      return logCommand.getChangesets().getChangesets().get(0).getId();
     }
 
     @Override
@@ -189,6 +506,30 @@ public class EditorService {
     }
   }
 
+  private static CommitResult<Changeset> changeset(String branch) {
+    return (repositoryService, changesetId) -> {
+      LogCommandBuilder logCommand = repositoryService.getLogCommand();
+      if (!Strings.isNullOrEmpty(branch)) {
+        logCommand.setBranch(branch);
+      }
+      return logCommand.getChangeset(changesetId);
+    };
+  }
+
+  private static CommitResult<String> changesetId() {
+    return (repositoryService, changesetId) -> changesetId;
+  }
+
+  @FunctionalInterface
+  private interface ContentWriter {
+    void write(String completeFileName, InputStream content) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface CommitResult<T> {
+    T get(RepositoryService repositoryService, String changesetId) throws IOException;
+  }
+
   private void validatePath(String path, String variableName) {
     doThrow()
       .violation("must not contain \"..\", \"//\", or \"\\\" and must not equal \"..\"", variableName)
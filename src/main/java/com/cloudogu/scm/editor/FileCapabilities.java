@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import sonia.scm.api.v2.resources.LinkBuilder;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The changes the current user may apply to a single file or directory. Each guard question is answered only once,
+ * and all links are derived from this.
+ */
+final class FileCapabilities {
+
+  static final FileCapabilities NONE = new FileCapabilities(false, false, false, false);
+
+  private final boolean directory;
+  private final boolean deletable;
+  private final boolean modifiable;
+  private final boolean creatable;
+
+  FileCapabilities(boolean directory, boolean deletable, boolean modifiable, boolean creatable) {
+    this.directory = directory;
+    this.deletable = deletable;
+    this.modifiable = modifiable;
+    this.creatable = creatable;
+  }
+
+  boolean isDirectory() {
+    return directory;
+  }
+
+  boolean canMove() {
+    return deletable;
+  }
+
+  boolean canDelete() {
+    return deletable;
+  }
+
+  boolean canModify() {
+    return modifiable;
+  }
+
+  boolean canCreate() {
+    return creatable;
+  }
+
+  boolean hasAny() {
+    return deletable || modifiable || creatable;
+  }
+
+  /**
+   * Passes the name and the href of every link of the {@link EditorResource} that is permitted for the given file to
+   * the consumer.
+   */
+  void forEachLink(NamespaceAndName namespaceAndName, FileObject fileObject, LinkBuilder linkBuilder, BiConsumer<String, String> consumer) {
+    if (canMove()) {
+      consumer.accept("move", createLink("move", fileObject.getPath(), namespaceAndName, linkBuilder));
+    }
+    if (canCreate()) {
+      consumer.accept("create", createLink("create", fileObject.getPath(), namespaceAndName, linkBuilder));
+    }
+    if (canModify()) {
+      // TODO fix strange api: modify parent?
+      consumer.accept("modify", createLink("modify", fileObject.getParentPath(), namespaceAndName, linkBuilder));
+      if (!directory) {
+        consumer.accept("patch", createLink("patch", fileObject.getPath(), namespaceAndName, linkBuilder));
+        consumer.accept("open", createLink("open", fileObject.getPath(), namespaceAndName, linkBuilder));
+      }
+    }
+    if (canDelete() && !directory) {
+      consumer.accept("delete", createLink("delete", fileObject.getPath(), namespaceAndName, linkBuilder));
+    }
+  }
+
+  private static String createLink(String method, String path, NamespaceAndName namespaceAndName, LinkBuilder linkBuilder) {
+    return linkBuilder.method(method).parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), path).href();
+  }
+}
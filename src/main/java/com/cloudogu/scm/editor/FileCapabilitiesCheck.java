@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.base.Strings;
+import sonia.scm.NotFoundException;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+/**
+ * Decides which changes the current user may apply to a file or directory, taking the preconditions of the editor,
+ * file locks and the change guards into account.
+ */
+class FileCapabilitiesCheck {
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final EditorPreconditions editorPreconditions;
+  private final ChangeGuardCheck changeGuardCheck;
+  private final Provider<EditabilityContext> editabilityContext;
+
+  @Inject
+  FileCapabilitiesCheck(RepositoryServiceFactory repositoryServiceFactory, EditorPreconditions editorPreconditions, ChangeGuardCheck changeGuardCheck, Provider<EditabilityContext> editabilityContext) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.editorPreconditions = editorPreconditions;
+    this.changeGuardCheck = changeGuardCheck;
+    this.editabilityContext = editabilityContext;
+  }
+
+  /**
+   * Checks a single path on its own, without a browser result of a listing.
+   */
+  FileCapabilities check(NamespaceAndName namespaceAndName, String revision, String path) throws IOException {
+    BrowserResult browserResult;
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      browserResult = browse(repositoryService, revision, path);
+    }
+    if (browserResult == null || browserResult.getFile() == null) {
+      throw notFound(entity("Path", path).in(namespaceAndName));
+    }
+    // the children of a directory are not of interest here and should not be checked by the guards
+    browserResult.getFile().setChildren(emptyList());
+    return check(namespaceAndName, browserResult, browserResult.getFile());
+  }
+
+  /**
+   * Checks many paths at once. The parent directory of each path is read only once, and the preconditions and the
+   * guards are checked for all paths together. Paths that do not exist have no capabilities.
+   *
+   * @return the capabilities for each of the given paths
+   */
+  Map<String, FileCapabilities> check(NamespaceAndName namespaceAndName, String revision, Collection<String> paths) throws IOException {
+    Map<String, List<String>> pathsByParent = paths
+      .stream()
+      .distinct()
+      .collect(groupingBy(path -> parentOf(normalize(path)), LinkedHashMap::new, toList()));
+
+    Map<String, FileObject> files = new LinkedHashMap<>();
+    BrowserResult anyParent = null;
+    try (RepositoryService repositoryService = repositoryServiceFactory.create(namespaceAndName)) {
+      for (Map.Entry<String, List<String>> entry : pathsByParent.entrySet()) {
+        BrowserResult parent = browseIfExists(repositoryService, revision, entry.getKey());
+        if (parent != null && parent.getFile() != null) {
+          anyParent = parent;
+          Map<String, FileObject> filesByPath = indexByPath(parent.getFile());
+          for (String path : entry.getValue()) {
+            FileObject file = filesByPath.get(normalize(path));
+            if (file != null) {
+              files.put(path, file);
+            }
+          }
+        }
+      }
+    }
+
+    Map<String, FileCapabilities> capabilities = new LinkedHashMap<>();
+    BrowserResult listing = anyParent == null ? null : createListing(anyParent, files.values());
+    for (String path : paths) {
+      FileObject file = files.get(path);
+      capabilities.put(path, file == null ? FileCapabilities.NONE : check(namespaceAndName, listing, file));
+    }
+    return capabilities;
+  }
+
+  /**
+   * Creates a browser result containing all found files as children, so that the guards are asked only once for all
+   * of them. The listing itself has no path, so that it is not checked on its own.
+   */
+  private BrowserResult createListing(BrowserResult parent, Collection<FileObject> files) {
+    FileObject directory = new FileObject();
+    directory.setDirectory(true);
+    directory.setChildren(new ArrayList<>(files));
+    return new BrowserResult(parent.getRevision(), parent.getRequestedRevision(), directory, parent.isModifiable());
+  }
+
+  private Map<String, FileObject> indexByPath(FileObject directory) {
+    Map<String, FileObject> filesByPath = new HashMap<>();
+    filesByPath.put(normalize(Strings.nullToEmpty(directory.getPath())), directory);
+    directory.getChildren().forEach(child -> filesByPath.put(normalize(child.getPath()), child));
+    return filesByPath;
+  }
+
+  private BrowserResult browseIfExists(RepositoryService repositoryService, String revision, String path) throws IOException {
+    try {
+      return browse(repositoryService, revision, path);
+    } catch (NotFoundException e) {
+      return null;
+    }
+  }
+
+  private BrowserResult browse(RepositoryService repositoryService, String revision, String path) throws IOException {
+    BrowseCommandBuilder browseCommand = repositoryService.getBrowseCommand()
+      .setPath(path)
+      .setDisableLastCommit(true)
+      .setDisableSubRepositoryDetection(true);
+    if (!Strings.isNullOrEmpty(revision)) {
+      browseCommand.setRevision(revision);
+    }
+    return browseCommand.getBrowserResult();
+  }
+
+  private static String normalize(String path) {
+    String normalized = path;
+    while (normalized.startsWith("/")) {
+      normalized = normalized.substring(1);
+    }
+    while (normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return normalized;
+  }
+
+  private static String parentOf(String path) {
+    int index = path.lastIndexOf('/');
+    return index < 0 ? "" : path.substring(0, index);
+  }
+
+  /**
+   * Checks a file object of the given browser result. The guards are checked for all matching paths of the browser
+   * result at once, so that further checks for other children of the same browser result are cheap.
+   */
+  FileCapabilities check(NamespaceAndName namespaceAndName, BrowserResult browserResult, FileObject fileObject) {
+    if (!editorPreconditions.isEditable(namespaceAndName, browserResult) || !isNotLockedByOthers(namespaceAndName, fileObject)) {
+      return FileCapabilities.NONE;
+    }
+    boolean deletable = isNotRoot(fileObject) && isDeletable(namespaceAndName, browserResult, fileObject);
+    if (fileObject.isDirectory()) {
+      return new FileCapabilities(true, deletable, false, canCreateFilesIn(namespaceAndName, browserResult, fileObject));
+    }
+    return new FileCapabilities(false, deletable, isModifiable(namespaceAndName, browserResult, fileObject), false);
+  }
+
+  private boolean isNotLockedByOthers(NamespaceAndName namespaceAndName, FileObject fileObject) {
+    return fileObject.isDirectory() || editorPreconditions.isUnlockedOrLockedByMe(namespaceAndName, fileObject.getPath());
+  }
+
+  private boolean isDeletable(NamespaceAndName namespaceAndName, BrowserResult browserResult, FileObject fileObject) {
+    return getObstacles(browserResult, fileObject, ChangeKind.DELETE, this::isNotRoot,
+      paths -> changeGuardCheck.isDeletableForEach(namespaceAndName, browserResult.getRequestedRevision(), paths)).isEmpty();
+  }
+
+  private boolean isModifiable(NamespaceAndName namespaceAndName, BrowserResult browserResult, FileObject fileObject) {
+    return getObstacles(browserResult, fileObject, ChangeKind.MODIFY, file -> !file.isDirectory(),
+      paths -> changeGuardCheck.isModifiableForEach(namespaceAndName, browserResult.getRequestedRevision(), paths)).isEmpty();
+  }
+
+  private boolean canCreateFilesIn(NamespaceAndName namespaceAndName, BrowserResult browserResult, FileObject fileObject) {
+    return getObstacles(browserResult, fileObject, ChangeKind.CREATE, FileObject::isDirectory,
+      paths -> changeGuardCheck.canCreateFilesInEach(namespaceAndName, browserResult.getRequestedRevision(), paths)).isEmpty();
+  }
+
+  /**
+   * The guards are checked for all matching paths of the browser result at once. Only file objects that are not part
+   * of the browser result itself are checked separately.
+   */
+  private Collection<ChangeObstacle> getObstacles(BrowserResult browserResult,
+                                                  FileObject fileObject,
+                                                  ChangeKind kind,
+                                                  Predicate<FileObject> relevantFiles,
+                                                  Function<Collection<String>, Map<String, Collection<ChangeObstacle>>> check) {
+    Map<String, Collection<ChangeObstacle>> obstacles = editabilityContext.get()
+      .getObstacles(browserResult, kind, () -> check.apply(collectPaths(browserResult, relevantFiles)));
+    Collection<ChangeObstacle> obstaclesForFile = obstacles.get(fileObject.getPath());
+    if (obstaclesForFile != null) {
+      return obstaclesForFile;
+    }
+    return check.apply(singleton(fileObject.getPath())).getOrDefault(fileObject.getPath(), emptyList());
+  }
+
+  private Collection<String> collectPaths(BrowserResult browserResult, Predicate<FileObject> relevantFiles) {
+    Collection<String> paths = new ArrayList<>();
+    FileObject file = browserResult.getFile();
+    if (file != null) {
+      addPathIfRelevant(paths, file, relevantFiles);
+      file.getChildren().forEach(child -> addPathIfRelevant(paths, child, relevantFiles));
+    }
+    return paths;
+  }
+
+  private void addPathIfRelevant(Collection<String> paths, FileObject file, Predicate<FileObject> relevantFiles) {
+    if (file.getPath() != null && relevantFiles.test(file)) {
+      paths.add(file.getPath());
+    }
+  }
+
+  private boolean isNotRoot(FileObject fileObject) {
+    return !fileObject.getPath().equals("") && !fileObject.getPath().equals("/");
+  }
+}
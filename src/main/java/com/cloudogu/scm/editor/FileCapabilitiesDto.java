@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import de.otto.edison.hal.HalRepresentation;
+import de.otto.edison.hal.Links;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@SuppressWarnings("java:S2160") // we do not need equals for dto
+public class FileCapabilitiesDto extends HalRepresentation {
+  private String path;
+  private boolean directory;
+  private boolean move;
+  private boolean delete;
+  private boolean modify;
+  private boolean create;
+
+  FileCapabilitiesDto(Links links, String path, FileCapabilities capabilities) {
+    super(links);
+    this.path = path;
+    this.directory = capabilities.isDirectory();
+    this.move = capabilities.canMove();
+    this.delete = capabilities.canDelete();
+    this.modify = capabilities.canModify();
+    this.create = capabilities.canCreate();
+  }
+}
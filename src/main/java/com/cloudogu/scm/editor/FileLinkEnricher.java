@@ -16,6 +16,8 @@
 
 package com.cloudogu.scm.editor;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import sonia.scm.api.v2.resources.Enrich;
 import sonia.scm.api.v2.resources.HalAppender;
 import sonia.scm.api.v2.resources.HalEnricher;
@@ -29,83 +31,71 @@ import sonia.scm.repository.NamespaceAndName;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
+import java.net.URLEncoder;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Appends the links for the possible changes to each file object. If the system property
+ * <code>scm.editor.lazyLinks</code> is set to <code>true</code>, these links are left out, and the possible changes
+ * are resolved for a single file on demand with the templated <code>editorCapabilities</code> link of the browser
+ * result instead (see {@link BrowserResultLinkEnricher} and
+ * {@link EditorResource#getCapabilities(String, String, String, String)}). Directories get an <code>archive</code> link
+ * to download them as zip at the revision of the browser result in both cases.
+ */
 @Extension
 @Enrich(FileObject.class)
 public class FileLinkEnricher implements HalEnricher {
 
+  static final String LAZY_LINKS_PROPERTY = "scm.editor.lazyLinks";
+
   private final Provider<ScmPathInfoStore> scmPathInfoStore;
-  private final EditorPreconditions editorPreconditions;
-  private final ChangeGuardCheck changeGuardCheck;
+  private final FileCapabilitiesCheck capabilitiesCheck;
+  private final EditorMetrics metrics;
+  private final boolean lazyLinks;
 
   @Inject
-  public FileLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, EditorPreconditions editorPreconditions, ChangeGuardCheck changeGuardCheck) {
+  public FileLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, FileCapabilitiesCheck capabilitiesCheck, EditorMetrics metrics) {
+    this(scmPathInfoStore, capabilitiesCheck, metrics, Boolean.getBoolean(LAZY_LINKS_PROPERTY));
+  }
+
+  @VisibleForTesting
+  FileLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, FileCapabilitiesCheck capabilitiesCheck, EditorMetrics metrics, boolean lazyLinks) {
     this.scmPathInfoStore = scmPathInfoStore;
-    this.editorPreconditions = editorPreconditions;
-    this.changeGuardCheck = changeGuardCheck;
+    this.capabilitiesCheck = capabilitiesCheck;
+    this.metrics = metrics;
+    this.lazyLinks = lazyLinks;
   }
 
   @Override
   public void enrich(HalEnricherContext context, HalAppender appender) {
+    metrics.timeEnrichment("file", () -> enrichFile(context, appender));
+  }
+
+  private void enrichFile(HalEnricherContext context, HalAppender appender) {
     NamespaceAndName namespaceAndName = context.oneRequireByType(NamespaceAndName.class);
     BrowserResult browserResult = context.oneRequireByType(BrowserResult.class);
     FileObject fileObject = context.oneRequireByType(FileObject.class);
-    if (editorPreconditions.isEditable(namespaceAndName, browserResult)) {
-      appendLinks(appender, fileObject, namespaceAndName, browserResult.getRequestedRevision());
-    }
-  }
-
-  private void appendLinks(HalAppender appender, FileObject fileObject, NamespaceAndName namespaceAndName, String revision) {
-    if (isNotRoot(fileObject) && changeGuardCheck.isDeletable(namespaceAndName, revision, fileObject.getPath()).isEmpty()) {
-      LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
-      appender.appendLink("move", createMoveLink(fileObject, namespaceAndName, linkBuilder));
-    }
     if (fileObject.isDirectory()) {
-      appendDirectoryLinks(appender, fileObject, namespaceAndName, revision);
-    } else {
-      appendFileLinks(appender, fileObject, namespaceAndName, revision);
+      appender.appendLink("archive", createArchiveLink(namespaceAndName, browserResult, fileObject));
     }
-  }
-
-  private void appendDirectoryLinks(HalAppender appender, FileObject fileObject, NamespaceAndName namespaceAndName, String revision) {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
-    if (changeGuardCheck.canCreateFilesIn(namespaceAndName, revision, fileObject.getPath()).isEmpty()) {
-      appender.appendLink("create", createCreateLink(fileObject, namespaceAndName, linkBuilder));
+    if (!lazyLinks) {
+      FileCapabilities capabilities = capabilitiesCheck.check(namespaceAndName, browserResult, fileObject);
+      if (capabilities.hasAny()) {
+        LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
+        capabilities.forEachLink(namespaceAndName, fileObject, linkBuilder, appender::appendLink);
+      }
     }
   }
 
-  private void appendFileLinks(HalAppender appender, FileObject fileObject, NamespaceAndName namespaceAndName, String revision) {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class);
-    if (changeGuardCheck.isModifiable(namespaceAndName, revision, fileObject.getPath()).isEmpty()) {
-      appender.appendLink("modify", createModifyLink(fileObject, namespaceAndName, linkBuilder));
+  private String createArchiveLink(NamespaceAndName namespaceAndName, BrowserResult browserResult, FileObject fileObject) {
+    String href = new LinkBuilder(scmPathInfoStore.get().get(), EditorResource.class)
+      .method("downloadDirectory")
+      .parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), Strings.nullToEmpty(fileObject.getPath()))
+      .href();
+    if (Strings.isNullOrEmpty(browserResult.getRevision())) {
+      return href;
     }
-    if (changeGuardCheck.isDeletable(namespaceAndName, revision, fileObject.getPath()).isEmpty()) {
-      appender.appendLink("delete", createDeleteLink(fileObject, namespaceAndName, linkBuilder));
-    }
-  }
-
-  private String createCreateLink(FileObject fileObject, NamespaceAndName namespaceAndName, LinkBuilder linkBuilder) {
-    return createModifyLink("create", fileObject.getPath(), namespaceAndName, linkBuilder);
-  }
-
-  private String createDeleteLink(FileObject fileObject, NamespaceAndName namespaceAndName, LinkBuilder linkBuilder) {
-    return createModifyLink("delete", fileObject.getPath(), namespaceAndName, linkBuilder);
-  }
-
-  private String createMoveLink(FileObject fileObject, NamespaceAndName namespaceAndName, LinkBuilder linkBuilder) {
-    return createModifyLink("move", fileObject.getPath(), namespaceAndName, linkBuilder);
-  }
-
-  private String createModifyLink(FileObject fileObject, NamespaceAndName namespaceAndName, LinkBuilder linkBuilder) {
-    // TODO fix strange api: modify parent?
-    return createModifyLink("modify", fileObject.getParentPath(), namespaceAndName, linkBuilder);
-  }
-
-  private String createModifyLink(String method, String path, NamespaceAndName namespaceAndName, LinkBuilder linkBuilder) {
-    return linkBuilder.method(method).parameters(namespaceAndName.getNamespace(), namespaceAndName.getName(), path).href();
-  }
-
-  private boolean isNotRoot(FileObject fileObject) {
-    return !fileObject.getPath().equals("") && !fileObject.getPath().equals("/");
+    return href + "?revision=" + URLEncoder.encode(browserResult.getRevision(), UTF_8);
   }
 }
@@ -30,6 +30,10 @@ import java.util.Map;
 public class FileMappingCommitDto extends CommitDto {
 
   private Map<String, String> names;
+  private boolean skipUnchanged;
+  private Map<String, String> checksums;
+  private Map<String, String> contentEncodings;
+  private boolean expandArchives;
 
   public FileMappingCommitDto(@NotNull @Size(min = 1) String commitMessage, String branch, String expectedRevision, Map<String, String> names) {
     super(commitMessage, branch, expectedRevision);
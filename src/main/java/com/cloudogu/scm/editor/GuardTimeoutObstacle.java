@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+/**
+ * Obstacle used when a {@link ChangeGuard} did not respond in time and the evaluation is configured to fail closed.
+ */
+class GuardTimeoutObstacle implements ChangeObstacle {
+
+  static final String KEY = "scm-editor-plugin.guardTimeout";
+
+  private final String guard;
+  private final long timeoutMillis;
+
+  GuardTimeoutObstacle(ChangeGuard guard, long timeoutMillis) {
+    this.guard = guard.getClass().getName();
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  @Override
+  public String getMessage() {
+    return "change guard " + guard + " did not respond within " + timeoutMillis + " ms";
+  }
+
+  @Override
+  public String getKey() {
+    return KEY;
+  }
+}
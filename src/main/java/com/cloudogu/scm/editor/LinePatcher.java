@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Applies line replacements to the content of a file while it is read, so that neither the original nor the patched
+ * content has to be kept in memory completely.
+ * <br>
+ * Lines are numbered starting with 1. A line includes its line break, so that line breaks are kept as they are (no
+ * matter whether they are unix or windows line breaks). A replacement replaces the lines from <code>from</code> to
+ * <code>to</code> (both inclusive) with its content. The content is written as it is, so it has to end with a line
+ * break if the line after the replaced lines should start in a new line. To insert content before line
+ * <code>n</code> without replacing anything, <code>to</code> has to be <code>n - 1</code>; to append content at the end
+ * of a file with <code>n</code> lines, <code>from</code> has to be <code>n + 1</code>. A replacement without content
+ * deletes the lines. The replacements have to be sorted and must not overlap.
+ */
+class LinePatcher {
+
+  private final String path;
+  private final List<LineReplacementDto> replacements;
+
+  LinePatcher(String path, List<LineReplacementDto> replacements) {
+    this.path = path;
+    this.replacements = replacements;
+    validate();
+  }
+
+  private void validate() {
+    LineReplacementDto previous = null;
+    for (LineReplacementDto replacement : replacements) {
+      if (replacement.getFrom() < 1 || replacement.getTo() < replacement.getFrom() - 1) {
+        throw new PatchNotApplicableException(path, "invalid line range " + replacement.getFrom() + " to " + replacement.getTo());
+      }
+      if (previous != null && (replacement.getFrom() <= previous.getFrom() || replacement.getFrom() <= previous.getTo())) {
+        throw new PatchNotApplicableException(path, "replacements have to be sorted and must not overlap");
+      }
+      previous = replacement;
+    }
+  }
+
+  void apply(InputStream original, OutputStream target) throws IOException {
+    Iterator<LineReplacementDto> pending = replacements.iterator();
+    LineReplacementDto next = pending.hasNext() ? pending.next() : null;
+    int skipUntil = 0;
+    int line = 1;
+
+    InputStream input = new BufferedInputStream(original);
+    int b = input.read();
+    while (b >= 0) {
+      if (next != null && next.getFrom() == line) {
+        write(next, target);
+        skipUntil = next.getTo();
+        next = pending.hasNext() ? pending.next() : null;
+      }
+      boolean skip = line <= skipUntil;
+      while (b >= 0) {
+        if (!skip) {
+          target.write(b);
+        }
+        int current = b;
+        b = input.read();
+        if (current == '\n') {
+          break;
+        }
+      }
+      ++line;
+    }
+
+    // line is now the number of the line after the last one, where content can be appended
+    if (next != null && next.getFrom() == line && next.getTo() == line - 1) {
+      write(next, target);
+      next = pending.hasNext() ? pending.next() : null;
+    }
+    if (next != null || skipUntil >= line) {
+      throw new PatchNotApplicableException(path, "replacements exceed the " + (line - 1) + " lines of the file");
+    }
+  }
+
+  private void write(LineReplacementDto replacement, OutputStream target) throws IOException {
+    if (replacement.getContent() != null) {
+      target.write(replacement.getContent().getBytes(UTF_8));
+    }
+  }
+}
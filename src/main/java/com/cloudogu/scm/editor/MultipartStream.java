@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the parts of a <code>multipart/form-data</code> body one after the other directly from the request stream.
+ * Other than RESTEasy's multipart provider, this does not buffer any part in memory or in temporary files. Therefore
+ * the body of a part can only be read until the next part is requested.
+ */
+class MultipartStream {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_HEADER_LINE_LENGTH = 8 * 1024;
+
+  private final InputStream input;
+  private final byte[] delimiter;
+  private final byte[] buffer;
+
+  private int head;
+  private int tail;
+  private boolean endOfInput;
+  private boolean finished;
+
+  private PartInputStream currentBody;
+
+  MultipartStream(InputStream input, String boundary) {
+    this.input = input;
+    this.delimiter = ("\r\n--" + boundary).getBytes(US_ASCII);
+    this.buffer = new byte[BUFFER_SIZE + delimiter.length];
+    // the first delimiter is not preceded by a line break, so we simply add one to read the preamble like a part
+    buffer[tail++] = '\r';
+    buffer[tail++] = '\n';
+    this.currentBody = new PartInputStream();
+  }
+
+  /**
+   * Skips the rest of the current part and returns the next one, or an empty optional if the closing delimiter has
+   * been reached.
+   */
+  Optional<Part> nextPart() throws IOException {
+    if (finished) {
+      return Optional.empty();
+    }
+    currentBody.skipRemaining();
+    if (isClosingDelimiter()) {
+      finished = true;
+      return Optional.empty();
+    }
+    readLine();
+    Map<String, String> headers = readHeaders();
+    currentBody = new PartInputStream();
+    return Optional.of(new Part(headers, currentBody));
+  }
+
+  private boolean isClosingDelimiter() throws IOException {
+    if (!ensure(2)) {
+      throw new IOException("unexpected end of multipart stream");
+    }
+    if (buffer[head] == '-' && buffer[head + 1] == '-') {
+      head += 2;
+      return true;
+    }
+    return false;
+  }
+
+  private Map<String, String> readHeaders() throws IOException {
+    Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    String line = readLine();
+    while (!line.isEmpty()) {
+      int separator = line.indexOf(':');
+      if (separator > 0) {
+        headers.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+      }
+      line = readLine();
+    }
+    return headers;
+  }
+
+  private String readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (true) {
+      if (!ensure(1)) {
+        throw new IOException("unexpected end of multipart stream");
+      }
+      byte b = buffer[head++];
+      if (b == '\n') {
+        break;
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+      if (line.size() > MAX_HEADER_LINE_LENGTH) {
+        throw new IOException("header line of multipart stream too long");
+      }
+    }
+    return line.toString(UTF_8);
+  }
+
+  private boolean ensure(int count) throws IOException {
+    while (tail - head < count && !endOfInput) {
+      fill();
+    }
+    return tail - head >= count;
+  }
+
+  private void fill() throws IOException {
+    if (head > 0) {
+      System.arraycopy(buffer, head, buffer, 0, tail - head);
+      tail -= head;
+      head = 0;
+    }
+    int read = input.read(buffer, tail, buffer.length - tail);
+    if (read < 0) {
+      endOfInput = true;
+    } else {
+      tail += read;
+    }
+  }
+
+  private int indexOfDelimiter(int from, int to) {
+    for (int i = from; i <= to; ++i) {
+      if (isDelimiterAt(i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean isDelimiterAt(int index) {
+    for (int i = 0; i < delimiter.length; ++i) {
+      if (buffer[index + i] != delimiter[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static class Part {
+
+    private final Map<String, String> headers;
+    private final InputStream body;
+
+    private Part(Map<String, String> headers, InputStream body) {
+      this.headers = headers;
+      this.body = body;
+    }
+
+    String getHeader(String name) {
+      return headers.get(name);
+    }
+
+    Optional<String> getName() {
+      return getContentDispositionParameter("name");
+    }
+
+    Optional<String> getFileName() {
+      return getContentDispositionParameter("filename");
+    }
+
+    InputStream getBody() {
+      return body;
+    }
+
+    private Optional<String> getContentDispositionParameter(String parameter) {
+      String contentDisposition = headers.get("Content-Disposition");
+      if (contentDisposition == null) {
+        return Optional.empty();
+      }
+      for (String element : contentDisposition.split(";")) {
+        String[] keyAndValue = element.trim().split("=", 2);
+        if (keyAndValue.length == 2 && keyAndValue[0].trim().equalsIgnoreCase(parameter)) {
+          return Optional.of(removeQuotes(keyAndValue[1].trim()));
+        }
+      }
+      return Optional.empty();
+    }
+
+    private String removeQuotes(String value) {
+      if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+        return value.substring(1, value.length() - 1);
+      }
+      return value;
+    }
+  }
+
+  private class PartInputStream extends InputStream {
+
+    private boolean done;
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int read = read(single, 0, 1);
+      return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (length == 0) {
+        return 0;
+      }
+      boolean delimiterFits = ensure(delimiter.length);
+      int searchEnd = Math.min(head + length, tail - delimiter.length);
+      int index = delimiterFits ? indexOfDelimiter(head, searchEnd) : -1;
+      if (index == head) {
+        head += delimiter.length;
+        done = true;
+        return -1;
+      }
+      int available;
+      if (index > head) {
+        available = index - head;
+      } else if (!endOfInput) {
+        available = tail - head - delimiter.length + 1;
+      } else if (searchEnd < tail - delimiter.length) {
+        available = length;
+      } else {
+        throw new IOException("unexpected end of multipart stream");
+      }
+      int count = Math.min(length, available);
+      System.arraycopy(buffer, head, target, offset, count);
+      head += count;
+      return count;
+    }
+
+    void skipRemaining() throws IOException {
+      byte[] skipBuffer = new byte[BUFFER_SIZE];
+      while (read(skipBuffer, 0, skipBuffer.length) >= 0) {
+        // skip
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary copies of uploaded files, so that they can be committed in the background after the request has been
+ * finished. The copies are deleted, when this is closed.
+ */
+class SpooledFiles implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpooledFiles.class);
+
+  private final List<SpooledFile> files = new ArrayList<>();
+
+  void add(String fileName, InputStream content) throws IOException {
+    Path file = Files.createTempFile("scm-editor-upload", ".tmp");
+    files.add(new SpooledFile(fileName, file));
+    try (InputStream stream = content) {
+      Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  int size() {
+    return files.size();
+  }
+
+  void forEach(FileConsumer consumer) throws IOException {
+    for (SpooledFile file : files) {
+      try (InputStream stream = Files.newInputStream(file.path())) {
+        consumer.accept(file.name(), stream);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    for (SpooledFile file : files) {
+      try {
+        Files.deleteIfExists(file.path());
+      } catch (IOException e) {
+        LOG.warn("could not delete spooled upload {}", file.path(), e);
+      }
+    }
+    files.clear();
+  }
+
+  @FunctionalInterface
+  interface FileConsumer {
+    void accept(String fileName, InputStream content) throws IOException;
+  }
+
+  private record SpooledFile(String name, Path path) {
+  }
+}
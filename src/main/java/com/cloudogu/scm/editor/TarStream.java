@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the regular files of a tar archive one after the other directly from a stream, like
+ * {@link MultipartStream} does for multipart bodies. Therefore the content of an entry can only be read until the
+ * next entry is requested. Names are taken from ustar headers, GNU long name entries and pax extended headers; all
+ * entries other than regular files (like directories or links) are skipped.
+ */
+class TarStream {
+
+  private static final int BLOCK_SIZE = 512;
+  private static final int MAX_EXTENDED_HEADER_SIZE = 1024 * 1024;
+
+  private final InputStream input;
+
+  private EntryInputStream currentContent;
+
+  TarStream(InputStream input) {
+    this.input = input;
+  }
+
+  /**
+   * Skips the rest of the current entry and returns the next regular file, or an empty optional if the end of the
+   * archive has been reached.
+   */
+  Optional<Entry> nextEntry() throws IOException {
+    if (currentContent != null) {
+      currentContent.skipRemaining();
+    }
+    String extendedName = null;
+    while (true) {
+      byte[] header = readBlock();
+      if (header == null || isEmpty(header)) {
+        return Optional.empty();
+      }
+      verifyChecksum(header);
+      long size = parseNumber(header, 124, 12);
+      byte type = header[156];
+      if (type == 'L') {
+        extendedName = cString(readExtendedHeader(size), 0, (int) size);
+      } else if (type == 'x') {
+        String path = parsePaxPath(readExtendedHeader(size));
+        extendedName = path == null ? extendedName : path;
+      } else {
+        currentContent = new EntryInputStream(size);
+        if (type == '0' || type == 0 || type == '7') {
+          return Optional.of(new Entry(extendedName == null ? name(header) : extendedName, currentContent));
+        }
+        currentContent.skipRemaining();
+        extendedName = null;
+      }
+    }
+  }
+
+  private String name(byte[] header) {
+    String name = cString(header, 0, 100);
+    // only posix archives use the prefix field, gnu archives store other data at this position
+    if (cString(header, 257, 6).equals("ustar")) {
+      String prefix = cString(header, 345, 155);
+      if (!prefix.isEmpty()) {
+        return prefix + "/" + name;
+      }
+    }
+    return name;
+  }
+
+  private byte[] readExtendedHeader(long size) throws IOException {
+    if (size > MAX_EXTENDED_HEADER_SIZE) {
+      throw new IOException("extended tar header too large");
+    }
+    EntryInputStream content = new EntryInputStream(size);
+    byte[] data = content.readAllBytes();
+    content.skipRemaining();
+    return data;
+  }
+
+  /**
+   * Pax records have the form <code>"length key=value\n"</code>, where length is the number of bytes of the whole
+   * record.
+   */
+  private String parsePaxPath(byte[] data) throws IOException {
+    String path = null;
+    int position = 0;
+    while (position < data.length) {
+      int space = position;
+      while (space < data.length && data[space] != ' ') {
+        ++space;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(new String(data, position, space - position, US_ASCII));
+      } catch (NumberFormatException e) {
+        throw new IOException("invalid pax header", e);
+      }
+      if (length <= space - position || position + length > data.length) {
+        throw new IOException("invalid pax header");
+      }
+      String record = new String(data, space + 1, position + length - space - 2, UTF_8);
+      int separator = record.indexOf('=');
+      if (separator > 0 && record.substring(0, separator).equals("path")) {
+        path = record.substring(separator + 1);
+      }
+      position += length;
+    }
+    return path;
+  }
+
+  private void verifyChecksum(byte[] header) throws IOException {
+    long expected = parseNumber(header, 148, 8);
+    long unsigned = 0;
+    long signed = 0;
+    for (int i = 0; i < BLOCK_SIZE; ++i) {
+      byte value = i >= 148 && i < 156 ? (byte) ' ' : header[i];
+      unsigned += value & 0xff;
+      signed += value;
+    }
+    if (expected != unsigned && expected != signed) {
+      throw new IOException("invalid tar header");
+    }
+  }
+
+  /**
+   * Numbers are stored as octal strings or, if they are too large, in base-256 marked by the highest bit.
+   */
+  private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+    if ((header[offset] & 0x80) != 0) {
+      long value = header[offset] & 0x7f;
+      for (int i = offset + 1; i < offset + length; ++i) {
+        value = (value << 8) | (header[i] & 0xff);
+      }
+      return value;
+    }
+    long value = 0;
+    for (int i = offset; i < offset + length; ++i) {
+      byte digit = header[i];
+      if (digit == 0 || digit == ' ') {
+        if (value > 0) {
+          break;
+        }
+      } else if (digit >= '0' && digit <= '7') {
+        value = value * 8 + (digit - '0');
+      } else {
+        throw new IOException("invalid number in tar header");
+      }
+    }
+    return value;
+  }
+
+  private static String cString(byte[] data, int offset, int length) {
+    int end = offset;
+    while (end < offset + length && data[end] != 0) {
+      ++end;
+    }
+    return new String(data, offset, end - offset, UTF_8);
+  }
+
+  private static boolean isEmpty(byte[] block) {
+    for (byte value : block) {
+      if (value != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private byte[] readBlock() throws IOException {
+    byte[] block = new byte[BLOCK_SIZE];
+    int read = input.readNBytes(block, 0, BLOCK_SIZE);
+    if (read == 0) {
+      return null;
+    } else if (read < BLOCK_SIZE) {
+      throw new IOException("unexpected end of tar archive");
+    }
+    return block;
+  }
+
+  static class Entry {
+
+    private final String name;
+    private final InputStream content;
+
+    private Entry(String name, InputStream content) {
+      this.name = name;
+      this.content = content;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    InputStream getContent() {
+      return content;
+    }
+  }
+
+  private class EntryInputStream extends InputStream {
+
+    private final long padding;
+    private long remaining;
+    private boolean done;
+
+    EntryInputStream(long size) {
+      this.remaining = size;
+      this.padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int read = read(single, 0, 1);
+      return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      if (length == 0) {
+        return 0;
+      }
+      int read = input.read(target, offset, (int) Math.min(length, remaining));
+      if (read < 0) {
+        throw new IOException("unexpected end of tar archive");
+      }
+      remaining -= read;
+      return read;
+    }
+
+    void skipRemaining() throws IOException {
+      if (done) {
+        return;
+      }
+      done = true;
+      long toSkip = remaining + padding;
+      remaining = 0;
+      input.skipNBytes(toSkip);
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.io.ByteStreams;
+import sonia.scm.repository.NamespaceAndName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * A file, that is uploaded in multiple chunks to the staging directory before it is committed. The chunks have to be
+ * sent one after the other, each starting at the current offset. The SHA-256 checksum of the received content is
+ * updated with every chunk, so that the complete file does not have to be read again to verify it. No more than the
+ * announced size (or the maximum size, if no size has been announced) is written to the staged file.
+ */
+class UploadSession {
+
+  private static final String ALGORITHM = "SHA-256";
+
+  private final String id;
+  private final NamespaceAndName namespaceAndName;
+  private final String principal;
+  private final String path;
+  private final String fileName;
+  private final boolean modify;
+  private final long size;
+  private final Path file;
+  private final long maxSize;
+
+  private MessageDigest digest;
+  private long offset;
+  private Instant lastAccess = Instant.now();
+
+  UploadSession(String id, NamespaceAndName namespaceAndName, String principal, String path, String fileName, boolean modify, long size, Path file, long maxSize) {
+    this.id = id;
+    this.namespaceAndName = namespaceAndName;
+    this.principal = principal;
+    this.path = path;
+    this.fileName = fileName;
+    this.modify = modify;
+    this.size = size;
+    this.file = file;
+    this.maxSize = maxSize;
+    this.digest = createDigest();
+  }
+
+  String getId() {
+    return id;
+  }
+
+  NamespaceAndName getNamespaceAndName() {
+    return namespaceAndName;
+  }
+
+  String getPrincipal() {
+    return principal;
+  }
+
+  String getPath() {
+    return path;
+  }
+
+  String getFileName() {
+    return fileName;
+  }
+
+  boolean isModify() {
+    return modify;
+  }
+
+  /**
+   * The size announced for the complete file, or <code>-1</code> if it is unknown.
+   */
+  long getSize() {
+    return size;
+  }
+
+  Path getFile() {
+    return file;
+  }
+
+  synchronized long getOffset() {
+    return offset;
+  }
+
+  synchronized Instant getLastAccess() {
+    return lastAccess;
+  }
+
+  synchronized void touch() {
+    lastAccess = Instant.now();
+  }
+
+  /**
+   * Returns the SHA-256 checksum of the content received so far as hex string.
+   */
+  synchronized String getChecksum() {
+    return HexFormat.of().formatHex(cloneDigest(digest).digest());
+  }
+
+  /**
+   * Appends the chunk to the staged file. If the chunk does not start at the current offset, if its checksum does not
+   * match the given one or if it exceeds the announced size or the maximum size, it is discarded. The chunk is read
+   * only up to one byte beyond the remaining size, so that an oversized chunk is not stored completely.
+   *
+   * @param chunkOffset   The position of the chunk in the complete file.
+   * @param chunk         The content of the chunk.
+   * @param chunkChecksum The expected SHA-256 checksum of the chunk as hex string (optional).
+   * @return The new offset.
+   */
+  synchronized long append(long chunkOffset, InputStream chunk, String chunkChecksum) throws IOException {
+    if (chunkOffset != offset) {
+      throw new UploadSessionException(this, "chunk has to start at offset " + offset + ", not at " + chunkOffset);
+    }
+    long remaining = (size >= 0 ? size : maxSize) - offset;
+    MessageDigest chunkDigest = createDigest();
+    MessageDigest newDigest = cloneDigest(digest);
+    long written;
+    try (InputStream digestingStream = new DigestInputStream(new DigestInputStream(ByteStreams.limit(chunk, remaining + 1), chunkDigest), newDigest);
+         OutputStream output = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+      written = digestingStream.transferTo(output);
+    } catch (IOException | RuntimeException e) {
+      truncate();
+      throw e;
+    }
+    if (written > remaining) {
+      truncate();
+      if (size >= 0) {
+        throw new UploadSessionException(this, "chunk exceeds the announced size of " + size + " bytes");
+      }
+      throw new UploadSessionException(this, "chunk exceeds the maximum size of " + maxSize + " bytes");
+    }
+    if (chunkChecksum != null && !chunkChecksum.equalsIgnoreCase(HexFormat.of().formatHex(chunkDigest.digest()))) {
+      truncate();
+      throw new UploadSessionException(this, "checksum of chunk does not match");
+    }
+    offset += written;
+    digest = newDigest;
+    lastAccess = Instant.now();
+    return offset;
+  }
+
+  /**
+   * Checks that the file has been received completely and that it matches the given checksum (if any).
+   */
+  synchronized void verify(String checksum) {
+    if (size >= 0 && offset != size) {
+      throw new UploadSessionException(this, "upload is incomplete, received " + offset + " of " + size + " bytes");
+    }
+    if (checksum != null && !checksum.equalsIgnoreCase(getChecksum())) {
+      throw new UploadSessionException(this, "checksum of uploaded file does not match");
+    }
+  }
+
+  private void truncate() throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(offset);
+    }
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("every java platform has to support " + ALGORITHM, e);
+    }
+  }
+
+  private static MessageDigest cloneDigest(MessageDigest digest) {
+    try {
+      return (MessageDigest) digest.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("digest for " + ALGORITHM + " cannot be cloned", e);
+    }
+  }
+}
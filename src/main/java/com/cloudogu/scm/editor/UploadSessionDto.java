@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import de.otto.edison.hal.HalRepresentation;
+import de.otto.edison.hal.Links;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@SuppressWarnings("java:S2160") // we do not need equals for dto
+public class UploadSessionDto extends HalRepresentation {
+  private String id;
+  private String path;
+  private String fileName;
+  private boolean modify;
+  private long size;
+  private long offset;
+  private String checksum;
+
+  UploadSessionDto(Links links, UploadSession session) {
+    super(links);
+    this.id = session.getId();
+    this.path = session.getPath();
+    this.fileName = session.getFileName();
+    this.modify = session.isModify();
+    this.size = session.getSize();
+    this.offset = session.getOffset();
+    this.checksum = session.getChecksum();
+  }
+}
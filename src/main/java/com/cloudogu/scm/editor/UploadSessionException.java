@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import sonia.scm.BadRequestException;
+import sonia.scm.repository.NamespaceAndName;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+
+class UploadSessionException extends BadRequestException {
+
+  private static final String CODE = "DQ8Rf74071";
+
+  UploadSessionException(UploadSession session, String message) {
+    super(entity("UploadSession", session.getId()).in(session.getNamespaceAndName()).build(), message);
+  }
+
+  UploadSessionException(NamespaceAndName namespaceAndName, String message) {
+    super(entity(namespaceAndName).build(), message);
+  }
+
+  @Override
+  public String getCode() {
+    return CODE;
+  }
+}
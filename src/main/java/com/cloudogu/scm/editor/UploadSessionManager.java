@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.NamespaceAndName;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the sessions of chunked uploads. The chunks are stored in a staging directory until the upload is committed
+ * or aborted. Sessions that have not been accessed for some time are removed together with their files. Because the
+ * sessions are kept in memory only, they cannot be resumed after a restart; therefore the files left in the staging
+ * directory are deleted when the manager is created. The manager can be configured with system properties:
+ * <ul>
+ *   <li><code>scm.editor.uploads.directory</code>: the staging directory for the chunks (default: directory
+ *     <code>scm-editor-uploads</code> in the temporary directory of the system)</li>
+ *   <li><code>scm.editor.uploads.expiration</code>: time in minutes after which an unused session is removed
+ *     (default: 1440)</li>
+ *   <li><code>scm.editor.uploads.maxSize</code>: the maximum size of a single uploaded file in bytes
+ *     (default: 10737418240)</li>
+ * </ul>
+ */
+@Singleton
+public class UploadSessionManager {
+
+  static final String DIRECTORY_PROPERTY = "scm.editor.uploads.directory";
+  static final String EXPIRATION_PROPERTY = "scm.editor.uploads.expiration";
+  static final String MAX_SIZE_PROPERTY = "scm.editor.uploads.maxSize";
+
+  private static final Logger LOG = LoggerFactory.getLogger(UploadSessionManager.class);
+
+  private static final long DEFAULT_EXPIRATION = 1440;
+  private static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+  private static final String FILE_SUFFIX = ".part";
+
+  private final Path directory;
+  private final Duration expiration;
+  private final long maxSize;
+  private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+  @Inject
+  UploadSessionManager() {
+    this(
+      Paths.get(System.getProperty(DIRECTORY_PROPERTY, Paths.get(System.getProperty("java.io.tmpdir"), "scm-editor-uploads").toString())),
+      Duration.ofMinutes(Long.getLong(EXPIRATION_PROPERTY, DEFAULT_EXPIRATION)),
+      Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE)
+    );
+  }
+
+  UploadSessionManager(Path directory, Duration expiration, long maxSize) {
+    this.directory = directory;
+    this.expiration = expiration;
+    this.maxSize = maxSize;
+    deleteOrphanedFiles();
+  }
+
+  /**
+   * Creates a new session for the current user with an empty file in the staging directory.
+   *
+   * @param size The size of the complete file, or <code>-1</code> if it is unknown.
+   * @throws UploadSessionException If the size exceeds the maximum size.
+   */
+  UploadSession create(NamespaceAndName namespaceAndName, String path, String fileName, boolean modify, long size) throws IOException {
+    if (size > maxSize) {
+      throw new UploadSessionException(namespaceAndName, "file exceeds the maximum size of " + maxSize + " bytes");
+    }
+    removeExpiredSessions();
+    Files.createDirectories(directory);
+    String id = UUID.randomUUID().toString();
+    Path file = Files.createFile(directory.resolve(id + FILE_SUFFIX));
+    UploadSession session = new UploadSession(id, namespaceAndName, currentPrincipal(), path, fileName, modify, size, file, maxSize);
+    sessions.put(id, session);
+    return session;
+  }
+
+  /**
+   * Returns the session with the given id, if it has been created for the given repository by the current user.
+   */
+  Optional<UploadSession> get(NamespaceAndName namespaceAndName, String id) {
+    UploadSession session = sessions.get(id);
+    if (session == null || !session.getNamespaceAndName().equals(namespaceAndName)
+      || !Objects.equals(session.getPrincipal(), currentPrincipal())) {
+      return Optional.empty();
+    }
+    session.touch();
+    return Optional.of(session);
+  }
+
+  /**
+   * Removes the session and deletes its file.
+   */
+  void remove(UploadSession session) {
+    sessions.remove(session.getId(), session);
+    try {
+      Files.deleteIfExists(session.getFile());
+    } catch (IOException e) {
+      LOG.warn("could not delete file {} of upload session {}", session.getFile(), session.getId(), e);
+    }
+  }
+
+  /**
+   * Deletes the files of sessions from before the last restart, that can no longer be resumed.
+   */
+  private void deleteOrphanedFiles() {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+      for (Path file : files) {
+        LOG.info("deleting orphaned upload file {}", file);
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      LOG.warn("could not delete orphaned files in upload directory {}", directory, e);
+    }
+  }
+
+  private void removeExpiredSessions() {
+    Instant expired = Instant.now().minus(expiration);
+    sessions.values().stream()
+      .filter(session -> session.getLastAccess().isBefore(expired))
+      .forEach(this::remove);
+  }
+
+  private static String currentPrincipal() {
+    Subject subject = ThreadContext.getSubject();
+    if (subject == null || subject.getPrincipal() == null) {
+      return null;
+    }
+    return subject.getPrincipal().toString();
+  }
+}
@@ -21,6 +21,8 @@ import { apiClient } from "@scm-manager/ui-components";
 import { useHistory, useLocation } from "react-router-dom";
 import styled from "styled-components";
 import { extensionPoints, ExtractProps } from "@scm-manager/ui-extensions";
+import { useTranslation } from "react-i18next";
+import { useFileCapabilities } from "../capabilities";
 
 const Pointer = styled.div`
   cursor: initial;
@@ -33,20 +35,30 @@ export const FileDeleteAction: FC<ExtractProps<extensionPoints.ModalMenuProps["m
   close,
   setLoading: setExtensionLoading
 }) => {
+  const [t] = useTranslation("plugins");
   const [loading, setLoading] = useState(false);
   const history = useHistory();
   const location = useLocation();
+  const { file: changeableFile, isLoading: resolving, error: resolveError } = useFileCapabilities(file);
 
   useEffect(() => {
     if (setExtensionLoading) {
-      setExtensionLoading(loading);
+      setExtensionLoading(loading || resolving);
     }
-  }, [loading, setExtensionLoading]);
+  }, [loading, resolving, setExtensionLoading]);
+
+  useEffect(() => {
+    if (resolveError) {
+      handleExtensionError(resolveError);
+    } else if (changeableFile && !changeableFile._links.delete) {
+      handleExtensionError(new Error(t("scm-editor-plugin.errors.changeNotPermitted")));
+    }
+  }, [changeableFile, resolveError]);
 
   const deleteFile = async (commitMessage: string) => {
     setLoading(true);
     apiClient
-      .post((file._links.delete as Link).href, {
+      .post((changeableFile!._links.delete as Link).href, {
         commitMessage: commitMessage,
         branch: decodeURIComponent(revision)
       })
@@ -87,7 +99,7 @@ export const FileDeleteAction: FC<ExtractProps<extensionPoints.ModalMenuProps["m
 
   return (
     <Pointer>
-      <FileDeleteModal onClose={close} onCommit={deleteFile} file={file} loading={loading} />
+      <FileDeleteModal onClose={close} onCommit={deleteFile} file={file} loading={loading || resolving} />
     </Pointer>
   );
 };
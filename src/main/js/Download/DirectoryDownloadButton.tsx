@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+import React, { FC } from "react";
+import { useTranslation } from "react-i18next";
+import styled from "styled-components";
+import { File, Link } from "@scm-manager/ui-types";
+import { createAttributesForTesting, Icon } from "@scm-manager/ui-components";
+
+type Props = {
+  sources: File;
+};
+
+const ButtonLink = styled.a`
+  width: 50px;
+  &:hover {
+    color: #33b2e8;
+  }
+`;
+
+const DirectoryDownloadButton: FC<Props> = ({ sources }) => {
+  const [t] = useTranslation("plugins");
+  return (
+    <>
+      {sources && sources.directory && sources._links.archive && (
+        <ButtonLink
+          href={(sources._links.archive as Link).href}
+          className="button"
+          title={t("scm-editor-plugin.download.directoryTooltip")}
+          {...createAttributesForTesting("download-directory-button")}
+        >
+          <Icon name="download" color="inherit" />
+        </ButtonLink>
+      )}
+    </>
+  );
+};
+
+export default DirectoryDownloadButton;
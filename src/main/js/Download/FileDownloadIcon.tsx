@@ -28,6 +28,19 @@ type Props = {
 const FileDownloadIcon: FC<Props> = ({ repository, file }) => {
   const [t] = useTranslation("plugins");
 
+  if (file.directory) {
+    if (!file._links.archive) {
+      return null;
+    }
+    return (
+      <Tooltip message={t("scm-editor-plugin.download.directoryTooltip")} location="top">
+        <a href={(file._links.archive as Link).href} aria-label={t("scm-editor-plugin.download.directoryTooltip")}>
+          <Icon name="download" color="inherit" />
+        </a>
+      </Tooltip>
+    );
+  }
+
   return (
     <ExtensionPoint name="repos.sources.actionbar.download" props={{ repository, file }} renderAll={false}>
       <Tooltip message={t("scm-editor-plugin.download.tooltip")} location="top">
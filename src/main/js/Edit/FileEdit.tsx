@@ -16,7 +16,7 @@
 
 import React, { FC, useEffect, useRef, useState, MutableRefObject } from "react";
 import { useTranslation } from "react-i18next";
-import { Changeset, File, Link, Repository } from "@scm-manager/ui-types";
+import { Changeset, File, HalRepresentation, Link, Repository } from "@scm-manager/ui-types";
 import FileMetaData from "../FileMetaData";
 import { Breadcrumb, OpenInFullscreenButton } from "@scm-manager/ui-components";
 import CommitMessage from "../CommitMessage";
@@ -37,9 +37,11 @@ import styled from "styled-components";
 import { CodeEditor, findLanguage } from "@scm-manager/scm-code-editor-plugin";
 import { ExtensionPoint, RenderableExtensionPointDefinition } from "@scm-manager/ui-extensions";
 import { setPathInLink } from "../links";
+import { compress } from "../compression";
 import { useHistory } from "react-router-dom";
 import { encodeInvalidCharacters } from "./encodeInvalidCharacters";
 import FileActionBorder from "../FileActionBorder";
+import { useFileCapabilities } from "../capabilities";
 
 const Header = styled.div`
   line-height: 1.25;
@@ -60,6 +62,13 @@ type FileWithType = File & {
   type?: string;
 };
 
+type EditableFile = HalRepresentation & {
+  revision: string;
+  type: string;
+  language?: string;
+  content?: string;
+};
+
 type Props = {
   repository: Repository;
   extension: string;
@@ -95,6 +104,8 @@ const FileEdit: FC<Props> = ({ repository, extension, revision, resolvedRevision
   const [language, setLanguage] = useState<string>("text");
   const [isValid, setIsValid] = useState<boolean>(true);
   const [fetchData, setFetchData] = useState<boolean>(false);
+  // the revision the content has been opened at, so that concurrent changes are detected on commit
+  const [openedRevision, setOpenedRevision] = useState<string>();
   const history = useHistory();
 
   const commitButtonRef = useRef<HTMLButtonElement>(null);
@@ -110,15 +121,22 @@ const FileEdit: FC<Props> = ({ repository, extension, revision, resolvedRevision
     return !!(extension === "edit" && path);
   };
   const [stateFile, setFile] = useState<FileWithType | undefined>(!isEditMode() ? { name: "" } : undefined);
+  // with lazy links, the links to open and to modify the file have to be resolved first
+  const { file: changeableFile, isLoading: resolving, error: resolveError } = useFileCapabilities(
+    sources,
+    isEditMode()
+  );
 
   useEffect(() => {
-    if (isEditMode()) {
-      fetchFile();
-    } else {
+    if (!isEditMode()) {
       setInitialLoading(false);
       afterLoading();
+    } else if (resolveError) {
+      handleInitialError(resolveError);
+    } else if (!resolving) {
+      fetchFile();
     }
-  }, []);
+  }, [resolving, resolveError]);
 
   useEffect(() => {
     if (stateFile !== undefined && fetchData) {
@@ -148,6 +166,34 @@ const FileEdit: FC<Props> = ({ repository, extension, revision, resolvedRevision
   });
 
   const fetchFile = () => {
+    const openLink = (changeableFile?._links?.open ?? file?._links?.open) as Link | undefined;
+    if (openLink) {
+      openFile(openLink.href);
+    } else {
+      fetchSources();
+    }
+  };
+
+  const openFile = (link: string) => {
+    apiClient
+      .get(`${link}?revision=${encodeURIComponent(decodeURIComponent(revision ?? ""))}`)
+      .then((response) => response.json())
+      .then((editableFile: EditableFile) => {
+        // binary and large files are opened without content
+        if (typeof editableFile.content === "string") {
+          setOpenedRevision(editableFile.revision);
+          setFile({ ...file, type: editableFile.type });
+          setLanguage(findLanguage(editableFile.language ?? ""));
+          setContent(editableFile.content);
+          afterLoading();
+        } else {
+          fetchSources();
+        }
+      })
+      .catch(handleInitialError);
+  };
+
+  const fetchSources = () => {
     createFileUrl()
       .then(apiClient.get)
       .then((response) => response.json())
@@ -273,7 +319,7 @@ const FileEdit: FC<Props> = ({ repository, extension, revision, resolvedRevision
       let link;
       let type;
       if (isEditMode()) {
-        link = (sources._links.modify as Link).href;
+        link = (changeableFile?._links?.modify as Link).href;
         type = stateFile.type;
       } else {
         link = (sources._links.upload as Link).href;
@@ -286,19 +332,21 @@ const FileEdit: FC<Props> = ({ repository, extension, revision, resolvedRevision
       });
       setLoading(true);
 
-      const commit = {
-        commitMessage,
-        branch: decodeURIComponent(revision ?? ""),
-        expectedRevision: file?.revision ?? "",
-        names: {
-          file: stateFile.name,
-        },
-      };
-
-      apiClient
-        .postBinary(link, (formdata) => {
-          formdata.append("file", blob, "file");
-          formdata.append("commit", JSON.stringify(commit));
+      compress(blob)
+        .then(({ blob: compressedBlob, contentEncoding }) => {
+          const commit = {
+            commitMessage,
+            branch: decodeURIComponent(revision ?? ""),
+            expectedRevision: openedRevision ?? file?.revision ?? "",
+            names: {
+              file: stateFile.name,
+            },
+            contentEncodings: contentEncoding ? { file: contentEncoding } : {},
+          };
+          return apiClient.postBinary(link!, (formdata) => {
+            formdata.append("file", compressedBlob, "file");
+            formdata.append("commit", JSON.stringify(commit));
+          });
         })
         .then((r: Response) => r.json())
         .then(redirectAfterCommit)
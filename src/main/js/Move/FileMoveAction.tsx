@@ -18,6 +18,8 @@ import { extensionPoints, ExtractProps } from "@scm-manager/ui-extensions";
 import React, { FC, useEffect } from "react";
 import MoveModal from "./MoveModal";
 import { useMoveFolder } from "./moveFolder";
+import { useTranslation } from "react-i18next";
+import { useFileCapabilities } from "../capabilities";
 
 export const FileMoveAction: FC<ExtractProps<extensionPoints.ModalMenuProps["modalElement"]>> = ({
   close,
@@ -26,23 +28,31 @@ export const FileMoveAction: FC<ExtractProps<extensionPoints.ModalMenuProps["mod
   revision,
   setLoading
 }) => {
+  const [t] = useTranslation("plugins");
   const { isLoading, error, move } = useMoveFolder();
+  const { file: changeableFile, isLoading: resolving, error: resolveError } = useFileCapabilities(file);
+  const notPermitted =
+    changeableFile && !changeableFile._links.move ? new Error(t("scm-editor-plugin.errors.changeNotPermitted")) : null;
 
   useEffect(() => {
     if (setLoading) {
-      setLoading(isLoading);
+      setLoading(isLoading || resolving);
     }
-  }, [isLoading, setLoading]);
+  }, [isLoading, resolving, setLoading]);
 
   return (
     <MoveModal
       onClose={close}
       repository={repository}
-      sources={file}
+      sources={changeableFile ?? file}
       revision={revision}
-      isLoading={isLoading}
-      error={error}
-      move={move}
+      isLoading={isLoading || resolving}
+      error={error || resolveError || notPermitted}
+      move={(moveRepository, parent, moveRequest) => {
+        if (parent._links.move) {
+          move(moveRepository, parent, moveRequest);
+        }
+      }}
     />
   );
 };
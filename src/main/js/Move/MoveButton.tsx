@@ -21,6 +21,7 @@ import MoveModal from "./MoveModal";
 import { useMoveFolder } from "./moveFolder";
 import styled from "styled-components";
 import classNames from "classnames";
+import { isChangeable, useFileCapabilities } from "../capabilities";
 
 const StyledButton = styled.button`
   width: 50px;
@@ -39,22 +40,35 @@ const MoveButton: FC<Props> = ({ sources, revision, repository }) => {
   const [t] = useTranslation("plugins");
   const [modalVisible, setModalVisible] = useState(false);
   const { isLoading, error, move } = useMoveFolder();
+  const { file: changeableSources, isLoading: resolving, error: resolveError } = useFileCapabilities(
+    sources,
+    modalVisible
+  );
 
-  if (!sources || !("move" in sources._links)) {
+  if (!isChangeable(sources, "move")) {
     return null;
   }
 
+  const notPermitted =
+    changeableSources && !changeableSources._links.move
+      ? new Error(t("scm-editor-plugin.errors.changeNotPermitted"))
+      : null;
+
   return (
     <>
       {modalVisible ? (
         <MoveModal
           onClose={() => setModalVisible(false)}
           repository={repository}
-          sources={sources}
+          sources={changeableSources ?? sources}
           revision={revision}
-          isLoading={isLoading}
-          error={error}
-          move={move}
+          isLoading={isLoading || resolving}
+          error={error || resolveError || notPermitted}
+          move={(moveRepository, parent, moveRequest) => {
+            if (parent._links.move) {
+              move(moveRepository, parent, moveRequest);
+            }
+          }}
         />
       ) : null}
       <StyledButton
@@ -16,7 +16,7 @@
 
 import { useMutation, useQueryClient } from "react-query";
 import { useHistory } from "react-router-dom";
-import { Changeset, File, Link, Repository } from "@scm-manager/ui-types";
+import { Changeset, File, Link, Links, Repository } from "@scm-manager/ui-types";
 import { apiClient } from "@scm-manager/ui-components";
 import { createSourceUrlFromChangeset } from "../links";
 import { MoveRequest } from "./moveRequest";
@@ -27,12 +27,47 @@ type UseMovePayload = {
   moveRequest: MoveRequest;
 };
 
+type EditorJob = {
+  state: "QUEUED" | "RUNNING" | "DONE" | "FAILED";
+  changesetId?: string;
+  errorMessage?: string;
+  _links: Links;
+};
+
+const JOB_POLL_INTERVAL = 500;
+
+const wait = (millis: number) => new Promise(resolve => setTimeout(resolve, millis));
+
+const awaitJob = async (job: EditorJob): Promise<string> => {
+  while (job.state !== "DONE" && job.state !== "FAILED") {
+    await wait(JOB_POLL_INTERVAL);
+    job = await apiClient.get((job._links.self as Link).href).then(response => response.json());
+  }
+  if (job.state === "FAILED") {
+    throw new Error(job.errorMessage);
+  }
+  return job.changesetId!;
+};
+
+// large folders are moved in the background, so that the request does not time out
+const moveInBackground = async (repository: Repository, sources: File, moveRequest: MoveRequest): Promise<Changeset> => {
+  const response = await apiClient.post((sources._links.move as Link).href, moveRequest, "application/json", {
+    Prefer: "respond-async"
+  });
+  if (response.status !== 202) {
+    return response.json();
+  }
+  const changesetId = await awaitJob(await response.json());
+  return apiClient
+    .get((repository._links.changesets as Link).href.replace(/\/$/, "") + "/" + encodeURIComponent(changesetId))
+    .then(changesetResponse => changesetResponse.json());
+};
+
 export const useMoveFolder = () => {
   const queryClient = useQueryClient();
   const history = useHistory();
   const { mutate, data, isLoading, error } = useMutation<Changeset, Error, UseMovePayload>(
-    async ({ moveRequest, sources }) =>
-      apiClient.post((sources._links.move as Link).href, moveRequest).then(response => response.json()),
+    async ({ repository, moveRequest, sources }) => moveInBackground(repository, sources, moveRequest),
     {
       onSuccess: async (changeset, { repository, moveRequest: { newPath } }) => {
         await queryClient.invalidateQueries(["repository", repository.namespace, repository.name]);
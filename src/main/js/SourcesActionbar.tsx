@@ -20,6 +20,7 @@ import FileUploadButton from "./Upload/FileUploadButton";
 import { File, Repository } from "@scm-manager/ui-types";
 import { ButtonGroup } from "@scm-manager/ui-components";
 import MoveButton from "./Move/MoveButton";
+import DirectoryDownloadButton from "./Download/DirectoryDownloadButton";
 
 type Props = {
   repository: Repository;
@@ -35,6 +36,7 @@ class SourcesActionbar extends React.Component<Props> {
         <FileCreateButton {...this.props} />
         <FileUploadButton {...this.props} />
         {this.props.sources?.directory ? <MoveButton {...this.props} /> : null}
+        <DirectoryDownloadButton {...this.props} />
       </ButtonGroup>
     );
   }
@@ -89,7 +89,7 @@ export default function FileUpload({ repository, path, sources, revision, baseUr
       disabled={loading}
       onEnter={() => {
         if (isFormValid()) {
-          fileCommit(currentPath, files, sources, revision, repository, commitMessage);
+          fileCommit(currentPath, files, sources, revision, repository, commitMessage, uploadMode === "archive");
         }
       }}
     />
@@ -128,7 +128,7 @@ export default function FileUpload({ repository, path, sources, revision, baseUr
         // @ts-ignore
         commitMessageAreaRef.current?.focus();
       } else if (document.activeElement?.id === "commitMessageField" && isFormValid()) {
-        fileCommit(currentPath, files, sources, revision, repository, commitMessage);
+        fileCommit(currentPath, files, sources, revision, repository, commitMessage, uploadMode === "archive");
       }
     },
     {
@@ -199,11 +199,11 @@ export default function FileUpload({ repository, path, sources, revision, baseUr
           <Button
             variant={ButtonVariants.PRIMARY}
             disabled={!isFormValid()}
-            onClick={() => fileCommit(currentPath, files, sources, revision, repository, commitMessage)}
+            onClick={() => fileCommit(currentPath, files, sources, revision, repository, commitMessage, uploadMode === "archive")}
             onKeyDown={(key) => {
               // We need to hard-code this behavior here because useShortcut() in FileUploadDropzone overrides it.
               if ((key.key === " " || key.key === "Enter") && isFormValid()) {
-                fileCommit(currentPath, files, sources, revision, repository, commitMessage);
+                fileCommit(currentPath, files, sources, revision, repository, commitMessage, uploadMode === "archive");
               }
             }}
             isLoading={loading}
@@ -62,6 +62,12 @@ const DefaultOptions = {
   noKeyboard: true, // We override the native settings with our own implementation
 };
 
+const ArchiveTypes = {
+  "application/zip": [".zip"],
+  "application/x-tar": [".tar"],
+  "application/gzip": [".tgz", ".tar.gz"],
+};
+
 const FileUploadDropzone: FC<Props> = ({ fileHandler, disabled, uploadMode }) => {
   const [t] = useTranslation("plugins");
   let extension = binder.getExtension("editorPlugin.upload", {});
@@ -73,6 +79,7 @@ const FileUploadDropzone: FC<Props> = ({ fileHandler, disabled, uploadMode }) =>
           ...DefaultOptions,
           disabled,
           onDrop: fileHandler,
+          ...(uploadMode === "archive" ? { accept: ArchiveTypes } : {}),
         },
   );
 
@@ -28,15 +28,13 @@ const FileUploadOptions: FC<props> = ({ uploadMode, setUploadMode }) => {
   const [t] = useTranslation("plugins");
   const extension = binder.getExtension("editorPlugin.upload");
 
-  if (!extension) {
-    return null;
-  }
-
   return (
     <div>
       <Radio checked={uploadMode === "file"} onChange={() => setUploadMode("file")} />
       {t("scm-editor-plugin.upload.fileUpload")}
-      {extension().renderOption(uploadMode, setUploadMode, t)}
+      <Radio checked={uploadMode === "archive"} onChange={() => setUploadMode("archive")} />
+      {t("scm-editor-plugin.upload.archiveUpload")}
+      {extension ? extension().renderOption(uploadMode, setUploadMode, t) : null}
     </div>
   );
 };
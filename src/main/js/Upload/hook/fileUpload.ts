@@ -20,6 +20,7 @@ import { apiClient } from "@scm-manager/ui-api";
 import { createSourceUrl, createSourceUrlFromChangeset, setPathInLink } from "../../links";
 import { useHistory } from "react-router-dom";
 import { useState } from "react";
+import { compress } from "../../compression";
 import { File as SCMFile } from "@scm-manager/ui-types";
 
 type HasPath = { path: string };
@@ -38,6 +39,7 @@ export function useFileCommit() {
     revision: string,
     repository: Repository,
     commitMessage?: string,
+    expandArchives?: boolean,
   ) {
     const link: string = (sources._links.upload as Link).href;
     const fileAliases: FileAliases = buildFileAliases(files);
@@ -51,16 +53,23 @@ export function useFileCommit() {
       branch: decodeURIComponent(revision),
       names: buildFileNameMap(fileAliases),
       expectedRevision: null,
+      contentEncodings: {},
+      expandArchives: !!expandArchives,
     };
 
-    apiClient
-      .postBinary(setPathInLink(link, path), (formdata) => {
-        Object.keys(fileAliases).forEach((name) => {
-          const safeBlob = new Blob([fileAliases[name]], { type: "application/octet-stream" });
-          formdata.append(name, safeBlob, name)
-        });
-        formdata.append("commit", JSON.stringify(commit));
-      })
+    Promise.all(Object.keys(fileAliases).map((name) => compress(fileAliases[name]).then((compressed) => ({ name, ...compressed }))))
+      .then((compressedFiles) =>
+        apiClient.postBinary(setPathInLink(link, path), (formdata) => {
+          compressedFiles.forEach(({ name, blob, contentEncoding }) => {
+            const safeBlob = new Blob([blob], { type: "application/octet-stream" });
+            formdata.append(name, safeBlob, name);
+            if (contentEncoding) {
+              commit.contentEncodings![name] = contentEncoding;
+            }
+          });
+          formdata.append("commit", JSON.stringify(commit));
+        })
+      )
       .then((r: Response) => r.json())
       .then((newCommit: Changeset) => {
         history.push(createSourcesLink(path, repository, revision, newCommit));
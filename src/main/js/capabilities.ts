@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+import { useQuery } from "react-query";
+import { File, HalRepresentation, Link } from "@scm-manager/ui-types";
+import { apiClient } from "@scm-manager/ui-api";
+import { setPathInLink } from "./links";
+
+type FileCapabilities = HalRepresentation & {
+  path: string;
+  directory: boolean;
+  move: boolean;
+  delete: boolean;
+  modify: boolean;
+  create: boolean;
+};
+
+const capabilitiesLink = (file?: File) => file?._links?.editorCapabilities as Link | undefined;
+
+// with lazy links (system property scm.editor.lazyLinks), files only get a templated link to resolve the possible
+// changes, so that a change has to be offered as long as it has not been resolved
+export const isChangeable = (file: File | undefined, change: string) =>
+  !!file && (change in file._links || !!capabilitiesLink(file));
+
+export const useFileCapabilities = (file?: File, enabled = true) => {
+  const link = capabilitiesLink(file);
+  const { data, isLoading, error } = useQuery<FileCapabilities, Error>(
+    ["editorCapabilities", link?.href, file?.path],
+    () => apiClient.get(setPathInLink(link!.href, file!.path)).then(response => response.json()),
+    { enabled: enabled && !!link }
+  );
+
+  if (!file || !link) {
+    return { file, isLoading: false, error: null };
+  }
+  if (!data) {
+    return { file: undefined, isLoading: !error && (isLoading || enabled), error };
+  }
+  // the self link of the capabilities must not replace the link to the content of the file
+  const changeLinks = { ...data._links };
+  delete changeLinks.self;
+  return { file: { ...file, _links: { ...file._links, ...changeLinks } }, isLoading: false, error: null };
+};
@@ -21,4 +21,8 @@ export type Commit = {
   names: {
     [key: string]: string;
   };
+  contentEncodings?: {
+    [key: string]: string;
+  };
+  expandArchives?: boolean;
 };
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+const COMPRESSION_THRESHOLD = 64 * 1024;
+const INCOMPRESSIBLE_TYPE = /^(image|video|audio)\/|zip|compressed|x-7z|x-rar|x-bzip|x-xz|zstd/;
+
+type CompressedBlob = {
+  blob: Blob;
+  contentEncoding?: string;
+};
+
+const getCompressionStream = () => (window as any).CompressionStream;
+
+// small and already compressed files would only cost time on the client
+const shouldCompress = (blob: Blob) =>
+  !!getCompressionStream() && blob.size >= COMPRESSION_THRESHOLD && !INCOMPRESSIBLE_TYPE.test(blob.type);
+
+export const compress = (blob: Blob): Promise<CompressedBlob> => {
+  if (!shouldCompress(blob)) {
+    return Promise.resolve({ blob });
+  }
+  const CompressionStream = getCompressionStream();
+  return new Response(blob.stream().pipeThrough(new CompressionStream("gzip")))
+    .blob()
+    .then((compressed) => ({ blob: compressed, contentEncoding: "gzip" }));
+};
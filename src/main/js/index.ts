@@ -26,6 +26,7 @@ import { FileMoveAction } from "./Move/FileMoveAction";
 import { createSourceExtensionUrl } from "./links";
 import { encodeFilePath } from "./Edit/encodeFilePath";
 import FileEdit from "./Edit/FileEdit";
+import { isChangeable } from "./capabilities";
 
 type ExtensionProps = {
   repository: Repository;
@@ -50,7 +51,9 @@ binder.bind<extensionPoints.FileViewActionBarOverflowMenu>(
     props: { ...createAttributesForTesting("edit-file-button") }
   },
   props =>
-    props.file._links.modify && props.contentType && isEditable(props.contentType.type, props.contentType.language)
+    isChangeable(props.file, "modify") &&
+    props.contentType &&
+    isEditable(props.contentType.type, props.contentType.language)
 );
 binder.bind<extensionPoints.FileViewActionBarOverflowMenu>(
   "repos.sources.content.actionbar.menu",
@@ -61,7 +64,7 @@ binder.bind<extensionPoints.FileViewActionBarOverflowMenu>(
     modalElement: FileMoveAction,
     props: { ...createAttributesForTesting("move-file-button") }
   },
-  props => props.file && "move" in props.file._links
+  props => isChangeable(props.file, "move")
 );
 binder.bind<extensionPoints.FileViewActionBarOverflowMenu>("repos.sources.content.actionbar.menu", {
   category: "Editor",
@@ -86,7 +89,7 @@ binder.bind<extensionPoints.FileViewActionBarOverflowMenu>(
     modalElement: FileDeleteAction,
     props: { ...createAttributesForTesting("delete-file-button") }
   },
-  props => !!props.file._links.delete
+  props => isChangeable(props.file, "delete")
 );
 
 binder.bind("repos.sources.tree.row.right", FileDownloadIcon);
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class ArchiveExpanderTest {
+
+  private final ArchiveExpander expander = new ArchiveExpander(3, 1024);
+
+  @Test
+  void shouldExpandZip() throws IOException {
+    byte[] archive = zip("docs/index.html", "<html/>", "docs/css/", null, "docs/css/site.css", "body {}");
+
+    assertThat(expand(archive)).containsExactly(
+      entry("docs/index.html", "<html/>"),
+      entry("docs/css/site.css", "body {}")
+    );
+  }
+
+  @Test
+  void shouldExpandTar() throws IOException {
+    byte[] archive = tar(tarEntry("./docs/index.html", '0', "<html/>"), tarEntry("docs/css/", '5', ""), tarEntry("docs/css/site.css", '0', "body {}"));
+
+    assertThat(expand(archive)).containsExactly(
+      entry("docs/index.html", "<html/>"),
+      entry("docs/css/site.css", "body {}")
+    );
+  }
+
+  @Test
+  void shouldExpandCompressedTarWithPaxPath() throws IOException {
+    String longPath = "docs/" + "a".repeat(120) + "/index.html";
+    String paxRecord = "path=" + longPath + "\n";
+    paxRecord = (paxRecord.length() + 4) + " " + paxRecord;
+    byte[] archive = gzip(tar(tarEntry("PaxHeaders/index.html", 'x', paxRecord), tarEntry("truncated", '0', "<html/>")));
+
+    assertThat(expand(archive)).containsExactly(entry(longPath, "<html/>"));
+  }
+
+  @Test
+  void shouldSkipContentNotReadByConsumer() throws IOException {
+    byte[] archive = tar(tarEntry("a.txt", '0', "a".repeat(600)), tarEntry("b.txt", '0', "b"));
+    Map<String, String> files = new LinkedHashMap<>();
+
+    expander.expand(new ByteArrayInputStream(archive), (path, content) -> files.put(path, ""));
+
+    assertThat(files).containsOnlyKeys("a.txt", "b.txt");
+  }
+
+  @Test
+  void shouldFailForTooManyFiles() throws IOException {
+    byte[] archive = zip("a", "a", "b", "b", "c", "c", "d", "d");
+
+    assertThatThrownBy(() -> expand(archive))
+      .isInstanceOf(ArchiveNotExpandableException.class);
+  }
+
+  @Test
+  void shouldFailForTooLargeContent() throws IOException {
+    byte[] archive = zip("a", "a".repeat(1000), "b", "b".repeat(1000));
+
+    assertThatThrownBy(() -> expand(archive))
+      .isInstanceOf(ArchiveNotExpandableException.class);
+  }
+
+  @Test
+  void shouldFailForPathsOutsideOfTarget() throws IOException {
+    byte[] archive = tar(tarEntry("../secret.txt", '0', "secret"));
+
+    assertThatThrownBy(() -> expand(archive))
+      .isInstanceOf(ArchiveNotExpandableException.class);
+  }
+
+  private Map<String, String> expand(byte[] archive) throws IOException {
+    Map<String, String> files = new LinkedHashMap<>();
+    expander.expand(new ByteArrayInputStream(archive), (path, content) -> files.put(path, new String(content.readAllBytes(), UTF_8)));
+    return files;
+  }
+
+  private byte[] zip(String... namesAndContents) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(buffer)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+        if (namesAndContents[i + 1] != null) {
+          zip.write(namesAndContents[i + 1].getBytes(UTF_8));
+        }
+        zip.closeEntry();
+      }
+    }
+    return buffer.toByteArray();
+  }
+
+  private byte[] tar(byte[]... entries) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    for (byte[] entry : entries) {
+      buffer.write(entry);
+    }
+    buffer.write(new byte[1024]);
+    return buffer.toByteArray();
+  }
+
+  private byte[] tarEntry(String name, char type, String content) {
+    byte[] data = content.getBytes(UTF_8);
+    byte[] header = new byte[512];
+    put(header, 0, name);
+    put(header, 100, "0000644");
+    put(header, 124, String.format("%011o", data.length));
+    put(header, 136, String.format("%011o", 0));
+    header[156] = (byte) type;
+    put(header, 257, "ustar");
+    put(header, 263, "00");
+    put(header, 148, "        ");
+    int checksum = 0;
+    for (byte value : header) {
+      checksum += value & 0xff;
+    }
+    put(header, 148, String.format("%06o", checksum));
+    header[155] = ' ';
+
+    byte[] entry = new byte[512 + (data.length + 511) / 512 * 512];
+    System.arraycopy(header, 0, entry, 0, 512);
+    System.arraycopy(data, 0, entry, 512, data.length);
+    return entry;
+  }
+
+  private void put(byte[] header, int offset, String value) {
+    byte[] bytes = value.getBytes(US_ASCII);
+    System.arraycopy(bytes, 0, header, offset, bytes.length);
+  }
+
+  private byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+      gzip.write(content);
+    }
+    return buffer.toByteArray();
+  }
+}
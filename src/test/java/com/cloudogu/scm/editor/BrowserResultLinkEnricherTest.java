@@ -17,6 +17,7 @@
 package com.cloudogu.scm.editor;
 
 import com.google.inject.util.Providers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -63,7 +64,7 @@ class BrowserResultLinkEnricherTest {
   void setUpObjectUnderTest() {
     ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
     pathInfoStore.set(() -> URI.create("/"));
-    enricher = new BrowserResultLinkEnricher(Providers.of(pathInfoStore), preconditions, changeGuardCheck);
+    enricher = new BrowserResultLinkEnricher(Providers.of(pathInfoStore), preconditions, changeGuardCheck, new EditorMetrics(new SimpleMeterRegistry()));
   }
 
   @Test
@@ -120,6 +121,39 @@ class BrowserResultLinkEnricherTest {
     verifyNoMoreInteractions(appender);
   }
 
+  @Test
+  void shouldAppendTemplatedCapabilitiesLinkInLazyMode() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    BrowserResult result = createBrowserResult("42", "feature/x", false);
+    setUpEnricherContext(repository, result);
+    ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
+    pathInfoStore.set(() -> URI.create("/"));
+    BrowserResultLinkEnricher lazyEnricher = new BrowserResultLinkEnricher(Providers.of(pathInfoStore), preconditions, changeGuardCheck, new EditorMetrics(new SimpleMeterRegistry()), true);
+
+    when(preconditions.isEditable(repository.getNamespaceAndName(), result)).thenReturn(true);
+
+    lazyEnricher.enrich(context, appender);
+
+    verify(appender).appendLink("editorCapabilities", "/v2/edit/hitchhiker/HeartOfGold/capabilities/{path}?revision=feature%2Fx");
+    verifyNoMoreInteractions(appender);
+  }
+
+  @Test
+  void shouldNotAppendCapabilitiesLinkInLazyModeIfPreconditionNotMet() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    BrowserResult result = createBrowserResult("42", "master", true);
+    setUpEnricherContext(repository, result);
+    ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
+    pathInfoStore.set(() -> URI.create("/"));
+    BrowserResultLinkEnricher lazyEnricher = new BrowserResultLinkEnricher(Providers.of(pathInfoStore), preconditions, changeGuardCheck, new EditorMetrics(new SimpleMeterRegistry()), true);
+
+    when(preconditions.isEditable(repository.getNamespaceAndName(), result)).thenReturn(false);
+
+    lazyEnricher.enrich(context, appender);
+
+    verify(appender, never()).appendLink(anyString(), anyString());
+  }
+
   private BrowserResult createBrowserResult(String revision, String branchName, boolean directory) {
     FileObject fileObject = new FileObject();
     fileObject.setDirectory(directory);
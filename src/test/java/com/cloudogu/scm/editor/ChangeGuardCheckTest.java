@@ -16,18 +16,39 @@
 
 package com.cloudogu.scm.editor;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
 import sonia.scm.repository.NamespaceAndName;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ChangeGuardCheckTest {
@@ -37,7 +58,7 @@ class ChangeGuardCheckTest {
   @Nested
   class WithoutGuards {
 
-    ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(emptySet());
+    ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(emptySet(), new EditorMetrics(new SimpleMeterRegistry()), new ChangeGuardEvaluator(), new ChangeGuardCache());
 
     @Test
     void filesShouldBeDeletable() {
@@ -53,12 +74,22 @@ class ChangeGuardCheckTest {
     void createShouldBePossible() {
       assertThat(changeGuardCheck.canCreateFilesIn(NAMESPACE_AND_NAME, "42", "some/path")).isEmpty();
     }
+
+    @Test
+    void allFilesShouldBeDeletable() {
+      Map<String, Collection<ChangeObstacle>> obstacles = changeGuardCheck.isDeletableForEach(NAMESPACE_AND_NAME, "42", asList("readme.md", "license.txt"));
+
+      assertThat(obstacles).containsOnlyKeys("readme.md", "license.txt");
+      assertThat(obstacles.get("readme.md")).isEmpty();
+      assertThat(obstacles.get("license.txt")).isEmpty();
+    }
   }
 
   @Nested
   class WithGuard {
     ChangeGuard changeGuard = mock(ChangeGuard.class);
-    ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(singleton(changeGuard));
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(singleton(changeGuard), new EditorMetrics(meterRegistry), new ChangeGuardEvaluator(), new ChangeGuardCache());
 
     @BeforeEach
     void byDefaultThereAreNoObstacles() {
@@ -109,6 +140,255 @@ class ChangeGuardCheckTest {
       assertThat(changeGuardCheck.canCreateFilesIn(NAMESPACE_AND_NAME, "42", "some/path"))
         .contains(obstacle);
     }
+
+    @Test
+    void shouldFallBackToSinglePathCheckForBatch() {
+      SimpleChangeObstacle obstacle = new SimpleChangeObstacle();
+      when(changeGuard.getObstaclesByPath(any(), any(), any())).thenCallRealMethod();
+      when(changeGuard.getObstacles(eq(NAMESPACE_AND_NAME), eq("42"), argThat(changes -> changes.getFilesToModify().contains("readme.md"))))
+        .thenReturn(singleton(obstacle));
+
+      Map<String, Collection<ChangeObstacle>> obstacles = changeGuardCheck.isModifiableForEach(NAMESPACE_AND_NAME, "42", asList("readme.md", "license.txt"));
+
+      assertThat(obstacles.get("readme.md")).containsExactly(obstacle);
+      assertThat(obstacles.get("license.txt")).isEmpty();
+    }
+
+    @Test
+    void shouldAskGuardOnlyOnceForBatch() {
+      SimpleChangeObstacle obstacle = new SimpleChangeObstacle();
+      when(changeGuard.getObstaclesByPath(eq(NAMESPACE_AND_NAME), eq("42"), any()))
+        .thenReturn(singletonMap("some/path", singleton(obstacle)));
+
+      Map<String, Collection<ChangeObstacle>> obstacles = changeGuardCheck.canCreateFilesInEach(NAMESPACE_AND_NAME, "42", asList("some/path", "other/path"));
+
+      assertThat(obstacles.get("some/path")).containsExactly(obstacle);
+      assertThat(obstacles.get("other/path")).isEmpty();
+      verify(changeGuard, times(1)).getObstaclesByPath(any(), any(), any());
+    }
+
+    @Test
+    void shouldUseCachedObstaclesForBatch() {
+      when(changeGuard.getObstaclesByPath(eq(NAMESPACE_AND_NAME), eq("42"), any()))
+        .thenReturn(singletonMap("some/path", emptySet()));
+
+      changeGuardCheck.isModifiableForEach(NAMESPACE_AND_NAME, "42", asList("some/path", "other/path"));
+      Map<String, Collection<ChangeObstacle>> obstacles = changeGuardCheck.isModifiableForEach(NAMESPACE_AND_NAME, "42", asList("some/path", "other/path"));
+
+      assertThat(obstacles.get("some/path")).isEmpty();
+      assertThat(obstacles.get("other/path")).isEmpty();
+      verify(changeGuard, times(1)).getObstaclesByPath(any(), any(), any());
+    }
+
+    @Test
+    void shouldNotUseCachedObstaclesForOtherChangeKind() {
+      when(changeGuard.getObstaclesByPath(eq(NAMESPACE_AND_NAME), eq("42"), any()))
+        .thenReturn(singletonMap("some/path", emptySet()));
+
+      changeGuardCheck.isModifiableForEach(NAMESPACE_AND_NAME, "42", singleton("some/path"));
+      changeGuardCheck.isDeletableForEach(NAMESPACE_AND_NAME, "42", singleton("some/path"));
+
+      verify(changeGuard, times(2)).getObstaclesByPath(any(), any(), any());
+    }
+
+    @Test
+    void shouldAskGuardAgainAfterInvalidation() {
+      when(changeGuard.getObstaclesByPath(eq(NAMESPACE_AND_NAME), eq("42"), any()))
+        .thenReturn(singletonMap("some/path", emptySet()));
+
+      changeGuardCheck.isModifiableForEach(NAMESPACE_AND_NAME, "42", singleton("some/path"));
+      changeGuardCheck.invalidate(NAMESPACE_AND_NAME, "42");
+      changeGuardCheck.isModifiableForEach(NAMESPACE_AND_NAME, "42", singleton("some/path"));
+
+      verify(changeGuard, times(2)).getObstaclesByPath(any(), any(), any());
+    }
+
+    @Test
+    void shouldRecordGuardMetrics() {
+      when(changeGuard.getObstacles(eq(NAMESPACE_AND_NAME), eq("42"), any()))
+        .thenReturn(singleton(new SimpleChangeObstacle()));
+
+      changeGuardCheck.isDeletable(NAMESPACE_AND_NAME, "42", "some/path");
+
+      assertThat(meterRegistry.find(EditorMetrics.GUARD_TIMER).timer())
+        .extracting(Timer::count)
+        .isEqualTo(1L);
+      assertThat(meterRegistry.find(EditorMetrics.GUARD_OBSTACLES_COUNTER).counter())
+        .extracting(Counter::count)
+        .isEqualTo(1.0);
+    }
+  }
+
+  @Nested
+  class WithSlowGuards {
+    ChangeGuard slowGuard = mock(ChangeGuard.class);
+    ChangeGuard otherGuard = mock(ChangeGuard.class);
+    Set<ChangeGuard> guards = new LinkedHashSet<>(asList(slowGuard, otherGuard));
+
+    @Test
+    void shouldEvaluateGuardsConcurrently() {
+      CountDownLatch bothStarted = new CountDownLatch(2);
+      Answer<Collection<ChangeObstacle>> waitForOther = invocation -> {
+        bothStarted.countDown();
+        bothStarted.await();
+        return emptySet();
+      };
+      when(slowGuard.getObstacles(any(), any(), any())).thenAnswer(waitForOther);
+      when(otherGuard.getObstacles(any(), any(), any())).thenAnswer(waitForOther);
+
+      ChangeGuardCheck changeGuardCheck = createCheck(5000, false);
+
+      assertThat(changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md")).isEmpty();
+    }
+
+    @Test
+    void shouldPreventChangeWhenGuardTimesOut() {
+      SimpleChangeObstacle obstacle = new SimpleChangeObstacle();
+      when(slowGuard.getObstacles(any(), any(), any())).thenAnswer(invocation -> {
+        Thread.sleep(5000);
+        return emptySet();
+      });
+      when(otherGuard.getObstacles(any(), any(), any())).thenReturn(singleton(obstacle));
+
+      ChangeGuardCheck changeGuardCheck = createCheck(50, false);
+
+      assertThat(changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md"))
+        .hasSize(2)
+        .contains(obstacle)
+        .extracting(ChangeObstacle::getKey)
+        .contains(GuardTimeoutObstacle.KEY);
+    }
+
+    @Test
+    void shouldIgnoreGuardThatTimesOutWhenFailingOpen() {
+      SimpleChangeObstacle obstacle = new SimpleChangeObstacle();
+      when(slowGuard.getObstacles(any(), any(), any())).thenAnswer(invocation -> {
+        Thread.sleep(5000);
+        return emptySet();
+      });
+      when(otherGuard.getObstacles(any(), any(), any())).thenReturn(singleton(obstacle));
+
+      ChangeGuardCheck changeGuardCheck = createCheck(50, true);
+
+      assertThat(changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md"))
+        .containsExactly(obstacle);
+    }
+
+    @Test
+    void shouldNotCountTimeWaitingForThreadAgainstTimeout() {
+      Answer<Collection<ChangeObstacle>> slow = invocation -> {
+        Thread.sleep(200);
+        return emptySet();
+      };
+      when(slowGuard.getObstacles(any(), any(), any())).thenAnswer(slow);
+      when(otherGuard.getObstacles(any(), any(), any())).thenAnswer(slow);
+
+      ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(
+        guards,
+        new EditorMetrics(new SimpleMeterRegistry()),
+        new ChangeGuardEvaluator(Executors.newSingleThreadExecutor(), 300, false),
+        new ChangeGuardCache()
+      );
+
+      assertThat(changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md")).isEmpty();
+    }
+
+    @Test
+    void shouldPassExceptionOfGuard() {
+      when(slowGuard.getObstacles(any(), any(), any())).thenThrow(new IllegalArgumentException("broken guard"));
+      when(otherGuard.getObstacles(any(), any(), any())).thenReturn(emptySet());
+
+      ChangeGuardCheck changeGuardCheck = createCheck(5000, false);
+
+      assertThrows(IllegalArgumentException.class, () -> changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md"));
+    }
+
+    @Test
+    void shouldApplyTimeoutToSingleGuard() {
+      when(slowGuard.getObstacles(any(), any(), any())).thenAnswer(invocation -> {
+        Thread.sleep(5000);
+        return emptySet();
+      });
+
+      ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(
+        singleton(slowGuard),
+        new EditorMetrics(new SimpleMeterRegistry()),
+        new ChangeGuardEvaluator(Executors.newFixedThreadPool(1), 50, false),
+        new ChangeGuardCache()
+      );
+
+      assertThat(changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md"))
+        .extracting(ChangeObstacle::getKey)
+        .containsExactly(GuardTimeoutObstacle.KEY);
+    }
+
+    @Test
+    void shouldHandleRejectedGuardsLikeTimeouts() {
+      ExecutorService executor = Executors.newFixedThreadPool(1);
+      executor.shutdown();
+
+      ChangeGuardCheck changeGuardCheck = new ChangeGuardCheck(
+        guards,
+        new EditorMetrics(new SimpleMeterRegistry()),
+        new ChangeGuardEvaluator(executor, 5000, false),
+        new ChangeGuardCache()
+      );
+
+      assertThat(changeGuardCheck.isModifiable(NAMESPACE_AND_NAME, "42", "readme.md"))
+        .extracting(ChangeObstacle::getKey)
+        .containsExactly(GuardTimeoutObstacle.KEY, GuardTimeoutObstacle.KEY);
+    }
+
+    @Test
+    void shouldApplyTimeoutToBatchesOfPaths() {
+      when(slowGuard.getObstaclesByPath(any(), any(), any())).thenCallRealMethod();
+      when(slowGuard.getObstacles(any(), any(), any())).thenAnswer(invocation -> {
+        Thread.sleep(1);
+        return emptySet();
+      });
+      when(otherGuard.getObstaclesByPath(any(), any(), any())).thenReturn(emptyMap());
+      List<String> paths = IntStream.range(0, 1000).mapToObj(i -> "file-" + i).collect(toList());
+
+      // the guard needs about a second for all paths, but only about 100 ms for each batch
+      Map<String, Collection<ChangeObstacle>> obstacles = createCheck(500, false, 100)
+        .isModifiableForEach(NAMESPACE_AND_NAME, "42", paths);
+
+      assertThat(obstacles).hasSize(1000);
+      assertThat(obstacles.values()).allSatisfy(pathObstacles -> assertThat(pathObstacles).isEmpty());
+      verify(slowGuard, times(10)).getObstaclesByPath(any(), any(), argThat(batch -> batch.size() == 100));
+    }
+
+    @Test
+    void shouldNotAskGuardAgainAfterTimeoutForBatch() {
+      when(slowGuard.getObstaclesByPath(any(), any(), any())).thenAnswer(invocation -> {
+        Thread.sleep(5000);
+        return emptyMap();
+      });
+      when(otherGuard.getObstaclesByPath(any(), any(), any())).thenReturn(emptyMap());
+
+      Map<String, Collection<ChangeObstacle>> obstacles = createCheck(50, false, 2)
+        .isDeletableForEach(NAMESPACE_AND_NAME, "42", asList("a", "b", "c", "d", "e"));
+
+      assertThat(obstacles.values()).allSatisfy(pathObstacles ->
+        assertThat(pathObstacles).extracting(ChangeObstacle::getKey).containsExactly(GuardTimeoutObstacle.KEY)
+      );
+      verify(slowGuard, times(1)).getObstaclesByPath(any(), any(), any());
+      verify(otherGuard, times(3)).getObstaclesByPath(any(), any(), any());
+    }
+
+    private ChangeGuardCheck createCheck(long timeoutMillis, boolean failOpen) {
+      return createCheck(timeoutMillis, failOpen, 100);
+    }
+
+    private ChangeGuardCheck createCheck(long timeoutMillis, boolean failOpen, int batchSize) {
+      return new ChangeGuardCheck(
+        guards,
+        new EditorMetrics(new SimpleMeterRegistry()),
+        new ChangeGuardEvaluator(Executors.newFixedThreadPool(2), timeoutMillis, failOpen),
+        new ChangeGuardCache(),
+        batchSize
+      );
+    }
   }
 
   private static class SimpleChangeObstacle implements ChangeObstacle {
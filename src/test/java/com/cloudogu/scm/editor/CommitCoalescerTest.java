@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.NamespaceAndName;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CommitCoalescerTest {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+
+  private final CommitCoalescer coalescer = new CommitCoalescer(200, 1000);
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  private final List<String> commitMessages = Collections.synchronizedList(new ArrayList<>());
+  private final List<List<BatchOperationDto>> commits = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger changesetIds = new AtomicInteger();
+
+  @AfterEach
+  void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldMergeChangesForSameBranch() throws Exception {
+    Future<String> first = submit("main", null, "first", "a");
+    Future<String> second = submit("main", null, "second", "b");
+
+    assertThat(first.get()).isEqualTo("1");
+    assertThat(second.get()).isEqualTo("1");
+    assertThat(commits).hasSize(1);
+    assertThat(commits.get(0)).extracting("path").containsExactlyInAnyOrder("a", "b");
+    assertThat(commitMessages.get(0)).contains("first", "second");
+  }
+
+  @Test
+  void shouldNotMergeChangesForDifferentExpectedRevisions() throws Exception {
+    Future<String> first = submit("main", "rev-1", "first", "a");
+    Future<String> second = submit("main", "rev-2", "second", "b");
+
+    assertThat(first.get()).isNotEqualTo(second.get());
+    assertThat(commits).hasSize(2);
+  }
+
+  @Test
+  void shouldCommitChangesForSamePathOneAfterTheOther() throws Exception {
+    Future<String> first = submit("main", null, "first", "a");
+    Thread.sleep(50);
+    Future<String> second = submit("main", null, "second", "a");
+
+    assertThat(first.get()).isEqualTo("1");
+    assertThat(second.get()).isEqualTo("2");
+    assertThat(commitMessages).containsExactly("first", "second");
+  }
+
+  @Test
+  void shouldPassFailureToAllRequests() {
+    CommitCoalescer.Committer failingCommitter = (message, operations) -> {
+      throw new IOException("failed");
+    };
+
+    assertThatThrownBy(() -> coalescer.submit(NAMESPACE_AND_NAME, "main", null, "first", operations("a"), singletonList("a"), failingCommitter))
+      .isInstanceOf(IOException.class)
+      .hasMessage("failed");
+  }
+
+  @Test
+  void shouldNotMergeChangesOfDifferentUsers() throws Exception {
+    Future<String> first = submit("trillian", "main", null, "first", "a");
+    Future<String> second = submit("dent", "main", null, "second", "b");
+
+    assertThat(first.get()).isNotEqualTo(second.get());
+    assertThat(commits).hasSize(2);
+  }
+
+  @Test
+  void shouldCommitChangesAloneIfCoalescedCommitFails() throws Exception {
+    CommitCoalescer.Committer committer = (message, operations) -> {
+      commitMessages.add(message);
+      if (operations.stream().anyMatch(operation -> operation.getPath().equals("broken"))) {
+        throw new IOException("failed");
+      }
+      return Integer.toString(changesetIds.incrementAndGet());
+    };
+    Future<String> first = submit("trillian", "first", "a", committer);
+    Future<String> second = submit("trillian", "second", "broken", committer);
+
+    assertThat(first.get()).isEqualTo("1");
+    assertThatThrownBy(second::get)
+      .hasCauseInstanceOf(IOException.class)
+      .hasRootCauseMessage("failed");
+    assertThat(commitMessages).hasSize(3).contains("first", "second");
+  }
+
+  private Future<String> submit(String branch, String expectedRevision, String commitMessage, String path) {
+    return submit(null, branch, expectedRevision, commitMessage, path);
+  }
+
+  private Future<String> submit(String principal, String branch, String expectedRevision, String commitMessage, String path) {
+    return executor.submit(() -> {
+      bindPrincipal(principal);
+      return coalescer.submit(
+        NAMESPACE_AND_NAME, branch, expectedRevision, commitMessage, operations(path), singletonList(path),
+        (message, operations) -> {
+          commitMessages.add(message);
+          commits.add(new ArrayList<>(operations));
+          return Integer.toString(changesetIds.incrementAndGet());
+        }
+      );
+    });
+  }
+
+  private Future<String> submit(String principal, String commitMessage, String path, CommitCoalescer.Committer committer) {
+    return executor.submit(() -> {
+      bindPrincipal(principal);
+      return coalescer.submit(NAMESPACE_AND_NAME, "main", null, commitMessage, operations(path), singletonList(path), committer);
+    });
+  }
+
+  private void bindPrincipal(String principal) {
+    ThreadContext.unbindSubject();
+    if (principal != null) {
+      Subject subject = mock(Subject.class);
+      when(subject.getPrincipal()).thenReturn(principal);
+      ThreadContext.bind(subject);
+    }
+  }
+
+  private List<BatchOperationDto> operations(String path) {
+    return singletonList(new BatchOperationDto(BatchOperationDto.Type.CREATE, path, null, "content", null));
+  }
+}
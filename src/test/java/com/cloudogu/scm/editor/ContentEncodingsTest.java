@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentEncodingsTest {
+
+  @Test
+  void shouldNotChangeBodyWithoutEncoding() throws IOException {
+    InputStream body = new ByteArrayInputStream("content".getBytes(UTF_8));
+
+    assertThat(ContentEncodings.decode(null, body)).isSameAs(body);
+    assertThat(read(ContentEncodings.decode("identity", body))).isEqualTo("content");
+  }
+
+  @Test
+  void shouldDecodeGzip() throws IOException {
+    InputStream body = new ByteArrayInputStream(gzip("content".getBytes(UTF_8)));
+
+    assertThat(read(ContentEncodings.decode("GZIP", body))).isEqualTo("content");
+  }
+
+  @Test
+  void shouldDecodeDeflate() throws IOException {
+    InputStream body = new ByteArrayInputStream(deflate("content".getBytes(UTF_8)));
+
+    assertThat(read(ContentEncodings.decode("deflate", body))).isEqualTo("content");
+  }
+
+  @Test
+  void shouldDecodeCodingsInReverseOrder() throws IOException {
+    InputStream body = new ByteArrayInputStream(gzip(deflate("content".getBytes(UTF_8))));
+
+    assertThat(read(ContentEncodings.decode("deflate, gzip", body))).isEqualTo("content");
+  }
+
+  @Test
+  void shouldFailForUnsupportedEncoding() {
+    InputStream body = new ByteArrayInputStream(new byte[0]);
+
+    assertThatThrownBy(() -> ContentEncodings.decode("zstd", body))
+      .isInstanceOf(UnsupportedContentEncodingException.class);
+  }
+
+  @Test
+  void shouldFailForDecodedContentExceedingMaximumSize() throws IOException {
+    InputStream body = new ByteArrayInputStream(gzip(new byte[1025]));
+
+    InputStream decoded = ContentEncodings.decode("gzip", body, 1024);
+
+    assertThatThrownBy(decoded::readAllBytes)
+      .isInstanceOf(ContentTooLargeException.class);
+  }
+
+  @Test
+  void shouldDecodeContentWithMaximumSize() throws IOException {
+    InputStream body = new ByteArrayInputStream(gzip(new byte[1024]));
+
+    assertThat(ContentEncodings.decode("gzip", body, 1024).readAllBytes()).hasSize(1024);
+  }
+
+  private String read(InputStream stream) throws IOException {
+    return new String(stream.readAllBytes(), UTF_8);
+  }
+
+  static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+      gzip.write(content);
+    }
+    return buffer.toByteArray();
+  }
+
+  private static byte[] deflate(byte[] content) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (DeflaterOutputStream deflate = new DeflaterOutputStream(buffer)) {
+      deflate.write(content);
+    }
+    return buffer.toByteArray();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.NotFoundException;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@ExtendWith(MockitoExtension.class)
+class DirectoryArchiverTest {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+
+  private CatCommandBuilder catCommand;
+  private DirectoryArchiver archiver;
+
+  @BeforeEach
+  void initArchiver() {
+    when(repositoryServiceFactory.create(NAMESPACE_AND_NAME)).thenReturn(repositoryService);
+    catCommand = mock(CatCommandBuilder.class, withSettings().defaultAnswer(Answers.RETURNS_SELF));
+    archiver = new DirectoryArchiver(repositoryServiceFactory, 2, 8);
+  }
+
+  @Test
+  void shouldWriteAllFilesOfDirectoryAtResolvedRevision() throws IOException {
+    FileObject sub = directory("src/sub", file("src/sub/large.txt", 20));
+    mockBrowse(directory("src", file("src/a.txt", 1), sub, file("src/b.txt", 1), file("src/unknown.txt", null)));
+    mockCat("src/a.txt", "a");
+    mockCat("src/sub/large.txt", "more than eight bytes");
+    mockCat("src/b.txt", "b");
+    mockCat("src/unknown.txt", "unknown");
+
+    DirectoryArchiver.DirectoryArchive archive = archiver.prepare(NAMESPACE_AND_NAME, "master", "src");
+    Map<String, String> entries = write(archive);
+
+    assertThat(archive.fileName()).isEqualTo("src.zip");
+    assertThat(entries).containsExactly(
+      entry("src/a.txt", "a"),
+      entry("src/sub/large.txt", "more than eight bytes"),
+      entry("src/b.txt", "b"),
+      entry("src/unknown.txt", "unknown")
+    );
+    verify(catCommand, atLeastOnce()).setRevision("42");
+  }
+
+  @Test
+  void shouldReadFilesAheadWithRepositoryServicesOfTheirOwn() throws IOException {
+    mockBrowse(directory("src", file("src/a.txt", 1), file("src/b.txt", 1), file("src/large.txt", 20)));
+    mockCat("src/a.txt", "a");
+    mockCat("src/b.txt", "b");
+    mockCat("src/large.txt", "more than eight bytes");
+
+    DirectoryArchiver.DirectoryArchive archive = archiver.prepare(NAMESPACE_AND_NAME, "master", "src");
+    write(archive);
+
+    // one service each for the preparation, the archive and the two files read ahead
+    verify(repositoryServiceFactory, times(4)).create(NAMESPACE_AND_NAME);
+    verify(repositoryService, times(4)).close();
+  }
+
+  @Test
+  void shouldUseRepositoryNameForRootDirectory() throws IOException {
+    mockBrowse(directory("", file("readme.md", 5)));
+    mockCat("readme.md", "hello");
+
+    DirectoryArchiver.DirectoryArchive archive = archiver.prepare(NAMESPACE_AND_NAME, null, "");
+    Map<String, String> entries = write(archive);
+
+    assertThat(archive.fileName()).isEqualTo("name.zip");
+    assertThat(entries).containsExactly(entry("name/readme.md", "hello"));
+  }
+
+  @Test
+  void shouldNotArchiveFiles() throws IOException {
+    mockBrowse(file("readme.md", 5));
+
+    assertThatThrownBy(() -> archiver.prepare(NAMESPACE_AND_NAME, "master", "readme.md"))
+      .isInstanceOf(NotFoundException.class);
+  }
+
+  @Test
+  void shouldFailIfFileReadAheadCannotBeRead() throws IOException {
+    mockBrowse(directory("src", file("src/a.txt", 1)));
+    when(repositoryService.getCatCommand()).thenReturn(catCommand);
+    when(catCommand.getStream("src/a.txt")).thenThrow(new IOException("broken"));
+
+    DirectoryArchiver.DirectoryArchive archive = archiver.prepare(NAMESPACE_AND_NAME, "master", "src");
+
+    assertThatThrownBy(() -> archiver.write(NAMESPACE_AND_NAME, archive, new ByteArrayOutputStream()))
+      .isInstanceOf(IOException.class)
+      .hasMessage("broken");
+  }
+
+  private Map<String, String> write(DirectoryArchiver.DirectoryArchive archive) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    archiver.write(NAMESPACE_AND_NAME, archive, output);
+    Map<String, String> entries = new LinkedHashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+      for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip.getNextEntry()) {
+        entries.put(zipEntry.getName(), new String(zip.readAllBytes(), UTF_8));
+      }
+    }
+    return entries;
+  }
+
+  private void mockBrowse(FileObject file) throws IOException {
+    BrowseCommandBuilder browseCommand = mock(BrowseCommandBuilder.class, withSettings().defaultAnswer(Answers.RETURNS_SELF));
+    when(browseCommand.getBrowserResult()).thenReturn(new BrowserResult("42", "master", file, true));
+    when(repositoryService.getBrowseCommand()).thenReturn(browseCommand);
+  }
+
+  private void mockCat(String path, String content) throws IOException {
+    when(catCommand.getStream(path)).thenReturn(new ByteArrayInputStream(content.getBytes(UTF_8)));
+    when(repositoryService.getCatCommand()).thenReturn(catCommand);
+  }
+
+  private FileObject directory(String path, FileObject... children) {
+    FileObject directory = file(path, null);
+    directory.setDirectory(true);
+    directory.setChildren(asList(children));
+    return directory;
+  }
+
+  private FileObject file(String path, Long length) {
+    FileObject file = new FileObject();
+    file.setPath(path);
+    file.setName(path.substring(path.lastIndexOf('/') + 1));
+    file.setLength(length);
+    return file;
+  }
+}
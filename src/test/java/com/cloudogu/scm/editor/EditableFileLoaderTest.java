@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.NotFoundException;
+import sonia.scm.io.ContentType;
+import sonia.scm.io.ContentTypeResolver;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@ExtendWith(MockitoExtension.class)
+class EditableFileLoaderTest {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock
+  private FileCapabilitiesCheck capabilitiesCheck;
+  @Mock
+  private EditorPreconditions preconditions;
+  @Mock
+  private ContentTypeResolver contentTypeResolver;
+  @Mock
+  private ContentType contentType;
+
+  private EditableFileLoader loader;
+
+  @BeforeEach
+  void initLoader() {
+    when(repositoryServiceFactory.create(NAMESPACE_AND_NAME)).thenReturn(repositoryService);
+    loader = new EditableFileLoader(repositoryServiceFactory, capabilitiesCheck, preconditions, contentTypeResolver, 16);
+  }
+
+  @Test
+  void shouldLoadFileWithContent() throws IOException {
+    FileObject file = file("src/readme.md");
+    mockBrowse(file);
+    CatCommandBuilder catCommand = mockCat("src/readme.md", "# Hällo".getBytes(UTF_8));
+    mockContentType(true);
+    when(contentType.getLanguage()).thenReturn(Optional.of("markdown"));
+    when(preconditions.getLockOwner(NAMESPACE_AND_NAME, "src/readme.md")).thenReturn("trillian");
+    FileCapabilities capabilities = new FileCapabilities(false, true, true, false);
+    when(capabilitiesCheck.check(eq(NAMESPACE_AND_NAME), any(BrowserResult.class), eq(file))).thenReturn(capabilities);
+
+    EditableFileLoader.EditableFile editableFile = loader.load(NAMESPACE_AND_NAME, "master", "src/readme.md");
+
+    assertThat(editableFile.revision()).isEqualTo("42");
+    assertThat(editableFile.size()).isEqualTo(8);
+    assertThat(editableFile.type()).isEqualTo("text/markdown");
+    assertThat(editableFile.language()).isEqualTo("markdown");
+    assertThat(editableFile.encoding()).isEqualTo("UTF-8");
+    assertThat(editableFile.lockOwner()).isEqualTo("trillian");
+    assertThat(editableFile.capabilities()).isSameAs(capabilities);
+    assertThat(editableFile.content()).isEqualTo("# Hällo");
+    verify(catCommand).setRevision("42");
+  }
+
+  @Test
+  void shouldDetectLatin1AndRemoveByteOrderMark() {
+    assertThat(EditableFileLoader.detectCharset("Hällo".getBytes(ISO_8859_1), true)).isEqualTo(ISO_8859_1);
+    assertThat(EditableFileLoader.detectCharset(new byte[]{'a', (byte) 0xC3}, false)).isEqualTo(UTF_8);
+    assertThat(EditableFileLoader.detectCharset(new byte[]{'a', (byte) 0xC3}, true)).isEqualTo(ISO_8859_1);
+  }
+
+  @Test
+  void shouldNotIncludeContentOfLargeFiles() throws IOException {
+    mockBrowse(file("big.txt"));
+    mockCat("big.txt", "this is more than sixteen bytes".getBytes(UTF_8));
+    mockContentType(true);
+
+    EditableFileLoader.EditableFile editableFile = loader.load(NAMESPACE_AND_NAME, "master", "big.txt");
+
+    assertThat(editableFile.encoding()).isEqualTo("UTF-8");
+    assertThat(editableFile.content()).isNull();
+  }
+
+  @Test
+  void shouldNotIncludeContentOfBinaryFiles() throws IOException {
+    mockBrowse(file("image.png"));
+    mockCat("image.png", new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+    mockContentType(false);
+
+    EditableFileLoader.EditableFile editableFile = loader.load(NAMESPACE_AND_NAME, "master", "image.png");
+
+    assertThat(editableFile.size()).isEqualTo(4);
+    assertThat(editableFile.encoding()).isNull();
+    assertThat(editableFile.content()).isNull();
+  }
+
+  @Test
+  void shouldNotOpenDirectories() throws IOException {
+    FileObject directory = file("src");
+    directory.setDirectory(true);
+    mockBrowse(directory);
+
+    assertThatThrownBy(() -> loader.load(NAMESPACE_AND_NAME, "master", "src"))
+      .isInstanceOf(NotFoundException.class);
+  }
+
+  private void mockBrowse(FileObject file) throws IOException {
+    BrowseCommandBuilder browseCommand = mock(BrowseCommandBuilder.class, withSettings().defaultAnswer(Answers.RETURNS_SELF));
+    when(browseCommand.getBrowserResult()).thenReturn(new BrowserResult("42", "master", file, true));
+    when(repositoryService.getBrowseCommand()).thenReturn(browseCommand);
+  }
+
+  private CatCommandBuilder mockCat(String path, byte[] content) throws IOException {
+    CatCommandBuilder catCommand = mock(CatCommandBuilder.class, withSettings().defaultAnswer(Answers.RETURNS_SELF));
+    when(catCommand.getStream(path)).thenReturn(new ByteArrayInputStream(content));
+    when(repositoryService.getCatCommand()).thenReturn(catCommand);
+    return catCommand;
+  }
+
+  private void mockContentType(boolean text) {
+    when(contentTypeResolver.resolve(any(), any())).thenReturn(contentType);
+    when(contentType.isText()).thenReturn(text);
+    when(contentType.getRaw()).thenReturn(text ? "text/markdown" : "image/png");
+  }
+
+  private FileObject file(String path) {
+    FileObject file = new FileObject();
+    file.setPath(path);
+    file.setName(path.substring(path.lastIndexOf('/') + 1));
+    return file;
+  }
+}
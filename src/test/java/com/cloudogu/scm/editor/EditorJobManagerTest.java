@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.Test;
+import sonia.scm.NotFoundException;
+import sonia.scm.repository.NamespaceAndName;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EditorJobManagerTest {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+
+  private final EditorJobManager jobManager = new EditorJobManager(MoreExecutors.newDirectExecutorService(), Duration.ofMinutes(1));
+
+  @Test
+  void shouldRunJob() {
+    EditorJob job = jobManager.submit("move", NAMESPACE_AND_NAME, "main", runningJob -> {
+      runningJob.setFilesTotal(2);
+      runningJob.addFilesProcessed(2);
+      return "1337";
+    });
+
+    assertThat(job.getState()).isEqualTo(EditorJob.State.DONE);
+    assertThat(job.getChangesetId()).isEqualTo("1337");
+    assertThat(job.getFilesProcessed()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldReportFailure() {
+    EditorJob job = jobManager.submit("move", NAMESPACE_AND_NAME, "main", runningJob -> {
+      throw new NotFoundException("Path", "some/path");
+    });
+
+    assertThat(job.getState()).isEqualTo(EditorJob.State.FAILED);
+    assertThat(job.getErrorCode()).isNotNull();
+    assertThat(job.getChangesetId()).isNull();
+  }
+
+  @Test
+  void shouldFindJobOnlyForSameRepository() {
+    EditorJob job = jobManager.submit("move", NAMESPACE_AND_NAME, "main", runningJob -> "1337");
+
+    assertThat(jobManager.get(NAMESPACE_AND_NAME, job.getId())).contains(job);
+    assertThat(jobManager.get(new NamespaceAndName("other", "repository"), job.getId())).isEmpty();
+  }
+
+  @Test
+  void shouldRunJobsForSameBranchOneAfterTheOther() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      EditorJobManager parallelJobManager = new EditorJobManager(executor, Duration.ofMinutes(1));
+      CountDownLatch firstJobRunning = new CountDownLatch(1);
+      CountDownLatch releaseFirstJob = new CountDownLatch(1);
+      CountDownLatch otherBranchDone = new CountDownLatch(1);
+
+      EditorJob first = parallelJobManager.submit("upload", NAMESPACE_AND_NAME, "main", job -> {
+        firstJobRunning.countDown();
+        releaseFirstJob.await();
+        return "1";
+      });
+      EditorJob second = parallelJobManager.submit("upload", NAMESPACE_AND_NAME, "main", job -> "2");
+      EditorJob otherBranch = parallelJobManager.submit("upload", NAMESPACE_AND_NAME, "develop", job -> {
+        otherBranchDone.countDown();
+        return "3";
+      });
+
+      assertThat(firstJobRunning.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(otherBranchDone.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(second.getState()).isEqualTo(EditorJob.State.QUEUED);
+
+      CountDownLatch sameBranchDone = new CountDownLatch(2);
+      first.subscribe(job -> countDownWhenFinished(job, sameBranchDone));
+      second.subscribe(job -> countDownWhenFinished(job, sameBranchDone));
+      CountDownLatch otherBranchFinished = new CountDownLatch(1);
+      otherBranch.subscribe(job -> countDownWhenFinished(job, otherBranchFinished));
+      releaseFirstJob.countDown();
+
+      assertThat(sameBranchDone.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(otherBranchFinished.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(first.getChangesetId()).isEqualTo("1");
+      assertThat(second.getChangesetId()).isEqualTo("2");
+      assertThat(otherBranch.getChangesetId()).isEqualTo("3");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldNotifySubscribers() {
+    EditorJob job = new EditorJob("1", "move", NAMESPACE_AND_NAME, "main", null);
+    StringBuilder events = new StringBuilder();
+    job.subscribe(changedJob -> events.append(changedJob.getState()).append(' '));
+
+    job.started();
+    job.done("1337");
+    job.failed(null, "ignored, because no longer subscribed");
+
+    assertThat(events.toString()).isEqualTo("QUEUED RUNNING DONE ");
+  }
+
+  private void countDownWhenFinished(EditorJob job, CountDownLatch latch) {
+    if (job.isFinished()) {
+      latch.countDown();
+    }
+  }
+}
@@ -16,12 +16,13 @@
 
 package com.cloudogu.scm.editor;
 
+import com.google.inject.util.Providers;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.repository.BrowserResult;
@@ -36,11 +37,14 @@ import sonia.scm.repository.api.RepositoryService;
 import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.time.Instant;
-import java.util.Optional;
+
+import static java.util.Collections.singletonList;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, ShiroExtension.class})
@@ -53,9 +57,13 @@ class EditorPreconditionsTest {
   @Mock(answer = Answers.RETURNS_DEEP_STUBS)
   private RepositoryService repositoryService;
 
-  @InjectMocks
   private EditorPreconditions preconditions;
 
+  @BeforeEach
+  void setUpObjectUnderTest() {
+    preconditions = new EditorPreconditions(repositoryServiceFactory, Providers.of(new EditabilityContext()));
+  }
+
   @Test
   void shouldReturnTrueForModifiableBrowserResult() {
     NamespaceAndName namespaceAndName = setUpRepositoryService("42", Command.MODIFY, Command.LOG);
@@ -72,6 +80,17 @@ class EditorPreconditionsTest {
     assertThat(preconditions.isEditable(namespaceAndName, result)).isFalse();
   }
 
+  @Test
+  void shouldCheckBrowserResultOnlyOnce() {
+    NamespaceAndName namespaceAndName = setUpRepositoryService("42", Command.MODIFY, Command.LOG);
+    BrowserResult result = createBrowserResult("abc", "master", false, true);
+
+    assertThat(preconditions.isEditable(namespaceAndName, result)).isTrue();
+    assertThat(preconditions.isEditable(namespaceAndName, result)).isTrue();
+
+    verify(repositoryServiceFactory).create(namespaceAndName);
+  }
+
   @Test
   void shouldReturnFalseIfNotPermitted() {
     NamespaceAndName namespaceAndName = setUpRepositoryService("21", Command.MODIFY, Command.LOG, Command.BRANCHES);
@@ -104,7 +123,7 @@ class EditorPreconditionsTest {
     FileLockCommandBuilder lockCommandBuilder = mock(FileLockCommandBuilder.class);
     when(repositoryService.getLockCommand()).thenReturn(lockCommandBuilder);
     lenient().when(repositoryService.isSupported(Command.FILE_LOCK)).thenReturn(true);
-    when(lockCommandBuilder.status("some_file")).thenReturn(Optional.of(new FileLock("some_file", "", "trillian", Instant.now())));
+    when(lockCommandBuilder.getAll()).thenReturn(singletonList(new FileLock("some_file", "", "trillian", Instant.now())));
     NamespaceAndName namespaceAndName = setUpRepositoryService("21", Command.MODIFY, Command.BRANCHES);
     BrowserResult result = createBrowserResult("abc", "tip", false, true);
     result.getFile().setDirectory(true);
@@ -119,7 +138,7 @@ class EditorPreconditionsTest {
     FileLockCommandBuilder lockCommandBuilder = mock(FileLockCommandBuilder.class);
     when(repositoryService.getLockCommand()).thenReturn(lockCommandBuilder);
     lenient().when(repositoryService.isSupported(Command.FILE_LOCK)).thenReturn(true);
-    when(lockCommandBuilder.status("some_file")).thenReturn(Optional.of(new FileLock("some_file", "", "dent", Instant.now())));
+    when(lockCommandBuilder.getAll()).thenReturn(singletonList(new FileLock("some_file", "", "dent", Instant.now())));
     NamespaceAndName namespaceAndName = setUpRepositoryService("21", Command.MODIFY, Command.BRANCHES);
     BrowserResult result = createBrowserResult("abc", "tip", false, true);
     result.getFile().setDirectory(true);
@@ -128,6 +147,26 @@ class EditorPreconditionsTest {
     assertThat(preconditions.isEditable(namespaceAndName, result)).isFalse();
   }
 
+  @Test
+  @SubjectAware(value = "trillian", permissions = "repository:push:21")
+  void shouldReadFileLocksOnlyOnce() {
+    FileLockCommandBuilder lockCommandBuilder = mock(FileLockCommandBuilder.class);
+    when(repositoryService.getLockCommand()).thenReturn(lockCommandBuilder);
+    lenient().when(repositoryService.isSupported(Command.FILE_LOCK)).thenReturn(true);
+    when(lockCommandBuilder.getAll()).thenReturn(singletonList(new FileLock("locked_file", "", "dent", Instant.now())));
+    NamespaceAndName namespaceAndName = setUpRepositoryService("21", Command.MODIFY, Command.BRANCHES);
+    BrowserResult result = createBrowserResult("abc", "tip", false, true);
+    result.getFile().setDirectory(true);
+    result.getFile().setPath("");
+
+    assertThat(preconditions.isEditable(namespaceAndName, result)).isTrue();
+    assertThat(preconditions.isUnlockedOrLockedByMe(namespaceAndName, "some_file")).isTrue();
+    assertThat(preconditions.isUnlockedOrLockedByMe(namespaceAndName, "locked_file")).isFalse();
+
+    verify(lockCommandBuilder, times(1)).getAll();
+    verify(repositoryServiceFactory, times(1)).create(namespaceAndName);
+  }
+
   private BrowserResult createBrowserResult(String revision, String branchName, boolean directory, FileObject fileObject, boolean modifiable) {
     fileObject.setDirectory(directory);
     return new BrowserResult(revision, branchName, fileObject, modifiable);
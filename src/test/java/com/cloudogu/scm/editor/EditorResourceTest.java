@@ -19,17 +19,22 @@ package com.cloudogu.scm.editor;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.io.IOUtils;
+import org.apache.shiro.authz.UnauthorizedException;
 import org.jboss.resteasy.mock.MockHttpRequest;
 import org.jboss.resteasy.mock.MockHttpResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.api.v2.resources.ChangesetDto;
 import sonia.scm.api.v2.resources.ChangesetToChangesetDtoMapper;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
 import sonia.scm.repository.Changeset;
+import sonia.scm.repository.FileObject;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.RepositoryManager;
@@ -37,29 +42,46 @@ import sonia.scm.repository.RepositoryTestData;
 import sonia.scm.web.JsonMockHttpRequest;
 import sonia.scm.web.RestDispatcher;
 
+import jakarta.inject.Provider;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class})
@@ -79,6 +101,21 @@ class EditorResourceTest {
   @Mock
   RepositoryManager repositoryManager;
 
+  @Mock
+  FileCapabilitiesCheck capabilitiesCheck;
+  @Mock
+  Provider<ScmPathInfoStore> scmPathInfoStore;
+  @Mock
+  EditorJobManager jobManager;
+  @Mock
+  UploadSessionManager uploadSessionManager;
+  @Mock
+  EditableFileLoader editableFileLoader;
+  @Spy
+  ArchiveExpander archiveExpander = new ArchiveExpander(10, 1024);
+  @Mock
+  DirectoryArchiver directoryArchiver;
+
   @InjectMocks
   EditorResource resource;
 
@@ -139,6 +176,46 @@ class EditorResourceTest {
     verify(fileUploader).create(eq("newFile"), eqStreamContent("content"));
   }
 
+  @Test
+  void shouldCreateInBackground() throws Exception {
+    mockPathInfoStore();
+    NamespaceAndName namespaceAndName = new NamespaceAndName(NAMESPACE, NAME);
+    EditorJob job = new EditorJob("job-1", "upload", namespaceAndName, "master", null);
+    AtomicReference<EditorJobManager.Work> work = new AtomicReference<>();
+    when(service.resolveBranch(NAMESPACE, NAME, "master")).thenReturn("master");
+    when(jobManager.submit(eq("upload"), eq(namespaceAndName), eq("master"), any())).thenAnswer(invocation -> {
+      work.set(invocation.getArgument(3));
+      return job;
+    });
+    when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit", null))
+      .thenReturn(fileUploader);
+    AtomicReference<String> uploadedContent = new AtomicReference<>();
+    when(fileUploader.create(eq("newFile"), any())).thenAnswer(invocation -> {
+      uploadedContent.set(IOUtils.toString(invocation.getArgument(1, InputStream.class), StandardCharsets.UTF_8));
+      return fileUploader;
+    });
+    when(fileUploader.commit()).thenReturn("1337");
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/create/some/path")
+        .header("Prefer", "respond-async");
+    CommitDto commit = new FileMappingCommitDto("new commit", "master", null, singletonMap("file0", "newFile"));
+    multipartRequest(request, Collections.singletonMap("file0", new ByteArrayInputStream("content".getBytes())), commit);
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(202);
+    assertThat(response.getContentAsString()).contains("\"id\":\"job-1\"");
+    verify(service).checkWritePermission(NAMESPACE, NAME);
+    verify(service, never()).prepare(any(), any(), any(), any(), any(), any());
+
+    assertThat(work.get().run(job)).isEqualTo("1337");
+    assertThat(uploadedContent.get()).isEqualTo("content");
+    assertThat(job.getFilesTotal()).isEqualTo(1L);
+    assertThat(job.getFilesProcessed()).isEqualTo(1L);
+    verify(fileUploader).close();
+  }
+
   @Test
   void shouldFailCreateWithMissingCommitMessage() throws IOException, URISyntaxException {
     MockHttpRequest request =
@@ -152,6 +229,73 @@ class EditorResourceTest {
     assertThat(response.getContentAsString()).isEqualTo("form part for commit object with key 'message' missing or without message");
   }
 
+  @Test
+  void shouldProcessStreamingCreateWithCommitAsFirstPart() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit", "expected"))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+    AtomicReference<String> uploadedContent = new AtomicReference<>();
+    when(fileUploader.create(eq("newFile"), any())).thenAnswer(invocation -> {
+      uploadedContent.set(IOUtils.toString(invocation.getArgument(1, InputStream.class), StandardCharsets.UTF_8));
+      return fileUploader;
+    });
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/stream/create/some/path");
+    CommitDto commit = new FileMappingCommitDto("new commit", "master", "expected", singletonMap("file0", "newFile"));
+    streamingMultipartRequest(request, commit, Collections.singletonMap("file0", "content"));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(response.getContentAsString()).contains("\"id\":\"42\"");
+    assertThat(uploadedContent.get()).isEqualTo("content");
+  }
+
+  @Test
+  void shouldDecodeCompressedPartOfStreamingCreate() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit", null))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+    AtomicReference<String> uploadedContent = new AtomicReference<>();
+    when(fileUploader.create(eq("newFile"), any())).thenAnswer(invocation -> {
+      uploadedContent.set(IOUtils.toString(invocation.getArgument(1, InputStream.class), StandardCharsets.UTF_8));
+      return fileUploader;
+    });
+
+    String boundary = UUID.randomUUID().toString();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(("--" + boundary + "\r\n"
+      + "Content-Disposition: form-data; name=\"commit\"\r\n\r\n"
+      + "{\"commitMessage\":\"new commit\",\"branch\":\"master\",\"names\":{\"file0\":\"newFile\"}}\r\n"
+      + "--" + boundary + "\r\n"
+      + "Content-Disposition: form-data; name=\"file0\"; filename=\"file0\"\r\n"
+      + "Content-Encoding: gzip\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+    body.write(ContentEncodingsTest.gzip("compressed content".getBytes(StandardCharsets.UTF_8)));
+    body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/stream/create/some/path")
+        .contentType("multipart/form-data; boundary=" + boundary)
+        .content(body.toByteArray());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(uploadedContent.get()).isEqualTo("compressed content");
+  }
+
+  @Test
+  void shouldFailStreamingCreateWithoutCommitAsFirstPart() throws IOException, URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/stream/create/some/path");
+    streamingMultipartRequest(request, null, Collections.singletonMap("file0", "content"));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(response.getContentAsString()).isEqualTo("form part for commit object has to be the first part of a streaming upload");
+  }
+
   @Test
   void shouldFailMoveWithTargetDirectoryIncludingBackslash() throws URISyntaxException {
     JsonMockHttpRequest request =
@@ -201,6 +345,361 @@ class EditorResourceTest {
     verify(service).move("space", "name", "master", "some/path", "/other/path", "move file please");
   }
 
+  @Test
+  void shouldPatchFile() throws IOException, URISyntaxException {
+    doAnswer(invocation -> {
+      invocation.getArgument(5, OutputStream.class).write("patched content".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(service).patch(eq(NAMESPACE), eq(NAME), eq("abc"), eq("some/file"), any(), any());
+    when(service.prepare(NAMESPACE, NAME, "master", "some", "patch file", "abc"))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/patch/some/file")
+        .contentType("application/json")
+        .content("{\"commitMessage\":\"patch file\",\"branch\":\"master\",\"expectedRevision\":\"abc\",\"replacements\":[{\"from\":2,\"to\":2,\"content\":\"patched\\n\"}]}".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    verify(fileUploader).modify(eq("file"), eqStreamContent("patched content"));
+  }
+
+  @Test
+  void shouldNotPatchWithoutReplacements() throws IOException, URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/patch/some/file")
+        .contentType("application/json")
+        .content("{\"commitMessage\":\"patch file\",\"branch\":\"master\",\"replacements\":[]}".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  void shouldMoveInBackground() throws Exception {
+    mockPathInfoStore();
+    NamespaceAndName namespaceAndName = new NamespaceAndName(NAMESPACE, NAME);
+    EditorJob job = new EditorJob("job-1", "move", namespaceAndName, "master", null);
+    AtomicReference<EditorJobManager.Work> work = new AtomicReference<>();
+    when(service.resolveBranch(NAMESPACE, NAME, "master")).thenReturn("master");
+    when(jobManager.submit(eq("move"), eq(namespaceAndName), eq("master"), any())).thenAnswer(invocation -> {
+      work.set(invocation.getArgument(3));
+      return job;
+    });
+    when(service.moveAndReturnRevision(NAMESPACE, NAME, "master", "some/path", "/other/path", "move file please")).thenReturn("1337");
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/move/some/path")
+        .contentType("application/json")
+        .header("Prefer", "respond-async")
+        .content("{\"commitMessage\":\"move file please\",\"newPath\":\"/other/path\",\"branch\":\"master\"}".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(202);
+    assertThat(response.getOutputHeaders().getFirst("Preference-Applied")).isEqualTo("respond-async");
+    assertThat(response.getOutputHeaders().getFirst("Location").toString()).endsWith("/v2/edit/space/name/jobs/job-1");
+    assertThat(response.getContentAsString())
+      .contains("\"id\":\"job-1\"")
+      .contains("\"events\":{\"href\":\"/v2/edit/space/name/jobs/job-1/events\"}");
+    verify(service, never()).moveAndReturnRevision(any(), any(), any(), any(), any(), any());
+
+    verify(service).checkWritePermission(NAMESPACE, NAME);
+
+    assertThat(work.get().run(job)).isEqualTo("1337");
+  }
+
+  @Test
+  void shouldQueueMoveWithoutBranchForDefaultBranch() throws Exception {
+    mockPathInfoStore();
+    NamespaceAndName namespaceAndName = new NamespaceAndName(NAMESPACE, NAME);
+    when(service.resolveBranch(NAMESPACE, NAME, null)).thenReturn("main");
+    when(jobManager.submit(eq("move"), eq(namespaceAndName), eq("main"), any()))
+      .thenReturn(new EditorJob("job-1", "move", namespaceAndName, "main", null));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/move/some/path")
+        .contentType("application/json")
+        .header("Prefer", "respond-async")
+        .content("{\"commitMessage\":\"move file please\",\"newPath\":\"/other/path\"}".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(202);
+    verify(jobManager).submit(eq("move"), eq(namespaceAndName), eq("main"), any());
+  }
+
+  @Test
+  void shouldNotMoveInBackgroundWithoutWritePermission() throws URISyntaxException {
+    doThrow(new UnauthorizedException("not allowed")).when(service).checkWritePermission(NAMESPACE, NAME);
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/move/some/path")
+        .contentType("application/json")
+        .header("Prefer", "respond-async")
+        .content("{\"commitMessage\":\"move file please\",\"newPath\":\"/other/path\",\"branch\":\"master\"}".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isNotEqualTo(202);
+    verifyNoInteractions(jobManager);
+  }
+
+  @Test
+  void shouldReturnJob() throws URISyntaxException {
+    mockPathInfoStore();
+    NamespaceAndName namespaceAndName = new NamespaceAndName(NAMESPACE, NAME);
+    EditorJob job = new EditorJob("job-1", "move", namespaceAndName, "master", null);
+    job.done("1337");
+    when(jobManager.get(namespaceAndName, "job-1")).thenReturn(Optional.of(job));
+
+    MockHttpRequest request = MockHttpRequest.get("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/jobs/job-1");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString())
+      .contains("\"state\":\"DONE\"")
+      .contains("\"changesetId\":\"1337\"");
+  }
+
+  @Test
+  void shouldNotFindUnknownJob() throws URISyntaxException {
+    when(jobManager.get(new NamespaceAndName(NAMESPACE, NAME), "unknown")).thenReturn(Optional.empty());
+
+    MockHttpRequest request = MockHttpRequest.get("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/jobs/unknown");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(404);
+  }
+
+  @Test
+  void shouldCommitChunkedUpload(@TempDir Path directory) throws IOException, URISyntaxException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(NAMESPACE, NAME);
+    UploadSession session = new UploadSession("upload-1", namespaceAndName, null, "some/path", "data.txt", false, 7, Files.createFile(directory.resolve("upload")), 1024);
+    session.append(0, new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)), null);
+    when(uploadSessionManager.get(namespaceAndName, "upload-1")).thenReturn(Optional.of(session));
+    when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit", null))
+      .thenReturn(fileUploader);
+    AtomicReference<String> uploadedContent = new AtomicReference<>();
+    when(fileUploader.create(eq("data.txt"), any())).thenAnswer(invocation -> {
+      uploadedContent.set(IOUtils.toString(invocation.getArgument(1, InputStream.class), StandardCharsets.UTF_8));
+      return fileUploader;
+    });
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/uploads/upload-1/commit")
+        .contentType("application/json")
+        .content(("{\"commitMessage\":\"new commit\",\"branch\":\"master\",\"checksum\":\"" + session.getChecksum() + "\"}").getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(uploadedContent.get()).isEqualTo("content");
+    verify(uploadSessionManager).remove(session);
+  }
+
+  @Test
+  void shouldNotCommitChunkedUploadWithWrongChecksum(@TempDir Path directory) throws IOException, URISyntaxException {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(NAMESPACE, NAME);
+    UploadSession session = new UploadSession("upload-1", namespaceAndName, null, "some/path", "data.txt", false, -1, Files.createFile(directory.resolve("upload")), 1024);
+    when(uploadSessionManager.get(namespaceAndName, "upload-1")).thenReturn(Optional.of(session));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/uploads/upload-1/commit")
+        .contentType("application/json")
+        .content("{\"commitMessage\":\"new commit\",\"checksum\":\"0000\"}".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+    verify(service, never()).prepare(any(), any(), any(), any(), any(), any());
+    verify(uploadSessionManager, never()).remove(any());
+  }
+
+  @Test
+  void shouldProcessBatch() throws URISyntaxException, IOException {
+    when(service.batch(eq(NAMESPACE), eq(NAME), eq("master"), eq("batch commit"), eq(null), argThat(operations ->
+      operations.size() == 2
+        && operations.get(0).getType() == BatchOperationDto.Type.MOVE
+        && operations.get(0).getNewPath().equals("/new")
+        && operations.get(1).getType() == BatchOperationDto.Type.DELETE)))
+      .thenReturn(new Changeset("1", 1L, new Person("trillian")));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/batch")
+        .contentType("application/json")
+        .content(("{'commitMessage':'batch commit','branch':'master','operations':[" +
+          "{'type':'MOVE','path':'old','newPath':'/new'}," +
+          "{'type':'DELETE','path':'obsolete'}]}").replaceAll("'", "\"").getBytes());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(response.getContentAsString()).contains("\"id\":\"42\"");
+  }
+
+  @Test
+  void shouldFailBatchWithoutOperations() throws URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/batch")
+        .contentType("application/json")
+        .content("{'commitMessage':'batch commit','operations':[]}".replaceAll("'", "\"").getBytes());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  void shouldFailBatchWithUnknownEncoding() throws URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/batch")
+        .contentType("application/json")
+        .content(("{'commitMessage':'batch commit','operations':[" +
+          "{'type':'CREATE','path':'logo.png','content':'iVBORw0KGgo=','encoding':'base32'}]}").replaceAll("'", "\"").getBytes());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+    verifyNoInteractions(service);
+  }
+
+  @Test
+  void shouldReturnOnlyChangesetIdWhenMinimalReturnIsPreferred() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit", "expected"))
+      .thenReturn(fileUploader);
+    when(fileUploader.commit()).thenReturn("1337");
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/create/some/path")
+        .contentType("application/json")
+        .header("Prefer", "return=minimal")
+        .content("{'commitMessage':'new commit', 'branch':'master', 'expectedRevision':'expected', 'fileName': 'newFile', 'fileContent': 'content'}".replaceAll("'", "\"").getBytes());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(response.getOutputHeaders().getFirst("Preference-Applied")).isEqualTo("return=minimal");
+    assertThat(response.getContentAsString())
+      .contains("\"id\":\"1337\"")
+      .contains("\"branch\":\"master\"");
+    verify(fileUploader, never()).done();
+    verify(mapper, never()).map(any(), any());
+  }
+
+  @Test
+  void shouldDeleteWithMinimalReturn() throws IOException, URISyntaxException {
+    when(service.deleteAndReturnRevision(NAMESPACE, NAME, "master", "some/path/file", "deleted", null))
+      .thenReturn("1337");
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/delete/some/path/file")
+        .contentType("application/json")
+        .header("Prefer", "handling=strict, return=minimal")
+        .content("{'commitMessage':'deleted', 'branch':'master'}".replaceAll("'", "\"").getBytes());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(response.getContentAsString()).contains("\"id\":\"1337\"");
+  }
+
+  @Test
+  void shouldResolveCapabilities() throws IOException, URISyntaxException {
+    mockPathInfoStore();
+    when(capabilitiesCheck.check(new NamespaceAndName(NAMESPACE, NAME), "master", "src/readme.md"))
+      .thenReturn(new FileCapabilities(false, true, false, false));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/capabilities/src/readme.md?revision=master");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString())
+      .contains("\"delete\":true")
+      .contains("\"modify\":false")
+      .contains("\"delete\":{\"href\":\"/v2/edit/space/name/delete/src%2Freadme.md\"}")
+      .contains("\"move\":{\"href\":\"/v2/edit/space/name/move/src%2Freadme.md\"}")
+      .doesNotContain("\"modify\":{");
+  }
+
+  @Test
+  void shouldOpenFile() throws IOException, URISyntaxException {
+    mockPathInfoStore();
+    FileObject file = new FileObject();
+    file.setName("readme.md");
+    file.setPath("src/readme.md");
+    when(editableFileLoader.load(new NamespaceAndName(NAMESPACE, NAME), "master", "src/readme.md"))
+      .thenReturn(new EditableFileLoader.EditableFile(
+        file, "42", 7, "text/markdown", "markdown", "UTF-8", null, new FileCapabilities(false, true, true, false), "# Hello"
+      ));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/open/src/readme.md?revision=master");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString())
+      .contains("\"revision\":\"42\"")
+      .contains("\"language\":\"markdown\"")
+      .contains("\"encoding\":\"UTF-8\"")
+      .contains("\"locked\":false")
+      .contains("\"modify\":true")
+      .contains("\"content\":\"# Hello\"")
+      .contains("\"self\":{\"href\":\"/v2/edit/space/name/open/src%2Freadme.md\"}")
+      .contains("\"patch\":{\"href\":\"/v2/edit/space/name/patch/src%2Freadme.md\"}");
+  }
+
+  @Test
+  void shouldDownloadDirectory() throws IOException, URISyntaxException {
+    DirectoryArchiver.DirectoryArchive archive = new DirectoryArchiver.DirectoryArchive("main", "42", "src/main", Collections.emptyList());
+    when(directoryArchiver.prepare(new NamespaceAndName(NAMESPACE, NAME), "master", "src/main")).thenReturn(archive);
+    doAnswer(invocation -> {
+      invocation.getArgument(2, OutputStream.class).write("zip".getBytes());
+      return null;
+    }).when(directoryArchiver).write(eq(new NamespaceAndName(NAMESPACE, NAME)), eq(archive), any());
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .get("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/archive/src/main?revision=master");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getOutputHeaders().getFirst("Content-Type")).hasToString("application/zip");
+    assertThat(response.getOutputHeaders().getFirst("Content-Disposition")).isEqualTo("attachment; filename*=UTF-8''main.zip");
+    assertThat(response.getContentAsString()).isEqualTo("zip");
+  }
+
+  @Test
+  void shouldResolveCapabilitiesForManyPaths() throws IOException, URISyntaxException {
+    mockPathInfoStore();
+    Map<String, FileCapabilities> capabilities = new LinkedHashMap<>();
+    capabilities.put("src/readme.md", new FileCapabilities(false, true, true, false));
+    capabilities.put("src/main", new FileCapabilities(true, false, false, true));
+    when(capabilitiesCheck.check(new NamespaceAndName(NAMESPACE, NAME), "master", asList("src/readme.md", "src/main")))
+      .thenReturn(capabilities);
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/capabilities")
+        .contentType("application/json")
+        .content("{'branch':'master', 'paths':['src/readme.md', 'src/main']}".replaceAll("'", "\"").getBytes());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString())
+      .contains("\"path\":\"src/readme.md\"")
+      .contains("\"modify\":{\"href\":\"/v2/edit/space/name/modify/src\"}")
+      .contains("\"path\":\"src/main\"")
+      .contains("\"create\":{\"href\":\"/v2/edit/space/name/create/src%2Fmain\"}");
+  }
+
   @Test
   void shouldProcessModifyWithCompleteRequest() throws IOException, URISyntaxException {
     when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit", "expected"))
@@ -325,6 +824,149 @@ class EditorResourceTest {
     verify(fileUploader).modify(eq("existingFile"), eqStreamContent("content"));
   }
 
+  @Test
+  void shouldProcessCreateWithRawContent() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, "master", "some/path", "new commit\nwith details", "expected"))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+    AtomicReference<byte[]> uploadedContent = new AtomicReference<>();
+    when(fileUploader.create(eq("newFile"), any())).thenAnswer(invocation -> {
+      uploadedContent.set(IOUtils.toByteArray(invocation.getArgument(1, InputStream.class)));
+      return fileUploader;
+    });
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/create/some/path")
+        .contentType("application/octet-stream")
+        .header("Content-Disposition", "attachment; filename=\"newFile\"")
+        .header(EditorResource.COMMIT_MESSAGE_HEADER, "new%20commit%0Awith%20details")
+        .header(EditorResource.BRANCH_HEADER, "master")
+        .header(EditorResource.EXPECTED_REVISION_HEADER, "expected")
+        .content(new byte[]{0, -1, 42});
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(response.getContentAsString()).contains("\"id\":\"42\"");
+    assertThat(uploadedContent.get()).containsExactly(0, -1, 42);
+  }
+
+  @Test
+  void shouldExpandArchive() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, "master", "docs", "add site", null))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+    Map<String, String> uploadedFiles = new LinkedHashMap<>();
+    when(fileUploader.create(any(), any())).thenAnswer(invocation -> {
+      uploadedFiles.put(invocation.getArgument(0), IOUtils.toString(invocation.getArgument(1, InputStream.class), StandardCharsets.UTF_8));
+      return fileUploader;
+    });
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+      zip.putNextEntry(new ZipEntry("index.html"));
+      zip.write("<html/>".getBytes(StandardCharsets.UTF_8));
+      zip.putNextEntry(new ZipEntry("css/site.css"));
+      zip.write("body {}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/expand/docs")
+        .contentType("application/zip")
+        .header(EditorResource.COMMIT_MESSAGE_HEADER, "add site")
+        .header(EditorResource.BRANCH_HEADER, "master")
+        .content(archive.toByteArray());
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(uploadedFiles).containsExactly(
+      entry("index.html", "<html/>"),
+      entry("css/site.css", "body {}")
+    );
+  }
+
+  @Test
+  void shouldProcessModifyWithBase64EncodedRawContent() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, null, "some/path", "new commit", null))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+    AtomicReference<String> uploadedContent = new AtomicReference<>();
+    when(fileUploader.modify(eq("existingFile"), any())).thenAnswer(invocation -> {
+      uploadedContent.set(IOUtils.toString(invocation.getArgument(1, InputStream.class), StandardCharsets.UTF_8));
+      return fileUploader;
+    });
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/modify/some/path/existingFile")
+        .contentType("application/octet-stream")
+        .header("Content-Transfer-Encoding", "base64")
+        .header(EditorResource.COMMIT_MESSAGE_HEADER, "new commit")
+        .content(Base64.getMimeEncoder().encode("content".getBytes(StandardCharsets.UTF_8)));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+    assertThat(uploadedContent.get()).isEqualTo("content");
+  }
+
+  @Test
+  void shouldKeepPlusInPercentEncodedHeaders() throws IOException, URISyntaxException {
+    when(service.prepare(NAMESPACE, NAME, "feature/c++", "some/path", "C++ fix", null))
+      .thenReturn(fileUploader);
+    when(fileUploader.done()).thenReturn(new Changeset("1", 1L, new Person("trillian")));
+
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/create/some/path")
+        .contentType("application/octet-stream")
+        .header("Content-Disposition", "attachment; filename=\"newFile\"")
+        .header(EditorResource.COMMIT_MESSAGE_HEADER, "C++%20fix")
+        .header(EditorResource.BRANCH_HEADER, "feature/c++")
+        .content("content".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(201);
+  }
+
+  @Test
+  void shouldFailRawContentWithInvalidPercentEncoding() throws URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/create/some/path")
+        .contentType("application/octet-stream")
+        .header("Content-Disposition", "attachment; filename=\"newFile\"")
+        .header(EditorResource.COMMIT_MESSAGE_HEADER, "100%")
+        .content("content".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  void shouldFailRawCreateWithoutContentDisposition() throws URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/create/some/path")
+        .contentType("application/octet-stream")
+        .header(EditorResource.COMMIT_MESSAGE_HEADER, "new commit")
+        .content("content".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  void shouldFailRawContentWithoutCommitMessage() throws URISyntaxException {
+    MockHttpRequest request =
+      MockHttpRequest
+        .post("/" + EditorResource.EDITOR_REQUESTS_PATH_V2 + "/space/name/modify/some/path/existingFile")
+        .contentType("application/octet-stream")
+        .content("content".getBytes(StandardCharsets.UTF_8));
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
   private InputStream eqStreamContent(String expectedContent) {
     return argThat(stream -> {
       try {
@@ -338,6 +980,28 @@ class EditorResourceTest {
     });
   }
 
+  private void streamingMultipartRequest(MockHttpRequest request, CommitDto commit, Map<String, String> files) throws IOException {
+    String boundary = UUID.randomUUID().toString();
+    request.contentType("multipart/form-data; boundary=" + boundary);
+
+    StringBuilder body = new StringBuilder();
+    if (commit != null) {
+      body.append("--").append(boundary).append("\r\n");
+      body.append("Content-Disposition: form-data; name=\"commit\"\r\n\r\n");
+      StringWriter commitWriter = new StringWriter();
+      new JsonFactory().createGenerator(commitWriter).setCodec(new ObjectMapper()).writeObject(commit);
+      body.append(commitWriter.getBuffer()).append("\r\n");
+    }
+    for (Map.Entry<String, String> entry : files.entrySet()) {
+      body.append("--").append(boundary).append("\r\n");
+      body.append(String.format("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\n", entry.getKey(), entry.getKey()));
+      body.append("Content-Type: application/octet-stream\r\n\r\n");
+      body.append(entry.getValue()).append("\r\n");
+    }
+    body.append("--").append(boundary).append("--\r\n");
+    request.setInputStream(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
   /**
    * This method is a slightly adapted copy of Lin Zaho's gist at https://gist.github.com/lin-zhao/9985191
    */
@@ -381,4 +1045,10 @@ class EditorResourceTest {
     request.setInputStream(new ByteArrayInputStream(buffer.toByteArray()));
     return request;
   }
+
+  private void mockPathInfoStore() {
+    ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
+    pathInfoStore.set(() -> URI.create("/"));
+    when(scmPathInfoStore.get()).thenReturn(pathInfoStore);
+  }
 }
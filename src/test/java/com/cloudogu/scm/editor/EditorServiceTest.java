@@ -16,17 +16,28 @@
 
 package com.cloudogu.scm.editor;
 
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.ScmConstraintViolationException;
+import sonia.scm.repository.Branch;
+import sonia.scm.repository.Branches;
 import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.BranchesCommandBuilder;
+import sonia.scm.repository.api.CatCommandBuilder;
+import sonia.scm.repository.api.Command;
 import sonia.scm.repository.api.LogCommandBuilder;
 import sonia.scm.repository.api.ModifyCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
@@ -35,16 +46,26 @@ import sonia.scm.repository.api.RepositoryServiceFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -79,6 +100,8 @@ class EditorServiceTest {
 
   @Mock(answer = Answers.RETURNS_SELF)
   LogCommandBuilder logCommandBuilder;
+  @Mock(answer = Answers.RETURNS_SELF)
+  CatCommandBuilder catCommandBuilder;
   @Mock
   ModifyCommandBuilder.WithOverwriteFlagContentLoader createContentLoader;
   @Mock
@@ -87,7 +110,11 @@ class EditorServiceTest {
   ModifyCommandBuilder.MoveBuilder moveBuilder;
   @Mock
   ChangeGuardCheck changeGuardCheck;
+  @Mock
+  BranchesCommandBuilder branchesCommand;
 
+  SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  CommitCoalescer coalescer = new CommitCoalescer(0, 1000);
   EditorService editorService;
 
   @BeforeEach
@@ -109,7 +136,7 @@ class EditorServiceTest {
 
   @BeforeEach
   void initService() {
-    editorService = new EditorService(serviceFactory, changeGuardCheck) {
+    editorService = new EditorService(serviceFactory, changeGuardCheck, new EditorMetrics(meterRegistry), coalescer) {
       @Override
       void checkWritePermission(RepositoryService repositoryService) {
         // suppress permission check for unit test
@@ -166,6 +193,75 @@ class EditorServiceTest {
     assertThat(newCommit).isEqualTo(NEW_COMMIT);
   }
 
+  @Test
+  void shouldNotReadChangesetWhenOnlyRevisionIsRequested() throws IOException {
+    when(modifyCommandBuilder.execute()).thenReturn("1337");
+
+    String changesetId = editorService
+      .prepare("space", "name", "master", SOME_PATH, "new commit", "expected")
+      .modify(CHANGED_FILE, new ByteArrayInputStream("content".getBytes()))
+      .commit();
+
+    assertThat(changesetId).isEqualTo("1337");
+    verify(repositoryService, never()).getLogCommand();
+  }
+
+  @Test
+  void shouldSkipUnchangedFile() throws IOException {
+    when(repositoryService.getCatCommand()).thenReturn(catCommandBuilder);
+    when(catCommandBuilder.getStream(SOME_PATH + "/" + CHANGED_FILE)).thenReturn(new ByteArrayInputStream("content".getBytes()));
+    when(logCommandBuilder.getChangesets()).thenReturn(new ChangesetPagingResult(1, singletonList(NEW_COMMIT)));
+
+    String changesetId = editorService
+      .prepare("space", "name", "master", SOME_PATH, "new commit", null)
+      .skipUnchanged(null)
+      .modify(CHANGED_FILE, new ByteArrayInputStream("content".getBytes()))
+      .commit();
+
+    assertThat(changesetId).isEqualTo(NEW_COMMIT.getId());
+    verify(catCommandBuilder).setRevision("master");
+    verify(modifyCommandBuilder, never()).modifyFile(any());
+    verify(modifyCommandBuilder, never()).execute();
+  }
+
+  @Test
+  void shouldSkipUnchangedFileWithoutReadingItIfChecksumIsGiven() throws IOException {
+    when(repositoryService.getCatCommand()).thenReturn(catCommandBuilder);
+    when(catCommandBuilder.getStream(SOME_PATH + "/" + CHANGED_FILE)).thenReturn(new ByteArrayInputStream("content".getBytes()));
+    when(logCommandBuilder.getChangesets()).thenReturn(new ChangesetPagingResult(1, singletonList(NEW_COMMIT)));
+    ByteArrayInputStream upload = new ByteArrayInputStream("content".getBytes());
+
+    editorService
+      .prepare("space", "name", "master", SOME_PATH, "new commit", null)
+      .skipUnchanged(singletonMap(CHANGED_FILE, Hashing.sha256().hashString("content", UTF_8).toString()))
+      .modify(CHANGED_FILE, upload)
+      .commit();
+
+    assertThat(upload.available()).isEqualTo(7);
+    verify(modifyCommandBuilder, never()).execute();
+  }
+
+  @Test
+  void shouldCommitChangedFileWhenSkippingUnchangedFiles() throws IOException {
+    when(repositoryService.getCatCommand()).thenReturn(catCommandBuilder);
+    when(catCommandBuilder.getStream(SOME_PATH + "/" + CHANGED_FILE)).thenReturn(new ByteArrayInputStream("old content".getBytes()));
+    when(modifyCommandBuilder.execute()).thenReturn("1337");
+    StringBuilder writtenContent = new StringBuilder();
+    when(modifyContentLoader.withData(any(InputStream.class))).thenAnswer(invocation -> {
+      writtenContent.append(new String(invocation.getArgument(0, InputStream.class).readAllBytes(), UTF_8));
+      return modifyCommandBuilder;
+    });
+
+    String changesetId = editorService
+      .prepare("space", "name", "master", SOME_PATH, "new commit", null)
+      .skipUnchanged(null)
+      .modify(CHANGED_FILE, new ByteArrayInputStream("new content".getBytes()))
+      .commit();
+
+    assertThat(changesetId).isEqualTo("1337");
+    assertThat(writtenContent).hasToString("new content");
+  }
+
   @Test
   void shouldBuildCorrectModificationCommandForDelete() throws IOException {
     Changeset newCommit = editorService
@@ -177,6 +273,7 @@ class EditorServiceTest {
     verify(modifyCommandBuilder).setExpectedRevision("expected");
     verify(modifyCommandBuilder).execute();
     assertThat(newCommit).isEqualTo(NEW_COMMIT);
+    verify(changeGuardCheck).invalidate(new NamespaceAndName("space", "name"), "master");
   }
 
   @Test
@@ -193,6 +290,105 @@ class EditorServiceTest {
     verify(modifyCommandBuilder, never()).setBranch("master");
     verify(modifyCommandBuilder, never()).setExpectedRevision("expected");
     verify(modifyCommandBuilder, never()).execute();
+    verify(changeGuardCheck, never()).invalidate(any(), any());
+  }
+
+  @Test
+  void shouldRecordMetricsForCreate() throws IOException {
+    editorService
+      .prepare("space", "name", "master", SOME_PATH, "new commit", "expected")
+      .create(NEW_FILE, new ByteArrayInputStream("content".getBytes()))
+      .done();
+
+    assertThat(meterRegistry.find(EditorMetrics.OPERATION_TIMER).tags("operation", "upload", "type", "git", "outcome", "success").timer())
+      .extracting(Timer::count)
+      .isEqualTo(1L);
+    assertThat(meterRegistry.find(EditorMetrics.OPERATION_TIMER).tags("operation", "create").timer())
+      .isNull();
+    assertThat(meterRegistry.find(EditorMetrics.UPLOAD_SIZE_SUMMARY).tags("operation", "create").summary())
+      .extracting(DistributionSummary::count)
+      .isEqualTo(1L);
+  }
+
+  @Test
+  void shouldRecordOutcomeForDeleteWithObstacle() {
+    when(changeGuardCheck.isDeletable(new NamespaceAndName("space", "name"), "master", SOME_PATH))
+      .thenReturn(singleton(DUMMY_OBSTACLE));
+
+    assertThrows(ChangeNotAllowedException.class, () ->
+      editorService
+        .delete("space", "name", "master", SOME_PATH, "new commit", "expected"));
+
+    assertThat(meterRegistry.find(EditorMetrics.OPERATION_TIMER).tags("operation", "delete", "outcome", "change_not_allowed").timer())
+      .extracting(Timer::count)
+      .isEqualTo(1L);
+  }
+
+  @Test
+  void shouldApplyAllBatchOperationsInOneCommit() throws IOException {
+    when(modifyCommandBuilder.move(SOME_PATH)).thenReturn(moveBuilder);
+    when(changeGuardCheck.isChangeable(any(), anyString(), any(), any(), any())).thenReturn(emptyList());
+
+    Changeset newCommit = editorService.batch("space", "name", "master", "batch commit", "expected", asList(
+      new BatchOperationDto(BatchOperationDto.Type.MOVE, SOME_PATH, SOME_OTHER_PATH, null, null),
+      new BatchOperationDto(BatchOperationDto.Type.DELETE, "obsolete", null, null, null),
+      new BatchOperationDto(BatchOperationDto.Type.CREATE, NEW_FILE, null, "content", null),
+      new BatchOperationDto(BatchOperationDto.Type.MODIFY, CHANGED_FILE, null, "changed", null)
+    ));
+
+    InOrder inOrder = inOrder(modifyCommandBuilder, moveBuilder);
+    inOrder.verify(modifyCommandBuilder).setCommitMessage("batch commit");
+    inOrder.verify(moveBuilder).to(SOME_OTHER_PATH);
+    inOrder.verify(modifyCommandBuilder).deleteFile("obsolete");
+    inOrder.verify(modifyCommandBuilder).createFile(NEW_FILE);
+    inOrder.verify(modifyCommandBuilder).modifyFile(CHANGED_FILE);
+    inOrder.verify(modifyCommandBuilder).execute();
+    verify(modifyCommandBuilder).setExpectedRevision("expected");
+    verify(repositoryService).getModifyCommand();
+    verify(changeGuardCheck).isChangeable(
+      new NamespaceAndName("space", "name"),
+      "master",
+      singletonList(CHANGED_FILE),
+      asList(SOME_OTHER_PATH, NEW_FILE),
+      asList(SOME_PATH, "obsolete"));
+    assertThat(newCommit).isEqualTo(NEW_COMMIT);
+  }
+
+  @Test
+  void shouldDecodeBase64ContentOfBatchOperation() throws IOException {
+    when(changeGuardCheck.isChangeable(any(), anyString(), any(), any(), any())).thenReturn(emptyList());
+    byte[] binaryContent = {(byte) 0x89, 'P', 'N', 'G', 0, (byte) 0xff};
+    List<byte[]> writtenContent = new ArrayList<>();
+    when(createContentLoader.withData(any(InputStream.class))).thenAnswer(invocation -> {
+      writtenContent.add(invocation.getArgument(0, InputStream.class).readAllBytes());
+      return modifyCommandBuilder;
+    });
+
+    editorService.batch("space", "name", "master", "batch commit", null, singletonList(
+      new BatchOperationDto(BatchOperationDto.Type.CREATE, NEW_FILE, null, Base64.getEncoder().encodeToString(binaryContent), "base64")
+    ));
+
+    assertThat(writtenContent).containsExactly(binaryContent);
+  }
+
+  @Test
+  void shouldNotApplyBatchWithObstacle() {
+    when(changeGuardCheck.isChangeable(any(), anyString(), any(), any(), any())).thenReturn(singleton(DUMMY_OBSTACLE));
+
+    List<BatchOperationDto> operations = singletonList(new BatchOperationDto(BatchOperationDto.Type.DELETE, SOME_PATH, null, null, null));
+    assertThrows(ChangeNotAllowedException.class, () ->
+      editorService.batch("space", "name", "master", "batch commit", null, operations));
+
+    verify(modifyCommandBuilder, never()).execute();
+  }
+
+  @Test
+  void shouldNotApplyBatchWithInvalidPath() {
+    List<BatchOperationDto> operations = singletonList(new BatchOperationDto(BatchOperationDto.Type.MOVE, SOME_PATH, "../outside", null, null));
+    assertThrows(ScmConstraintViolationException.class, () ->
+      editorService.batch("space", "name", "master", "batch commit", null, operations));
+
+    verify(modifyCommandBuilder, never()).execute();
   }
 
   @Test
@@ -211,4 +407,53 @@ class EditorServiceTest {
       .prepare("space", "name", "master", "../", "new commit", "")
       .create(NEW_FILE, new ByteArrayInputStream("content".getBytes())));
   }
+
+  @Test
+  void shouldKeepGivenBranch() throws IOException {
+    assertThat(editorService.resolveBranch("space", "name", "feature")).isEqualTo("feature");
+    verify(serviceFactory, never()).create(any(NamespaceAndName.class));
+  }
+
+  @Test
+  void shouldResolveMissingBranchToDefaultBranch() throws IOException {
+    when(repositoryService.isSupported(Command.BRANCHES)).thenReturn(true);
+    when(repositoryService.getBranchesCommand()).thenReturn(branchesCommand);
+    when(branchesCommand.getBranches()).thenReturn(new Branches(
+      Branch.normalBranch("develop", "1", 0L),
+      Branch.defaultBranch("main", "2", 0L)
+    ));
+
+    assertThat(editorService.resolveBranch("space", "name", null)).isEqualTo("main");
+  }
+
+  @Test
+  void shouldCoalesceBatchWithoutBranchForDefaultBranch() throws IOException {
+    when(repositoryService.isSupported(Command.BRANCHES)).thenReturn(true);
+    when(repositoryService.getBranchesCommand()).thenReturn(branchesCommand);
+    when(branchesCommand.getBranches()).thenReturn(new Branches(Branch.defaultBranch("main", "2", 0L)));
+    when(changeGuardCheck.isChangeable(any(), any(), any(), any(), any())).thenReturn(emptyList());
+    CommitCoalescer enabledCoalescer = mock(CommitCoalescer.class);
+    when(enabledCoalescer.isEnabled()).thenReturn(true);
+    when(enabledCoalescer.submit(any(), any(), any(), any(), any(), any(), any())).thenReturn("42");
+    EditorService coalescingService = new EditorService(serviceFactory, changeGuardCheck, new EditorMetrics(meterRegistry), enabledCoalescer) {
+      @Override
+      void checkWritePermission(RepositoryService repositoryService) {
+        // suppress permission check for unit test
+      }
+    };
+
+    String changesetId = coalescingService.batchAndReturnRevision("space", "name", null, "batch commit", null, singletonList(
+      new BatchOperationDto(BatchOperationDto.Type.DELETE, SOME_PATH, null, null, null)
+    ));
+
+    assertThat(changesetId).isEqualTo("42");
+    verify(enabledCoalescer).submit(eq(new NamespaceAndName("space", "name")), eq("main"), any(), eq("batch commit"), any(), any(), any());
+  }
+
+  @Test
+  void shouldNotResolveBranchForRepositoryWithoutBranches() throws IOException {
+    when(repositoryService.isSupported(Command.BRANCHES)).thenReturn(false);
+
+    assertThat(editorService.resolveBranch("space", "name", "")).isNull();
+  }
 }
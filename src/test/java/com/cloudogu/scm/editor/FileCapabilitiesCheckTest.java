@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import com.google.inject.util.Providers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.BrowserResult;
+import sonia.scm.repository.FileObject;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.api.BrowseCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+@ExtendWith(MockitoExtension.class)
+class FileCapabilitiesCheckTest {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+  private final ChangeObstacle obstacle = mock(ChangeObstacle.class);
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock
+  private EditorPreconditions preconditions;
+  @Mock
+  private ChangeGuardCheck changeGuardCheck;
+
+  private FileCapabilitiesCheck check;
+
+  @BeforeEach
+  void initCheck() {
+    when(repositoryServiceFactory.create(NAMESPACE_AND_NAME)).thenReturn(repositoryService);
+    check = new FileCapabilitiesCheck(repositoryServiceFactory, preconditions, changeGuardCheck, Providers.of(new EditabilityContext()));
+  }
+
+  @Test
+  void shouldCheckAllPathsAtOnce() throws IOException {
+    BrowseCommandBuilder srcBrowse = browse(directory("src", file("src/a.txt"), file("src/b.txt"), directory("src/main")));
+    BrowseCommandBuilder docsBrowse = browse(directory("docs", file("docs/c.md")));
+    BrowseCommandBuilder missingBrowse = mock(BrowseCommandBuilder.class, withSettings().defaultAnswer(Answers.RETURNS_SELF));
+    when(missingBrowse.getBrowserResult()).thenThrow(notFound(entity("Path", "missing")));
+    when(repositoryService.getBrowseCommand()).thenReturn(srcBrowse, docsBrowse, missingBrowse);
+    when(preconditions.isEditable(eq(NAMESPACE_AND_NAME), any())).thenReturn(true);
+    when(preconditions.isUnlockedOrLockedByMe(eq(NAMESPACE_AND_NAME), any())).thenReturn(true);
+    when(changeGuardCheck.isDeletableForEach(eq(NAMESPACE_AND_NAME), eq("master"), any()))
+      .thenAnswer(invocation -> obstacles(invocation.getArgument(2), "src/a.txt"));
+    when(changeGuardCheck.isModifiableForEach(eq(NAMESPACE_AND_NAME), eq("master"), any()))
+      .thenAnswer(invocation -> obstacles(invocation.getArgument(2), "docs/c.md"));
+    when(changeGuardCheck.canCreateFilesInEach(eq(NAMESPACE_AND_NAME), eq("master"), any()))
+      .thenAnswer(invocation -> obstacles(invocation.getArgument(2)));
+
+    Map<String, FileCapabilities> capabilities = check.check(
+      NAMESPACE_AND_NAME, "master", asList("src/a.txt", "src/b.txt", "src/main", "docs/c.md", "missing/d.txt")
+    );
+
+    assertThat(capabilities).containsOnlyKeys("src/a.txt", "src/b.txt", "src/main", "docs/c.md", "missing/d.txt");
+    assertCapabilities(capabilities.get("src/a.txt"), false, true, false);
+    assertCapabilities(capabilities.get("src/b.txt"), true, true, false);
+    assertCapabilities(capabilities.get("src/main"), true, false, true);
+    assertCapabilities(capabilities.get("docs/c.md"), true, false, false);
+    assertCapabilities(capabilities.get("missing/d.txt"), false, false, false);
+    verify(changeGuardCheck, times(1)).isDeletableForEach(any(), any(), any());
+    verify(changeGuardCheck, times(1)).isModifiableForEach(any(), any(), any());
+    verify(changeGuardCheck, times(1)).canCreateFilesInEach(any(), any(), any());
+    verify(srcBrowse).setPath("src");
+    verify(docsBrowse).setPath("docs");
+  }
+
+  @Test
+  void shouldHaveNoCapabilitiesWhenNotEditable() throws IOException {
+    BrowseCommandBuilder srcBrowse = browse(directory("src", file("src/a.txt")));
+    when(repositoryService.getBrowseCommand()).thenReturn(srcBrowse);
+    when(preconditions.isEditable(eq(NAMESPACE_AND_NAME), any())).thenReturn(false);
+
+    Map<String, FileCapabilities> capabilities = check.check(NAMESPACE_AND_NAME, "master", singletonList("src/a.txt"));
+
+    assertThat(capabilities.get("src/a.txt").hasAny()).isFalse();
+  }
+
+  private void assertCapabilities(FileCapabilities capabilities, boolean delete, boolean modify, boolean create) {
+    assertThat(capabilities.canDelete()).isEqualTo(delete);
+    assertThat(capabilities.canModify()).isEqualTo(modify);
+    assertThat(capabilities.canCreate()).isEqualTo(create);
+  }
+
+  private Map<String, Collection<ChangeObstacle>> obstacles(Collection<String> paths, String... guardedPaths) {
+    Map<String, Collection<ChangeObstacle>> obstacles = new HashMap<>();
+    paths.forEach(path -> obstacles.put(path, emptyList()));
+    for (String guardedPath : guardedPaths) {
+      obstacles.put(guardedPath, singletonList(obstacle));
+    }
+    return obstacles;
+  }
+
+  private BrowseCommandBuilder browse(FileObject directory) throws IOException {
+    BrowseCommandBuilder browseCommand = mock(BrowseCommandBuilder.class, withSettings().defaultAnswer(Answers.RETURNS_SELF));
+    when(browseCommand.getBrowserResult()).thenReturn(new BrowserResult("42", "master", directory, true));
+    return browseCommand;
+  }
+
+  private FileObject directory(String path, FileObject... children) {
+    FileObject directory = file(path);
+    directory.setDirectory(true);
+    directory.setChildren(List.of(children));
+    return directory;
+  }
+
+  private FileObject file(String path) {
+    FileObject file = new FileObject();
+    file.setPath(path);
+    return file;
+  }
+}
@@ -17,6 +17,7 @@
 package com.cloudogu.scm.editor;
 
 import com.google.inject.util.Providers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -31,16 +32,25 @@ import sonia.scm.repository.FileObject;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.RepositoryServiceFactory;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -58,26 +68,48 @@ class FileLinkEnricherTest {
   private EditorPreconditions preconditions;
   @Mock
   private ChangeGuardCheck changeGuardCheck;
+  @Mock
+  private RepositoryServiceFactory serviceFactory;
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
   private FileLinkEnricher enricher;
 
   @BeforeEach
   void setUpObjectUnderTest() {
     ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
     pathInfoStore.set(() -> URI.create("/"));
-    enricher = new FileLinkEnricher(Providers.of(pathInfoStore), preconditions, changeGuardCheck);
+    FileCapabilitiesCheck capabilitiesCheck = new FileCapabilitiesCheck(serviceFactory, preconditions, changeGuardCheck, Providers.of(new EditabilityContext()));
+    enricher = new FileLinkEnricher(Providers.of(pathInfoStore), capabilitiesCheck, new EditorMetrics(meterRegistry), false);
   }
 
   @Test
-  void shouldNotEnrichIfPreconditionNotMet() {
+  void shouldOnlyAppendArchiveLinkIfPreconditionNotMet() {
     setUpHalContext(repository, true, "root");
 
     when(preconditions.isEditable(repository.getNamespaceAndName(), result)).thenReturn(false);
 
     enricher.enrich(context, appender);
 
+    verify(appender).appendLink("archive", "/v2/edit/hitchhiker/HeartOfGold/archive/root?revision=42");
     verifyNoMoreInteractions(appender);
   }
 
+  @Test
+  void shouldNotAppendLinksForChangesInLazyMode() {
+    ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
+    pathInfoStore.set(() -> URI.create("/"));
+    FileCapabilitiesCheck capabilitiesCheck = new FileCapabilitiesCheck(serviceFactory, preconditions, changeGuardCheck, Providers.of(new EditabilityContext()));
+    FileLinkEnricher lazyEnricher = new FileLinkEnricher(Providers.of(pathInfoStore), capabilitiesCheck, new EditorMetrics(meterRegistry), true);
+    setUpHalContext(repository, false, "src/readme.md");
+
+    lazyEnricher.enrich(context, appender);
+
+    verifyNoInteractions(appender, preconditions, changeGuardCheck);
+  }
+
+  private Map<String, Collection<ChangeObstacle>> obstacles(String path, ChangeObstacle... obstacles) {
+    return singletonMap(path, asList(obstacles));
+  }
+
   private BrowserResult createBrowserResult(String revision, String branchName, boolean directory) {
     FileObject fileObject = new FileObject();
     fileObject.setDirectory(directory);
@@ -90,6 +122,7 @@ class FileLinkEnricherTest {
     FileObject fileObject = new FileObject();
     fileObject.setPath(path);
     fileObject.setDirectory(directory);
+    result.getFile().setChildren(singleton(fileObject));
     doReturn(fileObject).when(context).oneRequireByType(FileObject.class);
   }
 
@@ -98,18 +131,32 @@ class FileLinkEnricherTest {
     @BeforeEach
     void whenRepositoryIsEditable() {
       when(preconditions.isEditable(repository.getNamespaceAndName(), result)).thenReturn(true);
+      lenient().when(preconditions.isUnlockedOrLockedByMe(any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void shouldNotEnrichFileLockedByOthers() {
+      setUpHalContext(repository, false, "readme.md");
+
+      when(preconditions.isUnlockedOrLockedByMe(repository.getNamespaceAndName(), "readme.md")).thenReturn(false);
+
+      enricher.enrich(context, appender);
+
+      verifyNoMoreInteractions(appender);
     }
 
     @Test
     void shouldEnrichWithFileLinks() {
       setUpHalContext(repository, false, "readme.md");
 
-      when(changeGuardCheck.isDeletable(repository.getNamespaceAndName(), "master", "readme.md")).thenReturn(emptyList());
-      when(changeGuardCheck.isModifiable(repository.getNamespaceAndName(), "master", "readme.md")).thenReturn(emptyList());
+      when(changeGuardCheck.isDeletableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md"));
+      when(changeGuardCheck.isModifiableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md"));
 
       enricher.enrich(context, appender);
 
       verify(appender).appendLink(eq("modify"), eq("/v2/edit/hitchhiker/HeartOfGold/modify/"));
+      verify(appender).appendLink(eq("patch"), eq("/v2/edit/hitchhiker/HeartOfGold/patch/readme.md"));
+      verify(appender).appendLink(eq("open"), eq("/v2/edit/hitchhiker/HeartOfGold/open/readme.md"));
       verify(appender).appendLink(eq("delete"), eq("/v2/edit/hitchhiker/HeartOfGold/delete/readme.md"));
       verify(appender).appendLink(eq("move"), eq("/v2/edit/hitchhiker/HeartOfGold/move/readme.md"));
       verifyNoMoreInteractions(appender);
@@ -119,12 +166,14 @@ class FileLinkEnricherTest {
     void shouldNotEnrichWithFileDeleteLinkWithObstacle() {
       setUpHalContext(repository, false, "readme.md");
 
-      when(changeGuardCheck.isDeletable(repository.getNamespaceAndName(), "master", "readme.md")).thenReturn(singleton(DUMMY_OBSTACLE));
-      when(changeGuardCheck.isModifiable(repository.getNamespaceAndName(), "master", "readme.md")).thenReturn(emptyList());
+      when(changeGuardCheck.isDeletableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md", DUMMY_OBSTACLE));
+      when(changeGuardCheck.isModifiableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md"));
 
       enricher.enrich(context, appender);
 
       verify(appender).appendLink(eq("modify"), eq("/v2/edit/hitchhiker/HeartOfGold/modify/"));
+      verify(appender).appendLink(eq("patch"), eq("/v2/edit/hitchhiker/HeartOfGold/patch/readme.md"));
+      verify(appender).appendLink(eq("open"), eq("/v2/edit/hitchhiker/HeartOfGold/open/readme.md"));
       verify(appender, never()).appendLink(eq("delete"), any());
       verify(appender, never()).appendLink(eq("move"), any());
       verifyNoMoreInteractions(appender);
@@ -134,8 +183,8 @@ class FileLinkEnricherTest {
     void shouldNotEnrichWithFileModifyLinkWithObstacle() {
       setUpHalContext(repository, false, "readme.md");
 
-      when(changeGuardCheck.isDeletable(repository.getNamespaceAndName(), "master", "readme.md")).thenReturn(emptyList());
-      when(changeGuardCheck.isModifiable(repository.getNamespaceAndName(), "master", "readme.md")).thenReturn(singleton(DUMMY_OBSTACLE));
+      when(changeGuardCheck.isDeletableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md"));
+      when(changeGuardCheck.isModifiableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md", DUMMY_OBSTACLE));
 
       enricher.enrich(context, appender);
 
@@ -149,10 +198,12 @@ class FileLinkEnricherTest {
     void shouldEnrichWithDirectoryLinks() {
       setUpHalContext(repository, true, "src/path");
 
-      when(changeGuardCheck.canCreateFilesIn(repository.getNamespaceAndName(), "master", "src/path")).thenReturn(emptyList());
+      when(changeGuardCheck.isDeletableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("src/path"));
+      when(changeGuardCheck.canCreateFilesInEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("src/path"));
 
       enricher.enrich(context, appender);
 
+      verify(appender).appendLink("archive", "/v2/edit/hitchhiker/HeartOfGold/archive/src%2Fpath?revision=42");
       verify(appender).appendLink("create", "/v2/edit/hitchhiker/HeartOfGold/create/src%2Fpath");
       verify(appender).appendLink("move", "/v2/edit/hitchhiker/HeartOfGold/move/src%2Fpath");
       verifyNoMoreInteractions(appender);
@@ -162,13 +213,57 @@ class FileLinkEnricherTest {
     void shouldNotEnrichWithDirectoryCreateLinkWithObstacle() {
       setUpHalContext(repository, true, "src/path");
 
-      when(changeGuardCheck.canCreateFilesIn(repository.getNamespaceAndName(), "master", "src/path")).thenReturn(singleton(DUMMY_OBSTACLE));
+      when(changeGuardCheck.isDeletableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("src/path"));
+      when(changeGuardCheck.canCreateFilesInEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("src/path", DUMMY_OBSTACLE));
 
       enricher.enrich(context, appender);
 
       verify(appender, never()).appendLink(eq("create"), any());
+      verify(appender).appendLink("archive", "/v2/edit/hitchhiker/HeartOfGold/archive/src%2Fpath?revision=42");
       verify(appender).appendLink("move", "/v2/edit/hitchhiker/HeartOfGold/move/src%2Fpath");
       verifyNoMoreInteractions(appender);
     }
+
+    @Test
+    void shouldCheckDeletableOnlyOnceForFileOutsideOfBrowserResult() {
+      setUpHalContext(repository, false, "readme.md");
+      result.getFile().setChildren(emptyList());
+
+      when(changeGuardCheck.isDeletableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md"));
+      when(changeGuardCheck.isModifiableForEach(eq(repository.getNamespaceAndName()), eq("master"), any())).thenReturn(obstacles("readme.md"));
+
+      enricher.enrich(context, appender);
+
+      verify(appender).appendLink("delete", "/v2/edit/hitchhiker/HeartOfGold/delete/readme.md");
+      verify(appender).appendLink("move", "/v2/edit/hitchhiker/HeartOfGold/move/readme.md");
+      verify(changeGuardCheck, times(1)).isDeletableForEach(any(), any(), eq(singleton("readme.md")));
+    }
+
+    @Test
+    void shouldCheckGuardsOnlyOnceForAllChildren() {
+      FileObject readme = new FileObject();
+      readme.setPath("readme.md");
+      FileObject license = new FileObject();
+      license.setPath("license.txt");
+      result.getFile().setChildren(asList(readme, license));
+      doReturn(repository.getNamespaceAndName()).when(context).oneRequireByType(NamespaceAndName.class);
+      doReturn(result).when(context).oneRequireByType(BrowserResult.class);
+
+      Map<String, Collection<ChangeObstacle>> noObstacles = new HashMap<>();
+      noObstacles.put("readme.md", emptyList());
+      noObstacles.put("license.txt", emptyList());
+      when(changeGuardCheck.isDeletableForEach(repository.getNamespaceAndName(), "master", asList("readme.md", "license.txt"))).thenReturn(noObstacles);
+      when(changeGuardCheck.isModifiableForEach(repository.getNamespaceAndName(), "master", asList("readme.md", "license.txt"))).thenReturn(noObstacles);
+
+      doReturn(readme).when(context).oneRequireByType(FileObject.class);
+      enricher.enrich(context, appender);
+      doReturn(license).when(context).oneRequireByType(FileObject.class);
+      enricher.enrich(context, appender);
+
+      verify(appender).appendLink("delete", "/v2/edit/hitchhiker/HeartOfGold/delete/readme.md");
+      verify(appender).appendLink("delete", "/v2/edit/hitchhiker/HeartOfGold/delete/license.txt");
+      verify(changeGuardCheck).isDeletableForEach(any(), any(), any());
+      verify(changeGuardCheck).isModifiableForEach(any(), any(), any());
+    }
   }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LinePatcherTest {
+
+  @Test
+  void shouldReplaceLine() throws IOException {
+    assertThat(patch("a\nb\nc\n", new LineReplacementDto(2, 2, "B\n"))).isEqualTo("a\nB\nc\n");
+  }
+
+  @Test
+  void shouldReplaceLastLineWithoutNewline() throws IOException {
+    assertThat(patch("a\nb\nc", new LineReplacementDto(3, 3, "C"))).isEqualTo("a\nb\nC");
+  }
+
+  @Test
+  void shouldInsertAndAppendLines() throws IOException {
+    String patched = patch(
+      "a\nb\nc\n",
+      new LineReplacementDto(1, 0, "first\n"),
+      new LineReplacementDto(4, 3, "last\n")
+    );
+
+    assertThat(patched).isEqualTo("first\na\nb\nc\nlast\n");
+  }
+
+  @Test
+  void shouldDeleteLinesKeepingLineEndings() throws IOException {
+    assertThat(patch("a\r\nb\r\nc\r\n", new LineReplacementDto(2, 2, null))).isEqualTo("a\r\nc\r\n");
+  }
+
+  @Test
+  void shouldApplyMultipleReplacements() throws IOException {
+    String patched = patch(
+      "a\nb\nc\nd\n",
+      new LineReplacementDto(1, 2, "AB\n"),
+      new LineReplacementDto(4, 4, "D\n")
+    );
+
+    assertThat(patched).isEqualTo("AB\nc\nD\n");
+  }
+
+  @Test
+  void shouldFailForReplacementsBeyondEndOfFile() {
+    assertThatThrownBy(() -> patch("a\nb\n", new LineReplacementDto(2, 3, "x")))
+      .isInstanceOf(PatchNotApplicableException.class);
+  }
+
+  @Test
+  void shouldFailForOverlappingReplacements() {
+    List<LineReplacementDto> replacements = List.of(
+      new LineReplacementDto(2, 2, "x"),
+      new LineReplacementDto(2, 2, "y")
+    );
+
+    assertThatThrownBy(() -> new LinePatcher("file", replacements))
+      .isInstanceOf(PatchNotApplicableException.class);
+  }
+
+  private String patch(String original, LineReplacementDto... replacements) throws IOException {
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    new LinePatcher("file", List.of(replacements)).apply(new ByteArrayInputStream(original.getBytes(UTF_8)), target);
+    return target.toString(UTF_8);
+  }
+}
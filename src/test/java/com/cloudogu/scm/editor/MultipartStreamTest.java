@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package com.cloudogu.scm.editor;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultipartStreamTest {
+
+  @Test
+  void shouldReadPartsInOrder() throws IOException {
+    MultipartStream stream = multipartStream(
+      "preamble\r\n" +
+        "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"commit\"\r\n" +
+        "\r\n" +
+        "{\"commitMessage\":\"hello\"}\r\n" +
+        "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"file0\"; filename=\"readme.md\"\r\n" +
+        "Content-Type: text/plain\r\n" +
+        "\r\n" +
+        "first line\r\n--boundar\r\nsecond line\r\n" +
+        "--boundary--\r\n"
+    );
+
+    MultipartStream.Part commit = stream.nextPart().get();
+    assertThat(commit.getName()).contains("commit");
+    assertThat(commit.getFileName()).isEmpty();
+    assertThat(IOUtils.toString(commit.getBody(), UTF_8)).isEqualTo("{\"commitMessage\":\"hello\"}");
+
+    MultipartStream.Part file = stream.nextPart().get();
+    assertThat(file.getName()).contains("file0");
+    assertThat(file.getFileName()).contains("readme.md");
+    assertThat(file.getHeader("content-type")).isEqualTo("text/plain");
+    assertThat(IOUtils.toString(file.getBody(), UTF_8)).isEqualTo("first line\r\n--boundar\r\nsecond line");
+
+    assertThat(stream.nextPart()).isEmpty();
+  }
+
+  @Test
+  void shouldSkipUnreadParts() throws IOException {
+    MultipartStream stream = multipartStream(
+      "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"first\"\r\n" +
+        "\r\n" +
+        "not read\r\n" +
+        "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"second\"\r\n" +
+        "\r\n" +
+        "\r\n" +
+        "--boundary--"
+    );
+
+    assertThat(stream.nextPart().flatMap(MultipartStream.Part::getName)).contains("first");
+    Optional<MultipartStream.Part> second = stream.nextPart();
+    assertThat(second.flatMap(MultipartStream.Part::getName)).contains("second");
+    assertThat(IOUtils.toString(second.get().getBody(), UTF_8)).isEmpty();
+    assertThat(stream.nextPart()).isEmpty();
+  }
+
+  @Test
+  void shouldFailForTruncatedStream() throws IOException {
+    MultipartStream stream = multipartStream(
+      "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"file0\"\r\n" +
+        "\r\n" +
+        "truncated content"
+    );
+
+    InputStream body = stream.nextPart().get().getBody();
+    assertThrows(IOException.class, () -> IOUtils.toString(body, UTF_8));
+  }
+
+  private MultipartStream multipartStream(String body) {
+    return new MultipartStream(new ByteArrayInputStream(body.getBytes(UTF_8)), "boundary");
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.scm.editor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sonia.scm.repository.NamespaceAndName;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadSessionManagerTest {
+
+  private static final NamespaceAndName NAMESPACE_AND_NAME = new NamespaceAndName("space", "name");
+
+  @TempDir
+  Path directory;
+
+  private UploadSessionManager manager;
+
+  @BeforeEach
+  void initManager() {
+    manager = new UploadSessionManager(directory, Duration.ofMinutes(1), 16);
+  }
+
+  @Test
+  void shouldAppendChunks() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, 11);
+
+    session.append(0, stream("hello "), sha256("hello "));
+    session.append(6, stream("world"), null);
+
+    assertThat(session.getOffset()).isEqualTo(11);
+    assertThat(Files.readString(session.getFile())).isEqualTo("hello world");
+    assertThat(session.getChecksum()).isEqualTo(sha256("hello world"));
+    session.verify(sha256("hello world"));
+  }
+
+  @Test
+  void shouldRejectChunkWithWrongOffset() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, -1);
+    session.append(0, stream("hello "), null);
+
+    assertThatThrownBy(() -> session.append(0, stream("hello "), null))
+      .isInstanceOf(UploadSessionException.class);
+    assertThat(session.getOffset()).isEqualTo(6);
+  }
+
+  @Test
+  void shouldDiscardChunkWithWrongChecksum() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, -1);
+    session.append(0, stream("hello "), null);
+
+    assertThatThrownBy(() -> session.append(6, stream("wrld"), sha256("world")))
+      .isInstanceOf(UploadSessionException.class);
+
+    assertThat(session.getOffset()).isEqualTo(6);
+    assertThat(Files.readString(session.getFile())).isEqualTo("hello ");
+    assertThat(session.getChecksum()).isEqualTo(sha256("hello "));
+  }
+
+  @Test
+  void shouldRejectIncompleteUpload() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, 11);
+    session.append(0, stream("hello "), null);
+
+    assertThatThrownBy(() -> session.verify(null))
+      .isInstanceOf(UploadSessionException.class);
+  }
+
+  @Test
+  void shouldFindSessionOnlyForSameRepository() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, -1);
+
+    assertThat(manager.get(NAMESPACE_AND_NAME, session.getId())).contains(session);
+    assertThat(manager.get(new NamespaceAndName("other", "repository"), session.getId())).isEmpty();
+  }
+
+  @Test
+  void shouldDeleteFileOnRemove() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, -1);
+
+    manager.remove(session);
+
+    assertThat(session.getFile()).doesNotExist();
+    assertThat(manager.get(NAMESPACE_AND_NAME, session.getId())).isEmpty();
+  }
+
+  @Test
+  void shouldRejectChunkExceedingAnnouncedSize() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, 5);
+
+    assertThatThrownBy(() -> session.append(0, stream("hello world"), null))
+      .isInstanceOf(UploadSessionException.class);
+
+    assertThat(session.getOffset()).isZero();
+    assertThat(session.getFile()).isEmptyFile();
+  }
+
+  @Test
+  void shouldRejectChunkExceedingMaximumSizeForUnknownSize() throws IOException {
+    UploadSession session = manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, -1);
+    session.append(0, stream("hello world"), null);
+
+    assertThatThrownBy(() -> session.append(11, stream(" and more"), null))
+      .isInstanceOf(UploadSessionException.class);
+
+    assertThat(session.getOffset()).isEqualTo(11);
+    assertThat(Files.readString(session.getFile())).isEqualTo("hello world");
+  }
+
+  @Test
+  void shouldRejectSessionExceedingMaximumSize() {
+    assertThatThrownBy(() -> manager.create(NAMESPACE_AND_NAME, "src", "data.txt", false, 17))
+      .isInstanceOf(UploadSessionException.class);
+  }
+
+  @Test
+  void shouldDeleteOrphanedFilesOnStartup() throws IOException {
+    Path orphaned = Files.createFile(directory.resolve("orphaned.part"));
+    Path other = Files.createFile(directory.resolve("other.txt"));
+
+    new UploadSessionManager(directory, Duration.ofMinutes(1), 16);
+
+    assertThat(orphaned).doesNotExist();
+    assertThat(other).exists();
+  }
+
+  private ByteArrayInputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(UTF_8));
+  }
+
+  private String sha256(String content) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}